@@ -34,4 +34,9 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
   public void forward(TraceLocal trace, boolean nursery) {
     Assert.notImplemented();
   }
+
+  @Override
+  public int count() {
+    return 0;
+  }
 }
@@ -134,6 +134,13 @@ public class Memory extends org.mmtk.vm.Memory {
     return SimulatedMemory.unprotect(start, size);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public boolean uncommit(Address start, int size) {
+    SimulatedMemory.zero(start, Extent.fromIntZeroExtend(size));
+    return true;
+  }
+
   /** {@inheritDoc} */
   @Override
   public void zero(boolean useNT, Address start, Extent len) {
@@ -162,6 +169,14 @@ public class Memory extends org.mmtk.vm.Memory {
     // Nothing required
   }
 
+  /** {@inheritDoc} */
+  @Override
+  @Inline
+  public void storeStoreBarrier() {
+    Scheduler.yield();
+    // Nothing required
+  }
+
   /*
    * NOTE: The following methods must be implemented by subclasses of this
    * class, but are internal to the VM<->MM interface glue, so are never
@@ -61,6 +61,27 @@ public class Scanning extends org.mmtk.vm.Scanning {
     scanObject(trace, object);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * Harness objects are scanned like arrays of their reference fields.
+   */
+  @Override
+  public int referenceArrayLength(ObjectReference object) {
+    return ObjectModel.getRefs(object);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void scanArrayRange(TransitiveClosure trace, ObjectReference object, int start, int end) {
+    Address first = object.toAddress().plus(ObjectModel.REFS_OFFSET);
+    for (int i = start; i < end; i++) {
+      trace.processEdge(object, first.plus(i << LOG_BYTES_IN_ADDRESS));
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
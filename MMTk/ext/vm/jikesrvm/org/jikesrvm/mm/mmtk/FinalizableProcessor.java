@@ -19,6 +19,7 @@ import org.jikesrvm.mm.mminterface.Selected;
 import org.jikesrvm.runtime.Magic;
 import org.jikesrvm.util.Services;
 import org.mmtk.plan.TraceLocal;
+import org.mmtk.utility.Atomic;
 import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.pragma.UninterruptibleNoWarn;
@@ -53,6 +54,12 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
   /** Amount to grow the table by when it is filled */
   private static final double GROWTH_FACTOR = 2.0;
 
+  /**
+   * Number of table entries a collector thread claims at a time in a
+   * parallel scan or forwarding pass
+   */
+  private static final int CHUNK_SIZE = 256;
+
   /*************************************************************************
    * Instance fields
    */
@@ -63,6 +70,18 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
   /** The table of candidates */
   protected volatile AddressArray table = AddressArray.create(INITIAL_SIZE);
 
+  /**
+   * The number of surviving candidates in each chunk of a parallel scan,
+   * which are compacted to the start of their chunk
+   */
+  protected volatile int[] chunkSurvivors = new int[chunks(INITIAL_SIZE)];
+
+  /** The next chunk to be claimed in a parallel scan or forwarding pass */
+  private final Atomic.Int nextChunk = new Atomic.Int();
+
+  /** The number of objects made ready for finalization by a parallel scan */
+  private final Atomic.Int newlyReady = new Atomic.Int();
+
   /** The table of ready objects */
   protected volatile Object[] readyForFinalize = new Object[INITIAL_SIZE];
 
@@ -98,6 +117,7 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
       int newTableSize = -1;
       int newReadyForFinalizeSize = -1;
       AddressArray newTable = null;
+      int[] newChunkSurvivors = null;
       Object[] newReadyForFinalize = null;
 
       if (maxIndex >= table.length()) {
@@ -115,6 +135,7 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
         lock.release();
         if (newTableSize >= 0) {
           newTable = AddressArray.create(newTableSize);
+          newChunkSurvivors = new int[chunks(newTableSize)];
         }
         if (newReadyForFinalizeSize >= 0) {
           newReadyForFinalize = new Object[newReadyForFinalizeSize];
@@ -127,6 +148,7 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
           newTable.set(i, table.get(i));
         }
         table = newTable;
+        chunkSurvivors = newChunkSurvivors;
       }
 
       if (maxIndex >= freeReady() && newReadyForFinalize != null) {
@@ -153,19 +175,75 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
     maxIndex = 0;
   }
 
+  /**
+   * @param entries the number of table entries
+   * @return the number of chunks covering <code>entries</code> entries
+   */
+  private static int chunks(int entries) {
+    return (entries + CHUNK_SIZE - 1) / CHUNK_SIZE;
+  }
+
+  /**
+   * Claim the next chunk of the table entries from <code>start</code>
+   * to <code>maxIndex</code>.
+   *
+   * @param start the first table entry of the scan
+   * @return the index of the chunk, or -1 if all chunks are claimed
+   */
+  private int claimChunk(int start) {
+    final int chunk = nextChunk.add(1);
+    return start + chunk * CHUNK_SIZE < maxIndex ? chunk : -1;
+  }
+
+  /**
+   * @param from the first table entry of a chunk
+   * @return the table entry after the last of the chunk
+   */
+  private int chunkEnd(int from) {
+    return from + CHUNK_SIZE < maxIndex ? from + CHUNK_SIZE : maxIndex;
+  }
+
   /**
    * {@inheritDoc}.
    * <p>
    * Currently ignores the nursery hint.
-   * <p>
-   * TODO parallelise this code?
    *
    * @param trace The trace
    * @param nursery Is this a nursery collection ?
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
-    for (int i = 0 ; i < maxIndex; i++) {
+    forwardRange(trace, 0, maxIndex);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Collector threads claim chunks of the table and forward them
+   * independently.
+   */
+  @Override
+  public void parallelForward(TraceLocal trace, boolean nursery) {
+    for (int chunk = claimChunk(0); chunk >= 0; chunk = claimChunk(0)) {
+      final int from = chunk * CHUNK_SIZE;
+      forwardRange(trace, from, chunkEnd(from));
+    }
+  }
+
+  @Override
+  public void forwardFinish(TraceLocal trace, boolean nursery) {
+    nextChunk.set(0);
+  }
+
+  /**
+   * Forward the entries in a range of the table.
+   *
+   * @param trace The trace
+   * @param from the first table entry
+   * @param to the table entry after the last
+   */
+  private void forwardRange(TraceLocal trace, int from, int to) {
+    for (int i = from; i < to; i++) {
       ObjectReference ref = table.get(i).toObjectReference();
       table.set(i, trace.getForwardedFinalizable(ref).toAddress());
     }
@@ -178,17 +256,73 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
    * <p>
    * Depending on the value of <code>nursery</code>, we will either
    * scan all references, or just those created since the last scan.
-   * <p>
-   * TODO parallelise this code
    *
    * @param nursery Scan only the newly created references
    */
   @Override
   @UninterruptibleNoWarn
   public void scan(TraceLocal trace, boolean nursery) {
-    int toIndex = nursery ? nurseryIndex : 0;
+    final int start = nursery ? nurseryIndex : 0;
+    final int survivors = scanRange(trace, start, maxIndex);
+    finishScan(trace, start + survivors);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Collector threads claim chunks of the table, and compact the
+   * candidates still alive to the start of their chunk.
+   */
+  @Override
+  @UninterruptibleNoWarn
+  public void parallelScan(TraceLocal trace, boolean nursery) {
+    final int start = nursery ? nurseryIndex : 0;
+    for (int chunk = claimChunk(start); chunk >= 0; chunk = claimChunk(start)) {
+      final int from = start + chunk * CHUNK_SIZE;
+      chunkSurvivors[chunk] = scanRange(trace, from, chunkEnd(from));
+    }
+  }
 
-    for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Slides the candidates still alive in each chunk down to the end
+   * of the previous chunk's.
+   */
+  @Override
+  @UninterruptibleNoWarn
+  public void scanFinish(TraceLocal trace, boolean nursery) {
+    final int start = nursery ? nurseryIndex : 0;
+    final int chunks = chunks(maxIndex - start);
+    int toIndex = start;
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      final int from = start + chunk * CHUNK_SIZE;
+      final int survivors = chunkSurvivors[chunk];
+      if (toIndex != from) {
+        for (int i = 0; i < survivors; i++) {
+          table.set(toIndex + i, table.get(from + i));
+        }
+      }
+      toIndex += survivors;
+    }
+    nextChunk.set(0);
+    finishScan(trace, toIndex);
+  }
+
+  /**
+   * Process the candidates in a range of the table. Those still alive are
+   * compacted to the start of the range, the others are made ready for
+   * finalization.
+   *
+   * @param trace The trace
+   * @param from the first table entry
+   * @param to the table entry after the last
+   * @return the number of candidates still alive
+   */
+  @UninterruptibleNoWarn
+  private int scanRange(TraceLocal trace, int from, int to) {
+    int toIndex = from;
+    for (int fromIndex = from; fromIndex < to; fromIndex++) {
       ObjectReference ref = table.get(fromIndex).toObjectReference();
 
       /* Determine liveness (and forward if necessary) */
@@ -200,12 +334,25 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
       /* Make ready for finalize */
       ref = trace.retainForFinalize(ref);
 
-      /* Add to object table */
-      Offset offset = Word.fromIntZeroExtend(lastReadyIndex).lsh(LOG_BYTES_IN_ADDRESS).toOffset();
+      /* Add to object table, after the ones made ready by other collector threads */
+      final int readyIndex = (lastReadyIndex + newlyReady.add(1)) % readyForFinalize.length;
+      Offset offset = Word.fromIntZeroExtend(readyIndex).lsh(LOG_BYTES_IN_ADDRESS).toOffset();
       Selected.Plan.get().storeObjectReference(Magic.objectAsAddress(readyForFinalize).plus(offset), ref);
-      lastReadyIndex = (lastReadyIndex + 1) % readyForFinalize.length;
     }
+    return toIndex - from;
+  }
+
+  /**
+   * Truncate the table and publish the objects ready for finalization.
+   *
+   * @param trace The trace
+   * @param toIndex the index after the last candidate still alive
+   */
+  @UninterruptibleNoWarn
+  private void finishScan(TraceLocal trace, int toIndex) {
     nurseryIndex = maxIndex = toIndex;
+    lastReadyIndex = (lastReadyIndex + newlyReady.get()) % readyForFinalize.length;
+    newlyReady.set(0);
 
     trace.processNode(ObjectReference.fromObject(readyForFinalize));
     /* Possible schedule finalizers to run */
@@ -238,6 +385,7 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
   /**
    * @return the number of entries in the table.
    */
+  @Override
   public int count() {
     return maxIndex;
   }
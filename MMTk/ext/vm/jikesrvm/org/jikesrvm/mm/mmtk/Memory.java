@@ -204,6 +204,12 @@ import org.vmmagic.unboxed.Offset;
                                                    org.jikesrvm.runtime.Memory.PROT_EXEC);
   }
 
+  @Override
+  public final boolean uncommit(Address start, int size) {
+    return org.jikesrvm.runtime.Memory.madvise(start, Extent.fromIntZeroExtend(size),
+                                               org.jikesrvm.runtime.Memory.MADV_DONTNEED);
+  }
+
   @Override
   public final void zero(boolean useNT, Address start, Extent len) {
     org.jikesrvm.runtime.Memory.zero(useNT, start,len);
@@ -230,4 +236,10 @@ import org.vmmagic.unboxed.Offset;
   public final void combinedLoadBarriers() {
     Magic.combinedLoadBarrier();
   }
+
+  @Override
+  @Inline
+  public final void storeStoreBarrier() {
+    Magic.storeStoreBarrier();
+  }
 }
@@ -42,6 +42,11 @@ public final class Monitor extends org.mmtk.vm.Monitor {
     theLock.waitNoHandshake();
   }
 
+  @Override
+  public void timedAwait(long nanos) {
+    theLock.timedWaitRelativeNoHandshake(nanos);
+  }
+
   @Override
   public void broadcast() {
     theLock.broadcast();
@@ -12,7 +12,9 @@
  */
 package org.jikesrvm.mm.mmtk;
 
+import org.mmtk.plan.Plan;
 import org.mmtk.plan.TraceLocal;
+import org.mmtk.utility.Atomic;
 import org.mmtk.utility.options.Options;
 
 import org.vmmagic.pragma.*;
@@ -23,6 +25,8 @@ import org.jikesrvm.mm.mminterface.DebugUtil;
 import org.jikesrvm.mm.mminterface.Selected;
 import org.jikesrvm.runtime.Entrypoints;
 import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.runtime.Statics;
+import org.jikesrvm.runtime.Time;
 import org.jikesrvm.scheduler.RVMThread;
 
 import java.lang.ref.Reference;
@@ -56,6 +60,12 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
 
   private static final Lock lock = new Lock("ReferenceProcessor");
 
+  /**
+   * Serializes enqueueing of references by parallel scans, as the
+   * class library's reference queues are not thread safe.
+   */
+  private static final Lock enqueueLock = new Lock("ReferenceProcessor.enqueue");
+
   private static final ReferenceProcessor softReferenceProcessor =
     new ReferenceProcessor(Semantics.SOFT);
   private static final ReferenceProcessor weakReferenceProcessor =
@@ -78,6 +88,12 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   private static final double GROWTH_FACTOR = 2.0;
 
+  /**
+   * Number of table entries a collector thread claims at a time in a
+   * parallel scan or forwarding pass
+   */
+  private static final int CHUNK_SIZE = 256;
+
 
   /*************************************************************************
    * Instance fields
@@ -88,6 +104,18 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   private volatile AddressArray references = AddressArray.create(INITIAL_SIZE);
 
+  /**
+   * The number of surviving references in each chunk of a parallel
+   * scan, which are compacted to the start of their chunk. Grows with
+   * the table, as it can not be allocated during GC.
+   */
+  private volatile int[] chunkSurvivors = new int[chunks(INITIAL_SIZE)];
+
+  /**
+   * The next chunk to be claimed in a parallel scan or forwarding pass
+   */
+  private final Atomic.Int nextChunk = new Atomic.Int();
+
   /**
    * In a MarkCompact (or similar) collector, we need to update the {@code references}
    * field, and then update its contents.  We implement this by saving the pointer in
@@ -152,6 +180,34 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     }
   }
 
+  /**
+   * @param entries the number of table entries
+   * @return the number of chunks covering <code>entries</code> entries
+   */
+  private static int chunks(int entries) {
+    return (entries + CHUNK_SIZE - 1) / CHUNK_SIZE;
+  }
+
+  /**
+   * Claim the next chunk of the table entries from <code>start</code>
+   * to <code>maxIndex</code>.
+   *
+   * @param start the first table entry of the scan
+   * @return the index of the chunk, or -1 if all chunks are claimed
+   */
+  private int claimChunk(int start) {
+    final int chunk = nextChunk.add(1);
+    return start + chunk * CHUNK_SIZE < maxIndex ? chunk : -1;
+  }
+
+  /**
+   * @param from the first table entry of a chunk
+   * @return the table entry after the last of the chunk
+   */
+  private int chunkEnd(int from) {
+    return from + CHUNK_SIZE < maxIndex ? from + CHUNK_SIZE : maxIndex;
+  }
+
   /**
    * Add a reference at the end of the table
    * @param ref The reference to add
@@ -208,6 +264,19 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     return newReferences;
   }
 
+  /**
+   * Allocate the survivor counts for a table of a given size.
+   *
+   * <p>Marked as UninterruptibleNoWarn because it can GC when it allocates.
+   *
+   * @param length the length of the reference table
+   * @return the survivor counts
+   */
+  @UninterruptibleNoWarn
+  private static int[] growChunkSurvivors(int length) {
+    return new int[chunks(length)];
+  }
+
   /**
    * Add a reference to the list of references.  This method is responsible
    * for installing the  address of the referent into the Reference object
@@ -254,8 +323,10 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
         growingTable = true;  // Prevent other threads from growing table while lock is released
         lock.release();       // Can't hold the lock while allocating
         AddressArray newTable = growReferenceTable();
+        int[] newChunkSurvivors = growChunkSurvivors(newTable.length());
         lock.acquire();
         references = newTable;
+        chunkSurvivors = newChunkSurvivors;
         growingTable = false; // Allow other threads to grow the table rather than waiting for us
       }
     }
@@ -274,9 +345,6 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * using separate traces.
    * <p>
    * Currently ignores the nursery hint.
-   * <p>
-   * TODO parallelise this code
-   *
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
@@ -288,7 +356,41 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       VM.sysWriteln("unforwardedReferences is ",
           Magic.objectAsAddress(unforwardedReferences));
     }
-    for (int i = 0; i < maxIndex; i++) {
+    forwardRange(trace, 0, maxIndex);
+    if (TRACE) VM.sysWriteln("Ending ReferenceGlue.forward(",semanticsStr,")");
+    unforwardedReferences = null;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Collector threads claim chunks of the table and forward them
+   * independently.
+   */
+  @Override
+  public void parallelForward(TraceLocal trace, boolean nursery) {
+    if (VM.VerifyAssertions) VM._assert(unforwardedReferences != null);
+    for (int chunk = claimChunk(0); chunk >= 0; chunk = claimChunk(0)) {
+      final int from = chunk * CHUNK_SIZE;
+      forwardRange(trace, from, chunkEnd(from));
+    }
+  }
+
+  @Override
+  public void forwardFinish(TraceLocal trace, boolean nursery) {
+    nextChunk.set(0);
+    unforwardedReferences = null;
+  }
+
+  /**
+   * Forward the references in a range of the table, and their referents.
+   *
+   * @param trace the trace to forward to
+   * @param from the first table entry
+   * @param to the table entry after the last
+   */
+  private void forwardRange(TraceLocal trace, int from, int to) {
+    for (int i = from; i < to; i++) {
       if (TRACE_DETAIL) VM.sysWrite("slot ",i,": ");
       ObjectReference reference = unforwardedReferences.get(i).toObjectReference();
       if (TRACE_DETAIL) VM.sysWriteln("forwarding ",reference);
@@ -296,8 +398,6 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       ObjectReference newReference = trace.getForwardedReference(reference);
       unforwardedReferences.set(i, newReference.toAddress());
     }
-    if (TRACE) VM.sysWriteln("Ending ReferenceGlue.forward(",semanticsStr,")");
-    unforwardedReferences = null;
   }
 
   @Override
@@ -312,8 +412,6 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * <p>
    * Depending on the value of <code>nursery</code>, we will either
    * scan all references, or just those created since the last scan.
-   * <p>
-   * TODO parallelise this code
    *
    * @param nursery Scan only the newly created references
    */
@@ -322,36 +420,14 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     unforwardedReferences = references;
 
     if (TRACE) VM.sysWriteln("Starting ReferenceGlue.scan(",semanticsStr,")");
-    int toIndex = nursery ? nurseryIndex : 0;
+    final int start = nursery ? nurseryIndex : 0;
 
     if (TRACE_DETAIL) VM.sysWriteln(semanticsStr," Reference table is ",Magic.objectAsAddress(references));
     if (retain) {
-      for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
-          ObjectReference reference = getReference(fromIndex);
-          retainReferent(trace, reference);
-        }
+      retainRange(trace, start, maxIndex);
     } else {
-      for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
-        ObjectReference reference = getReference(fromIndex);
-
-        /* Determine liveness (and forward if necessary) the reference */
-        ObjectReference newReference = processReference(trace,reference);
-        if (!newReference.isNull()) {
-          setReference(toIndex++,newReference);
-          if (TRACE_DETAIL) {
-            int index = toIndex - 1;
-            VM.sysWrite("SCANNED ",index);
-            VM.sysWrite(" ",references.get(index));
-            VM.sysWrite(" -> ");
-            VM.sysWriteln(getReferent(references.get(index).toObjectReference()));
-          }
-               }
-             }
-      if (Options.verbose.getValue() >= 3) {
-        VM.sysWrite(semanticsStr);
-        VM.sysWriteln(" references: ",maxIndex," -> ",toIndex);
-      }
-      nurseryIndex = maxIndex = toIndex;
+      setMaxIndex(start + scanRange(trace, start, maxIndex));
+      if (semantics == Semantics.SOFT) advanceSoftClock();
     }
 
     /* flush out any remset entries generated during the above activities */
@@ -359,14 +435,139 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     if (TRACE) VM.sysWriteln("Ending ReferenceGlue.scan(",semanticsStr,")");
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Collector threads claim chunks of the table, and compact the
+   * references still active to the start of their chunk.
+   */
+  @Override
+  public void parallelScan(TraceLocal trace, boolean nursery, boolean retain) {
+    final int start = nursery ? nurseryIndex : 0;
+    for (int chunk = claimChunk(start); chunk >= 0; chunk = claimChunk(start)) {
+      final int from = start + chunk * CHUNK_SIZE;
+      final int to = chunkEnd(from);
+      if (retain) {
+        retainRange(trace, from, to);
+      } else {
+        chunkSurvivors[chunk] = scanRange(trace, from, to);
+      }
+    }
+
+    /* flush out any remset entries generated during the above activities */
+    Selected.Mutator.get().flushRememberedSets();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Slides the references still active in each chunk down to the end
+   * of the previous chunk's.
+   */
+  @Override
+  public void scanFinish(TraceLocal trace, boolean nursery, boolean retain) {
+    unforwardedReferences = references;
+    final int start = nursery ? nurseryIndex : 0;
+    if (!retain) {
+      final int chunks = chunks(maxIndex - start);
+      int toIndex = start;
+      for (int chunk = 0; chunk < chunks; chunk++) {
+        final int from = start + chunk * CHUNK_SIZE;
+        final int survivors = chunkSurvivors[chunk];
+        if (toIndex != from) {
+          for (int i = 0; i < survivors; i++) {
+            references.set(toIndex + i, references.get(from + i));
+          }
+        }
+        toIndex += survivors;
+      }
+      setMaxIndex(toIndex);
+      if (semantics == Semantics.SOFT) advanceSoftClock();
+    }
+    nextChunk.set(0);
+  }
+
+  /**
+   * Set the clock soft references record on access to the current time,
+   * once per GC after the soft references have been scanned.
+   */
+  private static void advanceSoftClock() {
+    Statics.setSlotContents(Entrypoints.softReferenceClockField.getOffset(), Time.nanoTime() / 1000000);
+  }
+
+  /**
+   * Truncate the table after a scan. All references are then mature.
+   *
+   * @param toIndex the index after the last reference still active
+   */
+  private void setMaxIndex(int toIndex) {
+    if (Options.verbose.getValue() >= 3) {
+      VM.sysWrite(semanticsStr);
+      VM.sysWriteln(" references: ",maxIndex," -> ",toIndex);
+    }
+    nurseryIndex = maxIndex = toIndex;
+  }
+
+  /**
+   * Retain the referents of the reachable references in a range of the
+   * table.
+   *
+   * @param trace the thread local trace element.
+   * @param from the first table entry
+   * @param to the table entry after the last
+   */
+  private void retainRange(TraceLocal trace, int from, int to) {
+    final long clock = Statics.getSlotContentsAsLong(Entrypoints.softReferenceClockField.getOffset());
+    final long maxInterval = Plan.softReferenceMaxInterval();
+    for (int fromIndex = from; fromIndex < to; fromIndex++) {
+      ObjectReference reference = getReference(fromIndex);
+      retainReferent(trace, reference, clock, maxInterval);
+    }
+  }
+
+  /**
+   * Process the references in a range of the table, and compact those
+   * still active to the start of the range.
+   *
+   * @param trace the thread local trace element.
+   * @param from the first table entry
+   * @param to the table entry after the last
+   * @return the number of references still active
+   */
+  private int scanRange(TraceLocal trace, int from, int to) {
+    int toIndex = from;
+    for (int fromIndex = from; fromIndex < to; fromIndex++) {
+      ObjectReference reference = getReference(fromIndex);
+
+      /* Determine liveness (and forward if necessary) the reference */
+      ObjectReference newReference = processReference(trace,reference);
+      if (!newReference.isNull()) {
+        setReference(toIndex++,newReference);
+        if (TRACE_DETAIL) {
+          int index = toIndex - 1;
+          VM.sysWrite("SCANNED ",index);
+          VM.sysWrite(" ",references.get(index));
+          VM.sysWrite(" -> ");
+          VM.sysWriteln(getReferent(references.get(index).toObjectReference()));
+        }
+      }
+    }
+    return toIndex - from;
+  }
+
   /**
    * This method deals only with soft references. It retains the referent
-   * if the reference is definitely reachable.
+   * if the reference is definitely reachable, and the referent has been
+   * accessed recently enough. The referents of the others are cleared
+   * if they are not otherwise reachable.
    * @param reference the address of the reference. This may or may not
    * be the address of a heap object, depending on the VM.
    * @param trace the thread local trace element.
+   * @param clock the value of the soft reference clock
+   * @param maxInterval the longest time a referent is retained without
+   * being accessed, in milliseconds
    */
-  protected void retainReferent(TraceLocal trace, ObjectReference reference) {
+  protected void retainReferent(TraceLocal trace, ObjectReference reference, long clock, long maxInterval) {
     if (VM.VerifyAssertions) VM._assert(!reference.isNull());
     if (VM.VerifyAssertions) VM._assert(semantics == Semantics.SOFT);
 
@@ -383,8 +584,14 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     }
 
     /*
-     * Reference is definitely reachable.  Retain the referent.
+     * Reference is definitely reachable. Retain the referent unless it
+     * has not been accessed for too long.
      */
+    final long timestamp = reference.toAddress().loadLong(Entrypoints.softReferenceTimestampField.getOffset());
+    if (clock - timestamp > maxInterval) {
+      if (TRACE_DETAIL) VM.sysWriteln(" (expired)");
+      return;
+    }
     ObjectReference referent = getReferent(reference);
     if (!referent.isNull())
       trace.retainReferent(referent);
@@ -411,7 +618,10 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   public boolean enqueueReference(ObjectReference addr) {
     Reference<?> reference = (Reference<?>)addr.toObject();
-    return reference.enqueueInternal();
+    enqueueLock.acquire();
+    boolean result = reference.enqueueInternal();
+    enqueueLock.release();
+    return result;
   }
 
   /**
@@ -455,7 +665,7 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * <p>
    * This method deals with  a soft reference as if it were a weak reference, i.e.
    * it does not retain the referent. To retain the referent, use
-   * {@link #retainReferent(TraceLocal, ObjectReference)} followed by a transitive
+   * {@link #retainReferent(TraceLocal, ObjectReference, long, long)} followed by a transitive
    * closure phase.
    *
    * @param reference the address of the reference. This may or may not
@@ -16,6 +16,7 @@ import static org.jikesrvm.mm.mminterface.MemoryManagerConstants.MOVES_CODE;
 import static org.jikesrvm.runtime.UnboxedSizeConstants.LOG_BYTES_IN_ADDRESS;
 
 import org.jikesrvm.VM;
+import org.jikesrvm.classloader.RVMType;
 import org.jikesrvm.compilers.common.CompiledMethods;
 import org.jikesrvm.jni.JNIEnvironment;
 import org.jikesrvm.jni.JNIGenericHelpers;
@@ -76,6 +77,23 @@ public final class Scanning extends org.mmtk.vm.Scanning {
     }
   }
 
+  @Override
+  @Inline
+  public int referenceArrayLength(ObjectReference object) {
+    RVMType type = org.jikesrvm.objectmodel.ObjectModel.getObjectType(object.toObject());
+    if (type.getReferenceOffsets() != RVMType.REFARRAY_OFFSET_ARRAY) return -1;
+    return Magic.getArrayLength(object.toObject());
+  }
+
+  @Override
+  @Inline
+  public void scanArrayRange(TransitiveClosure trace, ObjectReference object, int start, int end) {
+    Address base = object.toAddress();
+    for (int i = start; i < end; i++) {
+      trace.processEdge(object, base.plus(i << LOG_BYTES_IN_ADDRESS));
+    }
+  }
+
   @Override
   public void resetThreadCounter() {
     threadCounter.reset();
@@ -217,13 +217,14 @@ public class Harness {
             }
           }
 
-          ActivePlan.plan.enableAllocation();
+          /* As in the VM, the heap size is known before allocation is enabled */
           if (org.mmtk.utility.options.Options.verbose.getValue() > 0) {
             System.err.printf("[Harness] Configuring heap size [%4.2fMB..%4.2fMB]%n",
                 initHeap.getBytes().toLong() / MB,
                 maxHeap.getBytes().toLong() / MB);
           }
           HeapGrowthManager.boot(initHeap.getBytes(), maxHeap.getBytes());
+          ActivePlan.plan.enableAllocation();
 
           /* Check options */
           assert Options.noFinalizer.getValue() : "noFinalizer must be true";
@@ -45,6 +45,14 @@ public class Intrinsics {
     return Collection.getGcCount();
   }
 
+  /**
+   * @return the current time in milliseconds, for timing parts of a script
+   * @param env Thread-local environment (language-dependent mutator context)
+   */
+  public static int timeMillis(Env env) {
+    return (int) (System.nanoTime() / 1000000);
+  }
+
   /**
    * Return the thread ID
    * @param env Thread-local environment (language-dependent mutator context)
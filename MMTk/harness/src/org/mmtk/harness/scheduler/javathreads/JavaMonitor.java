@@ -85,6 +85,23 @@ public class JavaMonitor extends org.mmtk.vm.Monitor {
     trace("await", "out");
   }
 
+  @Override
+  public void timedAwait(long nanos) {
+    trace("timedAwait", "in");
+    synchronized (monitor) {
+      int savedCount = counter;
+      unlock();
+      long start = startWait();
+      while (savedCount == counter && System.nanoTime() - start < nanos) {
+        try {
+          monitor.wait(Math.max(1, Math.min(WAIT_TIME, (nanos - (System.nanoTime() - start)) / 1000000)));
+        } catch (InterruptedException e) { }
+      }
+      lock();
+    }
+    trace("timedAwait", "out");
+  }
+
   @Override
   public void broadcast() {
     trace("broadcast", "in");
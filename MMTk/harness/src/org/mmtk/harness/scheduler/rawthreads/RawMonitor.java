@@ -60,6 +60,19 @@ public class RawMonitor extends org.mmtk.vm.Monitor {
     Clock.start();
   }
 
+  /**
+   * Raw threads have no notion of elapsed time: give the other threads
+   * a turn and return.
+   */
+  @Override
+  public void timedAwait(long nanos) {
+    Clock.stop();
+    unlock();
+    model.yield();
+    lock();
+    Clock.start();
+  }
+
   @Override
   public void broadcast() {
     Clock.stop();
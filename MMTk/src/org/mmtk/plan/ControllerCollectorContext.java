@@ -31,7 +31,7 @@ public class ControllerCollectorContext extends CollectorContext {
   private final ParallelCollectorGroup workers;
 
   /** Flag used to control the 'race to request' */
-  private boolean requestFlag;
+  private volatile boolean requestFlag;
 
   /** The current request index */
   private int requestCount;
@@ -86,7 +86,9 @@ public class ControllerCollectorContext extends CollectorContext {
       if (Options.verbose.getValue() >= 5) Log.writeln("[STWController: Stopping the world...]");
       LatencyTimer.startPausingMutators();
       LatencyTimer.enableLogging();
+      final long pauseStart = VM.statistics.nanoTime();
       VM.collection.stopAllMutators();
+      Plan.timeToSafepoint.record(VM.statistics.nanoTime() - pauseStart);
       LatencyTimer.disableLogging();
 
       // Was this user triggered?
@@ -123,6 +125,7 @@ public class ControllerCollectorContext extends CollectorContext {
       if (Options.verbose.getValue() >= 5) Log.writeln("[STWController: Resuming mutators...]");
 //      LatencyTimer.enableLogging();
       VM.collection.resumeAllMutators();
+      Plan.pauseTime.record(VM.statistics.nanoTime() - pauseStart);
 //      LatencyTimer.disableLogging();
 //      LatencyTimer.allMutatorsResumed(startTime);
 
@@ -157,6 +160,14 @@ public class ControllerCollectorContext extends CollectorContext {
     lock.unlock();
   }
 
+  /**
+   * @return whether a collection has been requested and the world is not
+   * yet stopped for it
+   */
+  public boolean isRequested() {
+    return requestFlag;
+  }
+
   /**
    * Clear the collection request, making future requests incur an
    * additional collection cycle.
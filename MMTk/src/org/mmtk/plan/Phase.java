@@ -456,6 +456,7 @@ public abstract class Phase {
 
     /* The main phase execution loop */
     int scheduledPhase;
+    long phaseStart = 0;
     while ((scheduledPhase = getCurrentPhase(isEvenPhase)) > 0) {
       short schedule = getSchedule(scheduledPhase);
       short phaseId = getPhaseId(scheduledPhase);
@@ -463,6 +464,7 @@ public abstract class Phase {
 
       /* Start the timer(s) */
       if (primary) {
+        phaseStart = VM.statistics.nanoTime();
         if (resume) {
           resumeComplexTimers();
         }
@@ -561,6 +563,7 @@ public abstract class Phase {
 
       /* Stop the timer(s) */
       if (primary) {
+        ((SimplePhase) p).histogram.record(VM.statistics.nanoTime() - phaseStart);
         if (p.timer != null) p.timer.stop();
         if (stopComplexTimer > 0) {
           Phase.getPhase(stopComplexTimer).timer.stop();
@@ -30,6 +30,7 @@ import org.mmtk.utility.Log;
 import org.mmtk.utility.options.*;
 import org.mmtk.utility.sanitychecker.SanityChecker;
 import org.mmtk.utility.statistics.EventCounter;
+import org.mmtk.utility.statistics.Histogram;
 import org.mmtk.utility.statistics.LatencyTimer;
 import org.mmtk.utility.statistics.Timer;
 import org.mmtk.utility.statistics.Stats;
@@ -143,6 +144,13 @@ public abstract class Plan {
   /** Timer that counts total time */
   public static final Timer totalTime = new Timer("time");
 
+  /** Stop-the-world pauses, from the request to stop the mutators until they are resumed */
+  public static final Histogram pauseTime = new Histogram("pause");
+  /** Time to safepoint, from the request to stop the mutators until they are all blocked */
+  public static final Histogram timeToSafepoint = new Histogram("time-to-safepoint");
+  /** Time mutators are held back by the collector, outside of pauses they did not request */
+  public static final Histogram mutatorStallTime = new Histogram("mutator-stall");
+
   /** Support for allocation-site identification */
   protected static int allocationSiteCount = 0;
 
@@ -162,6 +170,7 @@ public abstract class Plan {
     Options.stressFactor = new StressFactor();
     Options.noFinalizer = new NoFinalizer();
     Options.noReferenceTypes = new NoReferenceTypes();
+    Options.softRefLRUPolicyMSPerMB = new SoftRefLRUPolicyMSPerMB();
     Options.fullHeapSystemGC = new FullHeapSystemGC();
     Options.harnessAll = new HarnessAll();
     Options.ignoreSystemGC = new IgnoreSystemGC();
@@ -178,6 +187,7 @@ public abstract class Plan {
     Options.useReturnBarrier = new UseReturnBarrier();
     Options.useShortStackScans = new UseShortStackScans();
     Options.threads = new Threads();
+    Options.workStealing = new WorkStealing();
     Options.cycleTriggerThreshold = new CycleTriggerThreshold();
     HeapLayout.vmMap.finalizeStaticSpaceMap();
     registerSpecializedMethods();
@@ -335,7 +345,7 @@ public abstract class Plan {
 
     // Create the concurrent worker threads.
     if (VM.activePlan.constraints().needsConcurrentWorkers()) {
-      concurrentWorkers.initGroup(numThreads, defaultCollectorContext);
+      concurrentWorkers.initGroup(concurrentThreadCount(numThreads), defaultCollectorContext);
     }
 
     // Create our control thread.
@@ -345,6 +355,17 @@ public abstract class Plan {
     initialized = true;
   }
 
+  /**
+   * Determines the number of concurrent worker threads. Plans that allow
+   * configuring it separately from the parallel workers override this.
+   *
+   * @param numThreads the number of parallel collector threads
+   * @return the number of concurrent worker threads to spawn
+   */
+  protected int concurrentThreadCount(int numThreads) {
+    return numThreads;
+  }
+
   @Interruptible
   public void fullyBooted() {
     if (Options.harnessAll.getValue()) harnessBegin();
@@ -372,6 +393,9 @@ public abstract class Plan {
       Log.writeln(" ms]");
     }
     if (Options.verboseTiming.getValue()) printDetailedTiming(true);
+    if (!Stats.statsPrinted() && (Options.xmlStats.getValue() || Options.verbose.getValue() >= 1)) {
+      Stats.printHistograms();
+    }
   }
 
   /**
@@ -482,6 +506,22 @@ public abstract class Plan {
     return emergencyCollection;
   }
 
+  /**
+   * The soft reference policy, as HotSpot's LRUMaxHeapPolicy: a soft
+   * referent not accessed for longer than SoftRefLRUPolicyMSPerMB
+   * milliseconds per MB of heap free at the end of the last GC may be
+   * cleared, with the free heap measured against the maximum heap size.
+   *
+   * @return the longest time a soft referent is retained without being
+   * accessed, in milliseconds
+   */
+  public static long softReferenceMaxInterval() {
+    final long maxPages = HeapGrowthManager.getMaxHeapSize().toWord().rshl(LOG_BYTES_IN_PAGE).toLong();
+    final long freePages = maxPages - pagesReservedAtLastGC;
+    if (freePages <= 0) return 0;
+    return (freePages >> (LOG_BYTES_IN_MBYTE - LOG_BYTES_IN_PAGE)) * Options.softRefLRUPolicyMSPerMB.getValue();
+  }
+
   /**
    * Force the next collection to be full heap.
    */
@@ -544,6 +584,8 @@ public abstract class Plan {
   protected static boolean lastInternalTriggeredCollection;
   protected static boolean emergencyCollection;
   protected static boolean stacksPrepared;
+  /** Pages reserved at the end of the last GC, for the soft reference policy */
+  private static int pagesReservedAtLastGC = 0;
 
   private static boolean initialized = false;
 
@@ -602,6 +644,7 @@ public abstract class Plan {
     VM.memory.fence();
     if (gcStatus == NOT_IN_GC) {
       /* From any phase to NOT_IN_GC */
+      pagesReservedAtLastGC = VM.activePlan.global().getPagesReserved();
       if (Stats.gatheringStats()) {
         Stats.endGC();
         VM.activePlan.global().printPostStats();
@@ -705,6 +748,18 @@ public abstract class Plan {
   @Unpreemptible
   public void prepareForUserCollectionRequest() {}
 
+  /**
+   * Block the calling mutator until the collection it has requested,
+   * e.g. on an allocation failure, is complete. The time it is stalled
+   * is recorded.
+   */
+  @Unpreemptible
+  public static void blockForGC() {
+    final long start = VM.statistics.nanoTime();
+    VM.collection.blockForGC();
+    mutatorStallTime.record(VM.statistics.nanoTime() - start);
+  }
+
   /**
    * The application code has requested a collection.
    */
@@ -25,6 +25,10 @@ import org.vmmagic.pragma.*;
   public int g1LogPagesInRegion() {
     return 8;
   }
+  /** Keep g1LogPagesInRegion rather than selecting the region size at boot */
+  public boolean g1FixedRegionSize() {
+    return false;
+  }
   public int LOG_PAGES_IN_G1_REGION() {
     return 8;
   }
@@ -38,6 +42,7 @@ import org.vmmagic.pragma.*;
   }
   public boolean g1ForceDrainModbuf() { return false; }
   public boolean g1UseXorBarrier() { return true; }
+  public boolean g1YoungCardFilter() { return true; }
   public float g1FixedNurseryRatio() { return 0.15f; }
   public float g1InitiatingHeapOccupancy() { return 0.45f; }
   public boolean __g1LatencyTimer() {
@@ -47,6 +52,10 @@ import org.vmmagic.pragma.*;
   public boolean G1_CARD_SUPPORT() {
     return false;
   }
+  /** Heal references at load time instead of resolving the Brooks pointer on every access */
+  public boolean shenandoahLoadReferenceBarrier() {
+    return false;
+  }
   /** @return {@code true} if this Plan requires object shallow comparison barriers. */
   public boolean needsObjectAddressComparisonBarrier() {
     return false;
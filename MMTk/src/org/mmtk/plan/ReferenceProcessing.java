@@ -0,0 +1,154 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan;
+
+import org.mmtk.utility.statistics.EventCounter;
+import org.mmtk.utility.statistics.Timer;
+import org.mmtk.vm.ReferenceProcessor;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * Drives the reference and finalizable processors with all collector threads.
+ *
+ * Every collector thread of the phase calls one of these methods. The threads
+ * share out the table through the processor's parallel scan, rendezvous, and
+ * the primary collector completes the scan, e.g. compacts the table.
+ *
+ * The time spent and the number of table entries kept and dropped are
+ * recorded per semantics in <code>Stats</code>.
+ */
+@Uninterruptible
+public final class ReferenceProcessing {
+  private static final int SOFT = 0;
+  private static final int WEAK = 1;
+  private static final int PHANTOM = 2;
+  private static final int FINALIZABLE = 3;
+
+  private static final String[] NAMES = { "soft", "weak", "phantom", "finalizable" };
+  private static final Timer[] time = new Timer[NAMES.length];
+  private static final EventCounter[] live = new EventCounter[NAMES.length];
+  private static final EventCounter[] dropped = new EventCounter[NAMES.length];
+
+  static {
+    for (int i = 0; i < NAMES.length; i++) {
+      time[i] = new Timer("refs." + NAMES[i], false, true);
+      live[i] = new EventCounter("refs." + NAMES[i] + ".live", true, true);
+      dropped[i] = new EventCounter("refs." + NAMES[i] + ".dropped", true, true);
+    }
+  }
+
+  private ReferenceProcessing() {}
+
+  private static int index(ReferenceProcessor processor) {
+    if (processor == VM.softReferences) return SOFT;
+    if (processor == VM.weakReferences) return WEAK;
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(processor == VM.phantomReferences);
+    return PHANTOM;
+  }
+
+  /**
+   * Scan a table of references.
+   *
+   * @param collector the calling collector
+   * @param processor the references to scan
+   * @param trace the trace of the calling collector
+   * @param nursery {@code true} if it is safe to only scan new references
+   * @param retain whether to retain the referents of reachable references
+   * @param primary whether the calling collector is the primary one
+   */
+  public static void scan(CollectorContext collector, ReferenceProcessor processor, TraceLocal trace,
+                          boolean nursery, boolean retain, boolean primary) {
+    final int i = index(processor);
+    int before = 0;
+    if (primary) {
+      time[i].start();
+      before = processor.countWaitingReferences();
+    }
+    processor.parallelScan(trace, nursery, retain);
+    collector.rendezvous();
+    if (primary) {
+      processor.scanFinish(trace, nursery, retain);
+      if (!retain) {
+        final int after = processor.countWaitingReferences();
+        live[i].inc(after);
+        dropped[i].inc(before - after);
+      }
+      time[i].stop();
+    }
+  }
+
+  /**
+   * Forward a table of references, after the objects have moved.
+   *
+   * @param collector the calling collector
+   * @param processor the references to forward
+   * @param trace the trace of the calling collector
+   * @param nursery the nursery collection hint
+   * @param primary whether the calling collector is the primary one
+   */
+  public static void forward(CollectorContext collector, ReferenceProcessor processor, TraceLocal trace,
+                             boolean nursery, boolean primary) {
+    final int i = index(processor);
+    if (primary) time[i].start();
+    processor.parallelForward(trace, nursery);
+    collector.rendezvous();
+    if (primary) {
+      processor.forwardFinish(trace, nursery);
+      time[i].stop();
+    }
+  }
+
+  /**
+   * Scan the table of finalizable objects.
+   *
+   * @param collector the calling collector
+   * @param trace the trace of the calling collector
+   * @param nursery {@code true} if it is safe to only scan new entries
+   * @param primary whether the calling collector is the primary one
+   */
+  public static void scanFinalizable(CollectorContext collector, TraceLocal trace, boolean nursery, boolean primary) {
+    int before = 0;
+    if (primary) {
+      time[FINALIZABLE].start();
+      before = VM.finalizableProcessor.count();
+    }
+    VM.finalizableProcessor.parallelScan(trace, nursery);
+    collector.rendezvous();
+    if (primary) {
+      VM.finalizableProcessor.scanFinish(trace, nursery);
+      final int after = VM.finalizableProcessor.count();
+      live[FINALIZABLE].inc(after);
+      dropped[FINALIZABLE].inc(before - after);
+      time[FINALIZABLE].stop();
+    }
+  }
+
+  /**
+   * Forward the table of finalizable objects, after the objects have moved.
+   *
+   * @param collector the calling collector
+   * @param trace the trace of the calling collector
+   * @param nursery the nursery collection hint
+   * @param primary whether the calling collector is the primary one
+   */
+  public static void forwardFinalizable(CollectorContext collector, TraceLocal trace, boolean nursery, boolean primary) {
+    if (primary) time[FINALIZABLE].start();
+    VM.finalizableProcessor.parallelForward(trace, nursery);
+    collector.rendezvous();
+    if (primary) {
+      VM.finalizableProcessor.forwardFinish(trace, nursery);
+      time[FINALIZABLE].stop();
+    }
+  }
+}
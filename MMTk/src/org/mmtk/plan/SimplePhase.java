@@ -12,6 +12,7 @@
  */
 package org.mmtk.plan;
 
+import org.mmtk.utility.statistics.Histogram;
 import org.mmtk.utility.statistics.Timer;
 import org.mmtk.utility.Log;
 
@@ -26,6 +27,9 @@ public final class SimplePhase extends Phase {
    * Instance fields
    */
 
+  /** The durations of this phase */
+  final Histogram histogram;
+
   /**
    * Construct a phase given just a name and a global/local ordering
    * scheme.
@@ -34,6 +38,7 @@ public final class SimplePhase extends Phase {
    */
   protected SimplePhase(String name) {
     super(name);
+    histogram = new Histogram("phase.", name);
   }
 
   /**
@@ -44,6 +49,7 @@ public final class SimplePhase extends Phase {
    */
   protected SimplePhase(String name, Timer timer) {
     super(name, timer);
+    histogram = new Histogram("phase.", name);
   }
 
   @Override
@@ -12,8 +12,12 @@
  */
 package org.mmtk.plan;
 
+import org.mmtk.utility.Atomic;
 import org.mmtk.utility.deque.SharedDeque;
+import org.mmtk.utility.deque.WorkStealingDeque;
+import org.mmtk.utility.options.Options;
 import org.mmtk.policy.RawPageSpace;
+import org.mmtk.vm.VM;
 
 import org.vmmagic.pragma.*;
 
@@ -21,27 +25,134 @@ import org.vmmagic.pragma.*;
  * This abstract class implements the core functionality for a transitive
  * closure over the heap.  This class holds the global state, TraceLocal
  * and its super-classes handle per-thread state.
+ *
+ * Each TraceLocal keeps its gray objects in its own work-stealing deque and
+ * steals from the deques of the other TraceLocals of the same trace when it
+ * runs out of work. Objects that do not fit in a deque overflow into
+ * <code>valuePool</code>, which is shared by all threads.
+ *
+ * A thread that runs out of work keeps looking for work to steal until
+ * every thread working on the trace is out of work. Threads only stop
+ * working once their own deque and the shared pool are empty, so gray
+ * objects are never left behind, whichever thread stops first.
  */
 @Uninterruptible
 public class Trace {
 
+  /** log2 of the number of gray objects a per-thread deque holds */
+  static final int LOG_GRAY_DEQUE_WORDS = 12;
+  /** TraceLocals beyond this many use the shared pool only */
+  private static final int MAX_GRAY_DEQUES = 128;
+
   // Global pools for load-balancing deques
   final SharedDeque valuePool;
   final SharedDeque rootLocationPool;
 
+  private final RawPageSpace metaDataSpace;
+  /** Per-thread gray object deques, indexed by registration order */
+  private final WorkStealingDeque[] grayDeques = new WorkStealingDeque[MAX_GRAY_DEQUES];
+  private final Atomic.Int grayDequeCount = new Atomic.Int();
+  /** Threads in <code>completeTrace</code> that are not out of work */
+  private final Atomic.Int activeWorkers = new Atomic.Int();
+  /** Cached value of the work stealing option for the current pass */
+  boolean workStealing = true;
+
   /**
    * @param metaDataSpace the space to use for allocation for this
    *  instance
    */
   public Trace(RawPageSpace metaDataSpace) {
+    this.metaDataSpace = metaDataSpace;
     valuePool = new SharedDeque("valuePool",metaDataSpace, 1);
     rootLocationPool = new SharedDeque("rootLocations", metaDataSpace, 1);
   }
 
+  /**
+   * Create the gray object deque of a new TraceLocal.
+   *
+   * @return the index of the new deque, or -1 if there are too many already
+   */
+  @Interruptible
+  int registerGrayDeque() {
+    final int index = grayDequeCount.add(1);
+    if (index >= MAX_GRAY_DEQUES) return -1;
+    grayDeques[index] = new WorkStealingDeque(metaDataSpace, LOG_GRAY_DEQUE_WORDS, 1);
+    return index;
+  }
+
+  WorkStealingDeque grayDeque(int index) {
+    return grayDeques[index];
+  }
+
+  /**
+   * Steal a gray object from the deque of another thread, starting with the
+   * deque after the thief's own.
+   *
+   * @param thiefIndex The index of the calling thread's deque, which must be empty
+   * @return true if an object was moved to the thief's deque
+   */
+  boolean steal(int thiefIndex) {
+    final WorkStealingDeque thief = grayDeques[thiefIndex];
+    int count = grayDequeCount.get();
+    if (count > MAX_GRAY_DEQUES) count = MAX_GRAY_DEQUES;
+    for (int i = 1; i < count; i++) {
+      int victim = thiefIndex + i;
+      if (victim >= count) victim -= count;
+      final WorkStealingDeque deque = grayDeques[victim];
+      if (deque != null && !deque.isEmpty() && deque.stealInto(thief)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * A thread starts working on the trace.
+   */
+  void startWork() {
+    activeWorkers.add(1);
+  }
+
+  /**
+   * A thread working on the trace ran out of work of its own. Wait until
+   * there is either work in the shared pool or the deque of another
+   * thread, or no thread working on the trace has any work left.
+   *
+   * @param thiefIndex The index of the calling thread's deque, or -1
+   * @return true if the caller should look for work again, false if it
+   * has stopped working on the trace
+   */
+  boolean awaitWork(int thiefIndex) {
+    activeWorkers.add(-1);
+    while (true) {
+      if (hasVisibleWork(thiefIndex)) {
+        activeWorkers.add(1);
+        return true;
+      }
+      if (activeWorkers.get() == 0) return false;
+      VM.memory.combinedLoadBarriers();
+    }
+  }
+
+  /**
+   * @param thiefIndex The index of the calling thread's deque, or -1
+   * @return whether the shared pool or the deque of another thread has work
+   */
+  private boolean hasVisibleWork(int thiefIndex) {
+    if (valuePool.enqueuedPages() > 0) return true;
+    if (!workStealing || thiefIndex < 0) return false;
+    int count = grayDequeCount.get();
+    if (count > MAX_GRAY_DEQUES) count = MAX_GRAY_DEQUES;
+    for (int i = 0; i < count; i++) {
+      final WorkStealingDeque deque = grayDeques[i];
+      if (i != thiefIndex && deque != null && !deque.isEmpty()) return true;
+    }
+    return false;
+  }
+
   /**
    * Prepare for a new collection pass.
    */
   public void prepareNonBlocking() {
+    workStealing = Options.workStealing.getValue();
     valuePool.prepareNonBlocking();
     rootLocationPool.prepareNonBlocking();
   }
@@ -51,6 +162,7 @@ public class Trace {
    * All active GC threads take part.
    */
   public void prepare() {
+    workStealing = Options.workStealing.getValue();
     valuePool.prepare();
     rootLocationPool.prepareNonBlocking();
   }
@@ -59,6 +171,7 @@ public class Trace {
    * Release resources after completing a collection pass.
    */
   public void release() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(activeWorkers.get() == 0);
     valuePool.reset();
     rootLocationPool.reset();
   }
@@ -38,8 +38,13 @@ public abstract class TraceLocal extends TransitiveClosure {
    * Instance variables
    */
 
-  /** gray objects */
+  /** gray objects that overflowed, or were pushed with work stealing disabled */
   protected final ObjectReferenceDeque values;
+  /** gray objects, other threads of the same trace steal from here */
+  private final WorkStealingDeque grayDeque;
+  /** index of <code>grayDeque</code> in the trace, or -1 if there is none */
+  private final int grayDequeIndex;
+  private final Trace trace;
   /** delayed root slots */
   protected final AddressDeque rootLocations;
 
@@ -67,6 +72,9 @@ public abstract class TraceLocal extends TransitiveClosure {
     super(specializedScan);
     values = new ObjectReferenceDeque("value", trace.valuePool);
     rootLocations = new AddressDeque("roots", trace.rootLocationPool);
+    this.trace = trace;
+    grayDequeIndex = trace.registerGrayDeque();
+    grayDeque = grayDequeIndex < 0 ? null : trace.grayDeque(grayDequeIndex);
   }
 
   /****************************************************************************
@@ -198,13 +206,45 @@ public abstract class TraceLocal extends TransitiveClosure {
   @Override
   @Inline
   public final void processNode(ObjectReference object) {
-    values.push(object);
+    if (grayDeque == null || !trace.workStealing || !grayDeque.push(object.toAddress())) {
+      values.push(object);
+    }
+  }
+
+  /**
+   * Take the next gray object: the most recent one from this thread's own
+   * deque, then one from the shared pool, and only then one stolen from
+   * another thread. Never waits for other threads.
+   *
+   * @return the object, or <code>null</code> if no work could be found
+   */
+  @Inline
+  protected final ObjectReference popGray() {
+    if (grayDeque != null && grayDeque.pop()) return grayDeque.popped0().toObjectReference();
+    final ObjectReference object = values.popNoWait();
+    if (!object.isNull()) return object;
+    if (grayDeque != null && trace.workStealing && trace.steal(grayDequeIndex) && grayDeque.pop()) {
+      return grayDeque.popped0().toObjectReference();
+    }
+    return ObjectReference.nullReference();
   }
 
   /**
-   * Flush the local buffers of all deques.
+   * @return whether this thread has gray objects of its own left
+   */
+  @Inline
+  protected final boolean hasLocalGray() {
+    return (grayDeque != null && !grayDeque.isEmpty()) || !values.isEmptyNoWait();
+  }
+
+  /**
+   * Flush the local buffers of all deques. Gray objects in this thread's
+   * own deque are moved to the shared pool.
    */
   public final void flush() {
+    if (grayDeque != null) {
+      while (grayDeque.pop()) values.push(grayDeque.popped0().toObjectReference());
+    }
     values.flushLocal();
     rootLocations.flushLocal();
   }
@@ -463,6 +503,7 @@ public abstract class TraceLocal extends TransitiveClosure {
   }
 
   public void release() {
+    if (grayDeque != null) grayDeque.reset();
     values.reset();
     rootLocations.reset();
   }
@@ -480,7 +521,8 @@ public abstract class TraceLocal extends TransitiveClosure {
 
   /**
    * Finishing processing all GC work.  This method iterates until all work queues
-   * are empty.
+   * are empty, stealing from the other threads working on the trace until
+   * they have run out of work too.
    */
   @Inline
   public void completeTrace() {
@@ -490,13 +532,13 @@ public abstract class TraceLocal extends TransitiveClosure {
     }
     logMessage(5, "processing gray objects");
     assertMutatorRemsetsFlushed();
+    trace.startWork();
     do {
-      while (!values.isEmpty()) {
-        ObjectReference v = values.pop();
+      for (ObjectReference v = popGray(); !v.isNull(); v = popGray()) {
         scanObject(v);
       }
       processRememberedSets();
-    } while (!values.isEmpty());
+    } while (hasLocalGray() || trace.awaitWork(grayDequeIndex));
     assertMutatorRemsetsFlushed();
   }
 
@@ -512,14 +554,13 @@ public abstract class TraceLocal extends TransitiveClosure {
     logMessage(4, "Continuing GC in parallel (incremental)");
     logMessage(5, "processing gray objects");
     int units = 0;
-    do {
-      while (!values.isEmpty() && units < workLimit) {
-        ObjectReference v = values.pop();
-        scanObject(v);
-        units++;
-      }
-    } while (!values.isEmpty() && units < workLimit);
-    return values.isEmpty();
+    while (units < workLimit) {
+      ObjectReference v = popGray();
+      if (v.isNull()) return true;
+      scanObject(v);
+      units++;
+    }
+    return !hasLocalGray();
   }
 
   /**
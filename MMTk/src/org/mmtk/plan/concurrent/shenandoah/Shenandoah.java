@@ -48,11 +48,28 @@ public class Shenandoah extends Concurrent {
   public final Trace validateTrace = new Trace(metaDataSpace);
   public static AddressArray relocationSet;
 
+  /**
+   * In load reference barrier mode, references are resolved when they are
+   * loaded from the heap, and only while evacuation is in progress. Stores,
+   * compares and primitive accesses then need no indirection at all.
+   */
+  public static final boolean LOAD_REFERENCE_BARRIER = VM.activePlan.constraints().shenandoahLoadReferenceBarrier();
+
+  public static final ShenandoahPacer pacer = new ShenandoahPacer();
+  /**
+   * Set when a collection is requested while a cycle is in flight. The rest
+   * of the cycle then runs stop-the-world rather than starting a new one.
+   */
+  static boolean degenerated = false;
+  private int degeneratedCycles = 0;
+
   static {
     Options.g1ReservePercent = new G1ReservePercent();
     Options.g1InitiatingHeapOccupancyPercent = new G1InitiatingHeapOccupancyPercent();
     Options.g1GCLiveThresholdPercent = new G1GCLiveThresholdPercent();
     Options.g1HeapWastePercent = new G1HeapWastePercent();
+    Options.shenandoahPacing = new ShenandoahPacing();
+    Options.shenandoahPacingMaxDelay = new ShenandoahPacingMaxDelay();
     regionSpace.makeAllocAsMarked();
     smallCodeSpace.makeAllocAsMarked();
     nonMovingSpace.makeAllocAsMarked();
@@ -164,6 +181,9 @@ public class Shenandoah extends Concurrent {
       Phase.scheduleGlobal   (STACK_ROOTS),
       Phase.scheduleCollector(ROOTS),
       Phase.scheduleGlobal   (ROOTS),
+      // Evacuates the roots through the evacuate trace before any region is
+      // evacuated: the load reference barrier only heals heap slots, so
+      // mutators must not hold references into the relocation set
       Phase.scheduleCollector(FLUSH_COLLECTOR),
       Phase.scheduleCollector(EVACUATE),
       Phase.scheduleCollector(EVACUATE_RELEASE),
@@ -229,6 +249,18 @@ public class Shenandoah extends Concurrent {
   @Override
   @Inline
   public void collectionPhase(short phaseId) {
+    if (phaseId == SET_BARRIER_ACTIVE) {
+      pacer.setup((long) getPagesUsed() << Constants.LOG_BYTES_IN_PAGE, pagesBeforeReserve());
+      super.collectionPhase(phaseId);
+      return;
+    }
+
+    if (phaseId == CLEAR_BARRIER_ACTIVE) {
+      pacer.disable();
+      super.collectionPhase(phaseId);
+      return;
+    }
+
     if (phaseId == PREPARE) {
       super.collectionPhase(PREPARE);
       regionSpace.prepare();
@@ -246,6 +278,17 @@ public class Shenandoah extends Concurrent {
       return;
     }
 
+    if (phaseId == COMPLETE) {
+      if (degenerated) {
+        degenerated = false;
+        degeneratedCycles += 1;
+        if (Options.verbose.getValue() >= 1) Log.writeln("[Shenandoah: degenerated cycle finished stop-the-world]");
+      }
+      if (Options.verbose.getValue() >= 1) ShenandoahMutator.reportPacing(false);
+      super.collectionPhase(COMPLETE);
+      return;
+    }
+
     if (phaseId == EVACUATE_PREPARE) {
       evacuateTrace.prepare();
       return;
@@ -272,11 +315,13 @@ public class Shenandoah extends Concurrent {
 
     if (phaseId == SET_BROOKS_BARRIER_ACTIVE) {
       brooksBarrierActive = true;
+      pacer.setup(relocationSet.length(), pagesBeforeReserve());
       return;
     }
 
     if (phaseId == CLEAR_BROOKS_BARRIER_ACTIVE) {
       brooksBarrierActive = false;
+      pacer.disable();
       return;
     }
 
@@ -316,12 +361,29 @@ public class Shenandoah extends Concurrent {
   final float RESERVE_PERCENT = Options.g1ReservePercent.getValue() / 100f;
 //  final float INIT_HEAP_OCCUPANCY_PERCENT = 1f - Options.g1InitiatingHeapOccupancyPercent.getValue() / 100f;
 
+  /** @return the pages that can be allocated before a collection is required */
+  private int pagesBeforeReserve() {
+    return getPagesAvail() - (int) (getTotalPages() * RESERVE_PERCENT);
+  }
+
+  /**
+   * Also the point where mutators acquiring regions during a concurrent phase
+   * are paced, unless they are evacuating an object in a barrier.
+   */
   @Override
   protected boolean collectionRequired(boolean spaceFull, Space space) {
     int totalPages = getTotalPages();
     if (getPagesAvail() < totalPages * RESERVE_PERCENT) {
       return true;
     }
+    if (!spaceFull && space == regionSpace && pacer.isActive() && VM.activePlan.isMutator()) {
+      ShenandoahMutator mutator = (ShenandoahMutator) VM.activePlan.mutator();
+      if (mutator.evacuating) {
+        pacer.charge(Region.PAGES_IN_REGION);
+      } else {
+        mutator.paced(pacer.pace(Region.PAGES_IN_REGION));
+      }
+    }
     return super.collectionRequired(spaceFull, space);
 //    final int totalPages = getTotalPages();
 //    final boolean heapFull = ((totalPages - getPagesReserved()) * 10) < totalPages;
@@ -373,6 +435,17 @@ final float INIT_HEAP_OCCUPANCY_PERCENT = Options.g1InitiatingHeapOccupancyPerce
     return super.getPagesUsed() + regionSpace.reservedPages();
   }
 
+  @Override
+  @Interruptible
+  public void notifyExit(int value) {
+    super.notifyExit(value);
+    if (Options.verbose.getValue() >= 1) {
+      Log.write("[Shenandoah: ", degeneratedCycles);
+      Log.writeln(" degenerated cycles]");
+      ShenandoahMutator.reportPacing(true);
+    }
+  }
+
   @Override
   public boolean willNeverMove(ObjectReference object) {
     if (Space.isInSpace(RS, object)) return false;
@@ -408,6 +481,13 @@ final float INIT_HEAP_OCCUPANCY_PERCENT = Options.g1InitiatingHeapOccupancyPerce
       Word priorStatusWord = RegionSpace.ForwardingWord.attemptToForward(object);
       if (RegionSpace.ForwardingWord.stateIsForwardedOrBeingForwarded(priorStatusWord)) {
         return RegionSpace.ForwardingWord.spinAndGetForwardedObject(object, priorStatusWord);
+      } else if (VM.activePlan.isMutator()) {
+        // Other threads spin on the object until it is copied, so the copy must not be paced
+        ShenandoahMutator mutator = (ShenandoahMutator) VM.activePlan.mutator();
+        mutator.evacuating = true;
+        ObjectReference newObject = RegionSpace.ForwardingWord.forwardObjectWithinMutatorContext(object, ALLOC_RS);
+        mutator.evacuating = false;
+        return newObject;
       } else {
         return RegionSpace.ForwardingWord.forwardObjectWithinMutatorContext(object, ALLOC_RS);
       }
@@ -416,6 +496,22 @@ final float INIT_HEAP_OCCUPANCY_PERCENT = Options.g1InitiatingHeapOccupancyPerce
     }
   }
 
+  /**
+   * Slow path of the load reference barrier, taken while evacuation is in
+   * progress. Evacuates the object if it is still in the relocation set, and
+   * heals the slot it was loaded from. The slot is only updated if it still
+   * holds the stale reference, so a racing store is never lost.
+   */
+  @NoInline
+  static public ObjectReference loadReferenceBarrierSlow(Address slot, ObjectReference object) {
+    if (object.isNull()) return object;
+    ObjectReference newObject = getForwardingPointerAndForwardIfNecessary(object);
+    if (newObject.toAddress().NE(object.toAddress()) && !slot.isZero()) {
+      slot.attempt(object, newObject);
+    }
+    return newObject;
+  }
+
   @Inline
   static public ObjectReference getForwardingPointer(ObjectReference object) {
     if (object.toAddress().LE(VM.AVAILABLE_START)) return object;
@@ -17,6 +17,7 @@ import org.mmtk.plan.concurrent.ConcurrentCollector;
 import org.mmtk.policy.Region;
 import org.mmtk.policy.RegionSpace;
 import org.mmtk.utility.Atomic;
+import org.mmtk.utility.Constants;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.RegionAllocator;
 import org.mmtk.utility.options.Options;
@@ -83,6 +84,7 @@ public class ShenandoahCollector extends ConcurrentCollector {
   private static boolean concurrentEagerCleanupExecuted = false;
   private static boolean concurrentCleanupExecuted = false;
   private static final Atomic.Int atomicCounter = new Atomic.Int();
+  private static boolean finishEvacuation = false;
 
   @Inline
   private void evacuateRegions(boolean concurrent) {
@@ -104,6 +106,7 @@ public class ShenandoahCollector extends ConcurrentCollector {
 //        Log.writeln("Evacuating ", region);
         Region.linearScan(evacuationLinearScan, region);
       }
+      if (concurrent) Shenandoah.pacer.reportWork(1);
       if (concurrent && group.isAborted()) {
         break;
       }
@@ -198,14 +201,22 @@ public class ShenandoahCollector extends ConcurrentCollector {
         evacuateRegions(false);
         rendezvous();
       } else {
+        // Concurrent evacuation was interrupted, finish it if there is room
+        // to copy the rest, otherwise leave the remaining regions in place
+        if (primary) finishEvacuation = remainingEvacuationPages() < global().getPagesAvail();
+        rendezvous();
         int index;
         while ((index = atomicCounter.add(1)) < Shenandoah.relocationSet.length()) {
           Address region = Shenandoah.relocationSet.get(index);
-          if (!region.isZero()) {
+          if (region.isZero()) continue;
+          if (finishEvacuation) {
+            Region.linearScan(evacuationLinearScan, region);
+          } else {
             Shenandoah.relocationSet.set(index, Address.zero());
             Region.setRelocationState(region, false);
           }
         }
+        rendezvous();
       }
       return;
     }
@@ -273,6 +284,28 @@ public class ShenandoahCollector extends ConcurrentCollector {
     super.collectionPhase(phaseId, primary);
   }
 
+  /** @return the pages needed to copy the live objects of the regions not evacuated yet */
+  private static int remainingEvacuationPages() {
+    long bytes = 0;
+    for (int i = atomicCounter.get(); i < Shenandoah.relocationSet.length(); i++) {
+      Address region = Shenandoah.relocationSet.get(i);
+      if (!region.isZero()) bytes += Region.usedSize(region);
+    }
+    return (int) (bytes >> Constants.LOG_BYTES_IN_PAGE) + Region.PAGES_IN_REGION;
+  }
+
+  /**
+   * A collection requested while a cycle is in flight continues the cycle
+   * stop-the-world, the concurrent phases left run as their atomic versions.
+   */
+  @Override
+  public void collect() {
+    if (!Phase.isPhaseStackEmpty() && !Plan.isInternalTriggeredCollection()) {
+      Shenandoah.degenerated = true;
+    }
+    super.collect();
+  }
+
   @Override
   protected boolean concurrentTraceComplete() {
     if (!global().markTrace.hasWork()) {
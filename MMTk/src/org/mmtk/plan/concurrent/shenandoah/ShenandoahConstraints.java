@@ -48,9 +48,11 @@ public class ShenandoahConstraints extends ConcurrentConstraints {
   }
 
 
+  // With the load reference barrier, mutators only ever see to-space
+  // objects, so only reference loads and the SATB stores need barriers.
 
   public boolean needsObjectAddressComparisonBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsJavaLangReferenceReadBarrier() {
@@ -58,147 +60,147 @@ public class ShenandoahConstraints extends ConcurrentConstraints {
   }
 
   public boolean needsBooleanWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsBooleanReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean booleanBulkCopySupported() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsByteWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsByteReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean byteBulkCopySupported() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsCharWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsCharReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean charBulkCopySupported() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsShortWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsShortReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean shortBulkCopySupported() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsIntWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsIntReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean intBulkCopySupported() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsLongWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsLongReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean longBulkCopySupported() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsFloatWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsFloatReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean floatBulkCopySupported() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsDoubleWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsDoubleReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean doubleBulkCopySupported() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsWordWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsWordReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean wordBulkCopySupported() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsAddressWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsAddressReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean addressBulkCopySupported() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsExtentWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsExtentReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean extentBulkCopySupported() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsOffsetWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsOffsetReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean offsetBulkCopySupported() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsObjectReferenceWriteBarrier() {
@@ -210,11 +212,11 @@ public class ShenandoahConstraints extends ConcurrentConstraints {
   }
 
   public boolean needsObjectReferenceNonHeapWriteBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean needsObjectReferenceNonHeapReadBarrier() {
-    return true;
+    return !shenandoahLoadReferenceBarrier();
   }
 
   public boolean objectReferenceBulkCopySupported() {
@@ -16,6 +16,7 @@ import org.mmtk.plan.Trace;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.plan.regional.Regional;
 import org.mmtk.policy.Space;
+import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.ObjectReference;
@@ -27,10 +28,27 @@ import org.vmmagic.unboxed.ObjectReference;
 @Uninterruptible
 public class ShenandoahMarkTraceLocal extends TraceLocal {
 
+  /** Scanned bytes are reported to the pacer in batches of this size */
+  private static final int PACER_REPORT_BYTES = 64 << 10;
+  private int unreportedBytes = 0;
+
   public ShenandoahMarkTraceLocal(Trace trace) {
     super(Shenandoah.SCAN_MARK, trace);
   }
 
+  @Override
+  @Inline
+  protected void scanObject(ObjectReference object) {
+    super.scanObject(object);
+    if (Shenandoah.pacer.isActive()) {
+      unreportedBytes += VM.objectModel.getCurrentSize(object);
+      if (unreportedBytes >= PACER_REPORT_BYTES) {
+        Shenandoah.pacer.reportWork(unreportedBytes);
+        unreportedBytes = 0;
+      }
+    }
+  }
+
 
   @Override
   protected boolean overwriteReferenceDuringTrace() {
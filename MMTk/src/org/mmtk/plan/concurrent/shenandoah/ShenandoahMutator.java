@@ -13,10 +13,13 @@
 package org.mmtk.plan.concurrent.shenandoah;
 
 import org.mmtk.plan.MutatorContext;
+import org.mmtk.plan.Plan;
 import org.mmtk.plan.StopTheWorldMutator;
 import org.mmtk.plan.TraceWriteBuffer;
 import org.mmtk.policy.Region;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.Atomic;
+import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.utility.alloc.RegionAllocator;
 import org.mmtk.vm.VM;
@@ -52,6 +55,13 @@ public class ShenandoahMutator extends ShenandoahMutatorBarriers {
   private static final boolean REMSET_MARK = false;
   private static final boolean REMSET_FORWARD = true;
   private boolean currentRemSet = REMSET_MARK;
+  /** Pacing stalls of this mutator since the last report */
+  private int stalls = 0;
+  private long stallNanos = 0;
+  /** Whether this mutator is copying an object in a barrier, which must not be paced */
+  boolean evacuating = false;
+  private static final Atomic.Int totalStalls = new Atomic.Int();
+  private static final Atomic.Long totalStallNanos = new Atomic.Long();
 
   /****************************************************************************
    *
@@ -97,6 +107,44 @@ public class ShenandoahMutator extends ShenandoahMutatorBarriers {
     Shenandoah.initializeIndirectionPointer(object);
   }
 
+  /** Account for a pacing stall of this mutator */
+  @Inline
+  final void paced(long nanos) {
+    if (nanos == 0) return;
+    stalls += 1;
+    stallNanos += nanos;
+    totalStalls.add(1);
+    totalStallNanos.add(nanos);
+    Plan.mutatorStallTime.record(nanos);
+  }
+
+  /**
+   * Log the pacing stalls of each mutator since the last report, or the
+   * total of all mutators. Per mutator reports are made while the world is
+   * stopped.
+   */
+  static void reportPacing(boolean total) {
+    if (total) {
+      Log.write("[Shenandoah pacing: ", totalStalls.get());
+      Log.write(" stalls, ");
+      Log.write(VM.statistics.nanosToMillis(totalStallNanos.get()), 3);
+      Log.writeln(" ms]");
+      return;
+    }
+    VM.activePlan.resetMutatorIterator();
+    ShenandoahMutator m;
+    while ((m = (ShenandoahMutator) VM.activePlan.getNextMutator()) != null) {
+      if (m.stalls == 0) continue;
+      Log.write("[Shenandoah pacing: mutator ", m.getId());
+      Log.write(" stalled ", m.stalls);
+      Log.write(" times, ");
+      Log.write(VM.statistics.nanosToMillis(m.stallNanos), 3);
+      Log.writeln(" ms]");
+      m.stalls = 0;
+      m.stallNanos = 0;
+    }
+  }
+
   @Override
   public Allocator getAllocatorFromSpace(Space space) {
     if (space == Shenandoah.regionSpace) return ra;
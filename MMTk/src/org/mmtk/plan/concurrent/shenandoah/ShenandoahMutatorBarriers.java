@@ -9,11 +9,25 @@ import org.vmmagic.unboxed.*;
 
 import static org.mmtk.plan.concurrent.shenandoah.Shenandoah.getForwardingPointer;
 
+/**
+ * Shenandoah barriers.
+ *
+ * By default every access resolves its object through the Brooks pointer.
+ * With <code>Shenandoah.LOAD_REFERENCE_BARRIER</code>, references loaded from
+ * the heap are resolved, and their slots healed, while evacuation is in
+ * progress. Roots are evacuated before it starts, so mutators only ever hold
+ * to-space references and the other accesses need no barrier at all.
+ */
 @Uninterruptible
 public abstract class ShenandoahMutatorBarriers extends ConcurrentMutator {
   @Inline
   @Override
   public void objectReferenceWrite(ObjectReference src, Address slot, ObjectReference tgt, Word metaDataA, Word metaDataB, int mode) {
+    if (Shenandoah.LOAD_REFERENCE_BARRIER) {
+      if (barrierActive) checkAndEnqueueReference(slot.loadObjectReference());
+      VM.barriers.objectReferenceWrite(src, tgt, metaDataA, metaDataB, mode);
+      return;
+    }
     ObjectReference newSrc = getForwardingPointer(src);
     Address newSlot = newSrc.toAddress().plus(metaDataA.toOffset());
     if (barrierActive) checkAndEnqueueReference(getForwardingPointer(newSlot.loadObjectReference()));
@@ -23,6 +37,18 @@ public abstract class ShenandoahMutatorBarriers extends ConcurrentMutator {
 
   @Override
   public boolean objectReferenceTryCompareAndSwap(ObjectReference src, Address slot, ObjectReference old, ObjectReference tgt, Word metaDataA, Word metaDataB, int mode) {
+    if (Shenandoah.LOAD_REFERENCE_BARRIER) {
+      boolean result = VM.barriers.objectReferenceTryCompareAndSwap(src, old, tgt, metaDataA, metaDataB, mode);
+      if (!result && Shenandoah.brooksBarrierActive) {
+        // The slot may still hold the from-space copy of old
+        ObjectReference current = slot.loadObjectReference();
+        if (current.toAddress().NE(old.toAddress()) && Shenandoah.loadReferenceBarrierSlow(slot, current).toAddress().EQ(old.toAddress())) {
+          result = VM.barriers.objectReferenceTryCompareAndSwap(src, old, tgt, metaDataA, metaDataB, mode);
+        }
+      }
+      if (result && barrierActive) checkAndEnqueueReference(old);
+      return result;
+    }
     ObjectReference newTarget = getForwardingPointer(tgt);
     ObjectReference newSrc = getForwardingPointer(tgt);
     boolean result = VM.barriers.objectReferenceTryCompareAndSwap(newSrc, old, newTarget, metaDataA, metaDataB, mode);
@@ -34,6 +60,20 @@ public abstract class ShenandoahMutatorBarriers extends ConcurrentMutator {
   }
 
   @Inline public boolean objectReferenceBulkCopy(ObjectReference src, Offset srcOffset, ObjectReference dst, Offset dstOffset, int bytes) {
+    if (Shenandoah.LOAD_REFERENCE_BARRIER) {
+      Address srcCursor = src.toAddress().plus(srcOffset);
+      Address dstCursor = dst.toAddress().plus(dstOffset);
+      Address limit = dstCursor.plus(bytes);
+      while (dstCursor.LT(limit)) {
+        if (barrierActive) checkAndEnqueueReference(dstCursor.loadObjectReference());
+        ObjectReference ref = srcCursor.loadObjectReference();
+        if (Shenandoah.brooksBarrierActive) ref = Shenandoah.loadReferenceBarrierSlow(srcCursor, ref);
+        dstCursor.store(ref);
+        srcCursor = srcCursor.plus(Constants.BYTES_IN_ADDRESS);
+        dstCursor = dstCursor.plus(Constants.BYTES_IN_ADDRESS);
+      }
+      return true;
+    }
     Address srcCursor = getForwardingPointer(src).toAddress().plus(srcOffset);
     Address dstCursor = getForwardingPointer(dst).toAddress().plus(dstOffset);
     Address limit = dstCursor.plus(bytes);
@@ -47,12 +87,21 @@ public abstract class ShenandoahMutatorBarriers extends ConcurrentMutator {
   }
 
   @Inline public ObjectReference javaLangReferenceReadBarrier(ObjectReference ref) {
+    if (Shenandoah.LOAD_REFERENCE_BARRIER) {
+      if (Shenandoah.brooksBarrierActive) ref = Shenandoah.loadReferenceBarrierSlow(Address.zero(), ref);
+      return super.javaLangReferenceReadBarrier(ref);
+    }
     return super.javaLangReferenceReadBarrier(getForwardingPointer(ref));
   }
 
   @Inline
   @Override
   public ObjectReference objectReferenceRead(ObjectReference src, Address slot, Word metaDataA, Word metaDataB, int mode) {
+    if (Shenandoah.LOAD_REFERENCE_BARRIER) {
+      ObjectReference ref = VM.barriers.objectReferenceRead(src, metaDataA, metaDataB, mode);
+      if (Shenandoah.brooksBarrierActive) ref = Shenandoah.loadReferenceBarrierSlow(slot, ref);
+      return ref;
+    }
     return getForwardingPointer(VM.barriers.objectReferenceRead(getForwardingPointer(src), metaDataA, metaDataB, mode));
   }
 
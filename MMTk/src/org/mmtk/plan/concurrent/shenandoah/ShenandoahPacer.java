@@ -0,0 +1,115 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.concurrent.shenandoah;
+
+import org.mmtk.plan.Plan;
+import org.mmtk.utility.Atomic;
+import org.mmtk.utility.options.Options;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * Allocation pacing for the concurrent phases.
+ *
+ * When a concurrent phase starts, the pages mutators may still allocate
+ * before the heap runs into the reserve are the budget for the phase.
+ * Mutators should not use up a larger fraction of the budget than the
+ * fraction of the phase's work the collectors have done. A mutator that
+ * gets ahead is stalled on its next page acquisition for its own
+ * allocation, for up to
+ *
+ *   ShenandoahPacingMaxDelay * (1 - completedWork / totalWork)
+ *
+ * or until the collectors catch up, the phase ends or a collection is
+ * requested. The units of work are up to the phase: bytes scanned while
+ * marking, regions evacuated.
+ *
+ * Pages a mutator acquires to evacuate an object in a barrier are only
+ * charged: the object is being forwarded, and collectors wait for it.
+ *
+ * The stall spins, since the page acquisition path is uninterruptible.
+ */
+@Uninterruptible
+public class ShenandoahPacer {
+  private volatile boolean active = false;
+  private long totalWork;
+  private int budgetPages;
+  private final Atomic.Long completedWork = new Atomic.Long();
+  private final Atomic.Int allocatedPages = new Atomic.Int();
+
+  /**
+   * Start pacing a concurrent phase. Called while the world is stopped.
+   *
+   * @param work the estimated work of the phase
+   * @param freePages the pages mutators may allocate before the heap is full
+   */
+  public void setup(long work, int freePages) {
+    if (!Options.shenandoahPacing.getValue()) return;
+    totalWork = work > 0 ? work : 1;
+    budgetPages = freePages > 0 ? freePages : 1;
+    completedWork.set(0);
+    allocatedPages.set(0);
+    active = true;
+  }
+
+  /** Stop pacing, at the end of a concurrent phase */
+  public void disable() {
+    active = false;
+  }
+
+  @Inline
+  public boolean isActive() {
+    return active;
+  }
+
+  /** Called by collectors as they make progress */
+  @Inline
+  public void reportWork(long work) {
+    if (active) completedWork.add(work);
+  }
+
+  /**
+   * Charge a page acquisition to the budget, without stalling.
+   *
+   * @param pages the pages acquired
+   */
+  @Inline
+  public void charge(int pages) {
+    allocatedPages.add(pages);
+  }
+
+  /**
+   * Charge a page acquisition to the budget, and stall the calling mutator
+   * if it is ahead of the collectors.
+   *
+   * @param pages the pages acquired
+   * @return the time stalled, in nanoseconds
+   */
+  @NoInline
+  public long pace(int pages) {
+    final double allocated = (allocatedPages.add(pages) + pages) / (double) budgetPages;
+    double done = completedWork.get() / (double) totalWork;
+    if (allocated <= done) return 0;
+    if (done > 1) done = 1;
+    final long start = VM.statistics.nanoTime();
+    final long deadline = start + (long) (Options.shenandoahPacingMaxDelay.getValue() * 1e6 * (1 - done));
+    long now = start;
+    while (active && now < deadline && completedWork.get() < allocated * totalWork
+        && !Plan.controlCollectorContext.isRequested()) {
+      now = VM.statistics.nanoTime();
+    }
+    return now - start;
+  }
+}
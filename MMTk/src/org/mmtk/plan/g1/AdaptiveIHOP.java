@@ -0,0 +1,94 @@
+package org.mmtk.plan.g1;
+
+import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * Adaptive initiating heap occupancy.
+ *
+ * Concurrent marking should start early enough to finish before the heap
+ * runs into the G1ReservePercent reserve, assuming mutators keep allocating
+ * at the current rate while it runs:
+ *
+ *   threshold = maxRegions * (1 - reserve) - allocationRate * markingTime
+ *
+ * - allocationRate  is the number of eden and humongous regions acquired per
+ *                   nanosecond of wall time, sampled at the end of each GC;
+ * - markingTime     is the wall time from the start to the end of a concurrent
+ *                   mark that ran to completion. A GC requested while marking
+ *                   takes the mark over in its pause, and is not sampled.
+ *
+ * Both are tracked as decaying averages. Until one mark has completed, the
+ * static threshold from the plan constraints is used. The threshold never
+ * drops below the minimum young generation size or MIN_THRESHOLD, where
+ * marking would restart right after every GC.
+ */
+@Uninterruptible
+public class AdaptiveIHOP {
+  static final float MIN_THRESHOLD = 0.1f;
+
+  private final float initialThreshold = G1.constraints().g1InitiatingHeapOccupancy();
+  private float threshold = initialThreshold;
+
+  private final PauseTimePredictor.DecayingAverage allocationRate = new PauseTimePredictor.DecayingAverage();
+  private final PauseTimePredictor.DecayingAverage markingTime = new PauseTimePredictor.DecayingAverage();
+
+  private long lastSampleTime = 0;
+  private long lastSampleRegions = 0;
+  private long markStartTime = 0;
+
+  /** The committed heap ratio to start concurrent marking at */
+  public float threshold() {
+    return threshold;
+  }
+
+  /** Called at the end of every GC, samples the allocation rate since the previous one */
+  public void sampleAllocation(long allocatedRegions) {
+    long now = VM.statistics.nanoTime();
+    if (lastSampleTime != 0 && now > lastSampleTime) {
+      allocationRate.add(((double) (allocatedRegions - lastSampleRegions)) / ((double) (now - lastSampleTime)));
+    }
+    lastSampleTime = now;
+    lastSampleRegions = allocatedRegions;
+  }
+
+  public void markingStarted() {
+    markStartTime = VM.statistics.nanoTime();
+  }
+
+  public void markingFinished() {
+    if (markStartTime == 0) return;
+    markingTime.add((double) (VM.statistics.nanoTime() - markStartTime));
+    markStartTime = 0;
+    update();
+  }
+
+  /** A mark that was taken over by a full GC is not a sample of the concurrent marking time */
+  public void markingAborted() {
+    markStartTime = 0;
+  }
+
+  private void update() {
+    final int maxRegions = G1.regionSpace.maxRegions();
+    if (maxRegions == 0) return;
+    final float target = 1f - Options.g1ReservePercent.getValue() / 100f;
+    final double regionsDuringMark = allocationRate.predict() * markingTime.predict();
+    float ratio = target - (float) (regionsDuringMark / maxRegions);
+    final float floor = Math.max(MIN_THRESHOLD, G1.predictor.minNurseryRatio);
+    if (ratio < floor) ratio = floor;
+    threshold = ratio;
+    if (Options.verbose.getValue() >= 1) {
+      Log.write("[G1 IHOP: threshold ");
+      Log.write(threshold * 100f, 1);
+      Log.write("%, marking ");
+      Log.write(VM.statistics.nanosToMillis((long) markingTime.predict()), 3);
+      Log.write(" ms, ");
+      Log.write(regionsDuringMark, 1);
+      Log.write(" regions allocated while marking, reserve ");
+      Log.write(Options.g1ReservePercent.getValue(), 1);
+      Log.writeln("%]");
+    }
+  }
+}
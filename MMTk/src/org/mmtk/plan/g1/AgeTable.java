@@ -0,0 +1,79 @@
+package org.mmtk.plan.g1;
+
+import org.mmtk.policy.region.Region;
+import org.mmtk.utility.Atomic;
+import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * Survivor ages and the tenuring threshold.
+ *
+ * Every young GC records the bytes copied into survivor regions by the age
+ * the objects have after the copy. The threshold for the next young GC is
+ * the lowest age at which the survivors of that age and younger together
+ * exceed TargetSurvivorRatio percent of the survivor capacity, as in HotSpot:
+ * when survivors overflow, the oldest ones are promoted first.
+ *
+ * The survivor capacity is 1 / SURVIVOR_RATIO of the young generation target.
+ */
+@Uninterruptible
+public class AgeTable {
+  private static final int SURVIVOR_RATIO = 8;
+
+  private final Atomic.Long[] bytes = new Atomic.Long[G1.MAX_AGE + 1];
+  private int tenuringThreshold = G1.MAX_AGE;
+
+  public AgeTable() {
+    for (int i = 0; i < bytes.length; i++) bytes[i] = new Atomic.Long();
+  }
+
+  /** Objects of this age or older are promoted */
+  public int tenuringThreshold() {
+    return tenuringThreshold;
+  }
+
+  /** Add the ages recorded by one collector, and clear them */
+  public void merge(long[] localBytes) {
+    for (int i = 1; i < bytes.length; i++) {
+      if (localBytes[i] == 0) continue;
+      bytes[i].add(localBytes[i]);
+      localBytes[i] = 0;
+    }
+  }
+
+  /** Called at the end of a young GC */
+  public void computeTenuringThreshold() {
+    final int maxThreshold = Options.maxTenuringThreshold.getValue();
+    final double youngRegions = G1.regionSpace.maxRegions() * G1.predictor.nurseryRatio;
+    final long capacity = (long) (youngRegions / SURVIVOR_RATIO) << Region.LOG_BYTES_IN_REGION;
+    final long desired = capacity * Options.targetSurvivorRatio.getValue() / 100;
+    long total = 0;
+    int age = 1;
+    while (age < bytes.length) {
+      total += bytes[age].get();
+      if (total > desired) break;
+      age++;
+    }
+    tenuringThreshold = age < maxThreshold ? age : maxThreshold;
+    if (Options.verbose.getValue() >= 2) print(desired, maxThreshold);
+    for (int i = 0; i < bytes.length; i++) bytes[i].set(0);
+  }
+
+  private void print(long desired, int maxThreshold) {
+    Log.write("[G1 tenuring: threshold ", tenuringThreshold);
+    Log.write(" (max ", maxThreshold);
+    Log.write("), desired survivor size ", desired >> 10);
+    Log.writeln(" KB]");
+    long total = 0;
+    for (int age = 1; age < bytes.length; age++) {
+      final long ageBytes = bytes[age].get();
+      if (ageBytes == 0) continue;
+      total += ageBytes;
+      Log.write("  age ", age);
+      Log.write(": ", ageBytes);
+      Log.write(" bytes, ", total);
+      Log.writeln(" total");
+    }
+  }
+}
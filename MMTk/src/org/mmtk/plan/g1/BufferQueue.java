@@ -54,7 +54,7 @@ public class BufferQueue {
     }
 
     @Inline
-    private void enqueueInternal(Address node) {
+    private int enqueueInternal(Address node) {
         if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Conversions.isPageAligned(node));
         Address headSlot = ObjectReference.fromObject(this).toAddress().plus(HEAD_OFFSET);
         Address oldHead;
@@ -63,7 +63,7 @@ public class BufferQueue {
             oldHead = headSlot.loadAddress();
             newHead.store(oldHead, NEXT_OFFSET);
         } while (!headSlot.attempt(oldHead, newHead));
-        size.add(1);
+        return size.add(1) + 1;
     }
 
     @Inline
@@ -82,14 +82,17 @@ public class BufferQueue {
     @Inline
     public void enqueue(Address buffer) {
         Address node = Conversions.pageAlign(buffer);
-        enqueueInternal(node);
+        int queuedBuffers = enqueueInternal(node);
         if (G1.ENABLE_CONCURRENT_REFINEMENT) {
-            if (size.get() > 5 && !ConcurrentRefinementWorker.forceIdle) {
-                ConcurrentRefinementWorker.GROUP.triggerCycle();
-            }
+            ConcurrentRefinementWorker.notifyEnqueued(queuedBuffers);
         }
     }
 
+    @Inline
+    public int size() {
+        return size.get();
+    }
+
     @Inline
     public Address dequeue() {
         Address node = dequeueInternal();
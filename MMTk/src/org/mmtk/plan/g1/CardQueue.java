@@ -1,6 +1,7 @@
 package org.mmtk.plan.g1;
 
 import org.mmtk.utility.Log;
+import org.mmtk.vm.Lock;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.NoInline;
@@ -14,6 +15,15 @@ public class CardQueue {
   private Address buffer = Address.zero();
   private int index = 0;
   private int size = 0;
+  private final Lock lock = VM.newLock("hot-card-queue");
+
+  /** Enqueue from one of several concurrent refinement threads */
+  @Inline
+  public void enqueue(Address card) {
+    lock.acquire();
+    enqeueueNonAtomic(card);
+    lock.release();
+  }
 
   @Inline
   public void enqeueueNonAtomic(Address card) {
@@ -1,10 +1,12 @@
 package org.mmtk.plan.g1;
 
+import org.mmtk.plan.MutatorContext;
 import org.mmtk.plan.Phase;
 import org.mmtk.plan.Plan;
 import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.policy.Space;
 import org.mmtk.policy.region.*;
+import org.mmtk.utility.Atomic;
 import org.mmtk.utility.Constants;
 import org.mmtk.utility.Conversions;
 import org.mmtk.utility.Log;
@@ -37,25 +39,53 @@ public class CardRefinement {
       // obj.slot -> field
       if (RegionSpace.isCrossRegionRef(source, slot, field) && Space.isInSpace(G1.REGION_SPACE, field)) {
         Address region = Region.of(field);
-        Address remset = Region.getAddress(region, Region.MD_REMSET);
-        if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!remset.isZero());
         Address card = Card.of(source);
         RemSet.addCard(region, card);
       }
     }
   };
 
+  /**
+   * Clean and scan a dirty card.
+   *
+   * @return true if the card was dirty
+   */
   @Inline
   public static boolean refineOneCard(final Address card, boolean markDead) {
     if (CardTable.get(card) != Card.DIRTY) return false;
     CardTable.set(card, Card.NOT_DIRTY);
+    // Make the clean card visible before scanning, so a racing store either
+    // dirties the card again or is seen by the scan
+    VM.memory.fence();
     if (Space.isInSpace(G1.REGION_SPACE, card) && Region.getInt(Region.of(card), Region.MD_GENERATION) != Region.OLD) {
-      return false;
+      return true;
     }
     Card.linearScan(card, cardRefineLinearScan, false, null);
     return true;
   }
 
+  /** Cards cleaned by concurrent refinement since the last pause, added once per buffer */
+  static final Atomic.Int cleanedCards = new Atomic.Int();
+
+  /**
+   * Number of dirty cards at the start of a pause: the cards dirtied by each
+   * mutator, less the cards cleaned by concurrent refinement since the last
+   * pause. All dirty cards are refined during a pause, so the counters start
+   * again from zero. Must be called with all mutators stopped.
+   */
+  public static int collectDirtyCardCount() {
+    int dirtyCards = 0;
+    VM.activePlan.resetMutatorIterator();
+    MutatorContext m;
+    while ((m = VM.activePlan.getNextMutator()) != null) {
+      dirtyCards += ((G1Mutator) m).takeDirtyCardCount();
+    }
+    VM.activePlan.resetMutatorIterator();
+    dirtyCards -= cleanedCards.get();
+    cleanedCards.set(0);
+    return dirtyCards < 0 ? 0 : dirtyCards;
+  }
+
   @Inline
   private static void refineOneBuffer(final Address buffer) {
     final Address limit = buffer.plus(CardRefinement.filledRSBufferQueue.LOCAL_BUFFER_SIZE);
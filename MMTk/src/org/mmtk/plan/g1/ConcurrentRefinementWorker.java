@@ -1,26 +1,37 @@
 package org.mmtk.plan.g1;
 
-import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.ParallelCollector;
 import org.mmtk.plan.ParallelCollectorGroup;
-import org.mmtk.policy.region.Card;
 import org.mmtk.policy.region.CardTable;
 import org.mmtk.utility.Constants;
-import org.mmtk.utility.Log;
-import org.mmtk.vm.Lock;
-import org.mmtk.vm.Monitor;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.*;
 import org.vmmagic.unboxed.Address;
 
+/**
+ * Concurrent card refinement threads.
+ *
+ * The pool is sized from the <code>Threads</code> option. Threads are activated
+ * gradually, keyed off the number of filled buffers in
+ * <code>CardRefinement.filledRSBufferQueue</code>:
+ *
+ * - green zone  (depth <= greenZone):  no refinement, cards are left for the pause;
+ * - yellow zone (depth <= yellowZone): worker i is active while depth > activationThreshold(i);
+ * - red zone    (depth > redZone):     mutators also refine a buffer every time they flush one.
+ */
 @Uninterruptible
 @NonMoving
 public class ConcurrentRefinementWorker extends ParallelCollector {
   public static final ParallelCollectorGroup GROUP = new ParallelCollectorGroup("card-refine");
-  public static Monitor monitor;// = VM.newHeavyCondLock("x");
-  public Lock lock = VM.newLock("cx");
   static boolean forceIdle = false;
 
+  // Refinement zones, in number of filled buffers
+  static int workers = 1;
+  static int greenZone = 1;
+  static int yellowZone = 3;
+  static int redZone = 6;
+  static int activationStep = 2;
+
   public static void pause() {
     forceIdle = true;
     GROUP.abortCycle();
@@ -32,9 +43,43 @@ public class ConcurrentRefinementWorker extends ParallelCollector {
   }
 
   @Interruptible
-  public static void spawn() {
-    monitor = VM.newHeavyCondLock("x");
-    GROUP.initGroup(1, ConcurrentRefinementWorker.class);
+  public static void spawn(int numThreads) {
+    workers = numThreads;
+    greenZone = numThreads;
+    yellowZone = greenZone * 3;
+    redZone = yellowZone * 2;
+    activationStep = (yellowZone - greenZone) / numThreads;
+    if (activationStep < 1) activationStep = 1;
+    GROUP.initGroup(numThreads, ConcurrentRefinementWorker.class);
+  }
+
+  /** Queue depth at which worker <code>id</code> starts refining */
+  @Inline
+  static int activationThreshold(int id) {
+    return greenZone + activationStep * (id + 1);
+  }
+
+  /** Queue depth at or below which worker <code>id</code> goes back to park */
+  @Inline
+  static int deactivationThreshold(int id) {
+    return greenZone + activationStep * id;
+  }
+
+  /**
+   * Called after a filled buffer is enqueued. Only wakes up the pool when the
+   * queue depth hits the activation threshold of one of the workers.
+   */
+  @Inline
+  static void notifyEnqueued(int queuedBuffers) {
+    if (forceIdle || queuedBuffers <= greenZone) return;
+    if (queuedBuffers > activationThreshold(workers - 1)) return;
+    if ((queuedBuffers - greenZone) % activationStep != 0) return;
+    GROUP.triggerCycle();
+  }
+
+  @Inline
+  static boolean inRedZone() {
+    return CardRefinement.filledRSBufferQueue.size() > redZone;
   }
 
   @Override
@@ -43,55 +88,84 @@ public class ConcurrentRefinementWorker extends ParallelCollector {
     super.initCollector(id);
   }
 
-
   @Override
   @Unpreemptible
   public void run() {
-//    monitor.lock();
     while (true) {
-//      lock.acquire();
-
-//      monitor.await();
-//      Log.writeln("Park");
       park();
-//      Log.writeln("Refine");
       if (forceIdle) continue;
       refine();
     }
-//    monitor.unlock();
   }
 
-  private boolean refineOneBuffer(final Address buffer) {
-    final Address limit = buffer.plus(CardRefinement.filledRSBufferQueue.LOCAL_BUFFER_SIZE);
+  /**
+   * Refine the cards in one filled buffer.
+   *
+   * @param buffer The buffer to refine
+   * @param abortable Stop early if the refinement cycle is aborted
+   * @return The number of cards processed, or -1 if aborted
+   */
+  @Inline
+  static int refineOneBuffer(final Address buffer, boolean abortable) {
+    final Address limit = buffer.plus(BufferQueue.LOCAL_BUFFER_SIZE);
+    int cards = 0;
+    int cleanedCards = 0;
     for (Address cursor = buffer; cursor.LT(limit); cursor = cursor.plus(Constants.BYTES_IN_ADDRESS)) {
-      if (GROUP.isAborted()) return false;
+      if (abortable && GROUP.isAborted()) {
+        CardRefinement.cleanedCards.add(cleanedCards);
+        return -1;
+      }
       Address card = cursor.loadAddress();
-      if (card.isZero()) return true;
+      if (card.isZero()) break;
+      cards += 1;
       if (G1.ENABLE_HOT_CARD_OPTIMIZATION) {
         int hotness = CardTable.increaseHotness(card);
         if (hotness >= CardTable.HOTNESS_THRESHOLD) {
           // Skip this hot card
           if (hotness == CardTable.HOTNESS_THRESHOLD)
-            CardRefinement.hotCardQueue.enqeueueNonAtomic(card);
+            CardRefinement.hotCardQueue.enqueue(card);
           continue;
         }
       }
-      CardRefinement.refineOneCard(card, false);
+      if (CardRefinement.refineOneCard(card, false)) cleanedCards += 1;
     }
-    return true;
+    CardRefinement.cleanedCards.add(cleanedCards);
+    return cards;
+  }
+
+  /**
+   * A mutator that has just flushed a buffer helps with refinement
+   * if the queue is in the red zone.
+   */
+  @NoInline
+  static void mutatorRefine() {
+    if (forceIdle) return;
+    Address buf = CardRefinement.filledRSBufferQueue.dequeue();
+    if (buf.isZero()) return;
+    long startTime = VM.statistics.nanoTime();
+    int cards = refineOneBuffer(buf, false);
+    CardRefinement.filledRSBufferQueue.release(buf);
+    G1.predictor.stat.mutatorRefineTime.add(VM.statistics.nanoTime() - startTime);
+    G1.predictor.stat.mutatorRefineCards.add(cards);
   }
 
   private void refine() {
-//    Log.writeln("Refine");
-    while (!GROUP.isAborted()) {
+    final int id = parallelWorkerOrdinal();
+    if (CardRefinement.filledRSBufferQueue.size() < activationThreshold(id)) return;
+    long startTime = VM.statistics.nanoTime();
+    int totalCards = 0;
+    while (!GROUP.isAborted() && CardRefinement.filledRSBufferQueue.size() > deactivationThreshold(id)) {
       Address buf = CardRefinement.filledRSBufferQueue.dequeue();
-      if (buf.isZero()) return;
-      boolean complete = refineOneBuffer(buf);
-      if (!complete) {
+      if (buf.isZero()) break;
+      int cards = refineOneBuffer(buf, true);
+      if (cards < 0) {
         CardRefinement.filledRSBufferQueue.enqueue(buf);
-      } else {
-        CardRefinement.filledRSBufferQueue.release(buf);
+        break;
       }
+      CardRefinement.filledRSBufferQueue.release(buf);
+      totalCards += cards;
     }
+    G1.predictor.stat.concurrentRefineTime.add(VM.statistics.nanoTime() - startTime);
+    G1.predictor.stat.concurrentRefineCards.add(totalCards);
   }
 }
@@ -17,18 +17,24 @@ import org.mmtk.policy.region.CardTable;
 import org.mmtk.policy.region.CollectionSet;
 import org.mmtk.policy.region.Region;
 import org.mmtk.policy.region.RegionSpace;
+import org.mmtk.policy.region.RemSet;
 import org.mmtk.policy.Space;
 import org.mmtk.utility.Constants;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.deque.SharedDeque;
+import org.mmtk.utility.heap.HeapGrowthManager;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.options.*;
 import org.mmtk.utility.sanitychecker.SanityChecker;
+import org.mmtk.utility.statistics.DoubleCounter;
+import org.mmtk.utility.statistics.Stats;
 import org.mmtk.vm.VM;
+import org.vmutil.options.BooleanOption;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Interruptible;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.pragma.Unpreemptible;
+import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.AddressArray;
 import org.vmmagic.unboxed.ObjectReference;
 import org.vmmagic.unboxed.Word;
@@ -46,6 +52,7 @@ public class G1 extends G1Base {
   public static final int ALLOC_G1_EDEN     = Plan.ALLOCATORS + 1;
   public static final int ALLOC_G1_SURVIVOR = Plan.ALLOCATORS + 2;
   public static final int ALLOC_G1_OLD      = Plan.ALLOCATORS + 3;
+  public static final int ALLOC_HUMONGOUS   = Plan.ALLOCATORS + 4;
   public static final int SCAN_MARK = 0;
   public static final int SCAN_EVACUATE = 1;
   public static final int SCAN_NURSERY = 2;
@@ -57,24 +64,51 @@ public class G1 extends G1Base {
     public static final int YOUNG = 0;
     public static final int MIXED = 1;
     public static final int FULL = 2;
+    /** Mark and slide within regions, used when a full GC could not free the heap */
+    public static final int FULL_COMPACT = 3;
   }
   public static final PauseTimePredictor predictor = new PauseTimePredictor();
+  public static final AdaptiveIHOP ihop = new AdaptiveIHOP();
+  public static final AgeTable ageTable = new AgeTable();
 
   public final Trace markTrace = new Trace(metaDataSpace);
   public final Trace evacuateTrace = new Trace(metaDataSpace);
   public final Trace nurseryTrace = new Trace(metaDataSpace);
+  public final Trace compactTrace = new Trace(metaDataSpace);
   public final SharedDeque modbufPool = new SharedDeque("modBufs", metaDataSpace, 1);
   protected boolean inConcurrentCollection = false;
+  private boolean heapExhausted = false;
+  private boolean lastCollectionExhausted = false;
 
   //public static boolean concurrentMarkingInProgress = false;
 
+  /** Remembered set meta data after each GC, in bytes */
+  static final DoubleCounter remsetCommittedBytes = new DoubleCounter("remset.committedBytes", true, true, true);
+  static final DoubleCounter remsetCommittedBytesPerRegion = new DoubleCounter("remset.committedBytesPerRegion", true, true, true);
+  /** Region space memory after each GC, in bytes */
+  static final DoubleCounter heapCommittedBytes = new DoubleCounter("heap.committedBytes", true, true, true);
+  static final DoubleCounter heapReservedBytes = new DoubleCounter("heap.reservedBytes", true, true, true);
+
   static {
+    Options.g1ConcurrentMarking = new G1ConcurrentMarking();
+    Options.g1RememberedSets = new G1RememberedSets();
+    Options.g1ConcurrentRefinement = new G1ConcurrentRefinement();
+    Options.g1HotCardOptimization = new G1HotCardOptimization();
+    Options.g1GenerationalMode = new G1GenerationalMode();
+    Options.g1PauseTimePredictor = new G1PauseTimePredictor();
+    Options.g1XorBarrier = new G1XorBarrier();
+    Options.g1RegionSize = new G1RegionSize();
     Options.g1ReservePercent = new G1ReservePercent();
     Options.g1InitiatingHeapOccupancyPercent = new G1InitiatingHeapOccupancyPercent();
     Options.g1GCLiveThresholdPercent = new G1GCLiveThresholdPercent();
     Options.g1MaxNewSizePercent = new G1MaxNewSizePercent();
     Options.g1NewSizePercent = new G1NewSizePercent();
     Options.g1HeapWastePercent = new G1HeapWastePercent();
+    Options.maxGCPauseMillis = new MaxGCPauseMillis();
+    Options.g1UncommitDelay = new G1UncommitDelay();
+    Options.g1ConcGCThreads = new G1ConcGCThreads();
+    Options.maxTenuringThreshold = new MaxTenuringThreshold();
+    Options.targetSurvivorRatio = new TargetSurvivorRatio();
   }
 
 
@@ -83,22 +117,58 @@ public class G1 extends G1Base {
    */
   public G1() {
     collection = -1;
+    Options.maxGCPauseMillis.setDefaultValue(15);
+    Options.g1MaxNewSizePercent.setDefaultValue(40);
+    Options.g1ConcurrentMarking.setDefaultValue(ENABLE_CONCURRENT_MARKING);
+    Options.g1RememberedSets.setDefaultValue(ENABLE_REMEMBERED_SETS);
+    Options.g1ConcurrentRefinement.setDefaultValue(ENABLE_CONCURRENT_REFINEMENT);
+    Options.g1HotCardOptimization.setDefaultValue(ENABLE_HOT_CARD_OPTIMIZATION);
+    Options.g1GenerationalMode.setDefaultValue(ENABLE_GENERATIONAL_GC);
+    Options.g1PauseTimePredictor.setDefaultValue(ENABLE_PAUSE_TIME_PREDICTOR);
+    Options.g1XorBarrier.setDefaultValue(USE_XOR_BARRIER);
+  }
+
+  /**
+   * The maximum heap size is known by now, and no region has been acquired
+   * yet, so this is where the region size is selected.
+   */
+  @Override
+  @Interruptible
+  public void enableAllocation() {
+    super.enableAllocation();
+    regionSpace.selectRegionSize(HeapGrowthManager.getMaxHeapSize().toLong());
   }
 
   @Override
   @Interruptible("Spawning collector threads requires allocation")
   protected void spawnCollectorThreads(int numThreads) {
     if (ENABLE_CONCURRENT_REFINEMENT) {
-      ConcurrentRefinementWorker.spawn();
-//      ConcurrentRefinementWorker.GROUP.initGroup(1, ConcurrentRefinementWorker.class);
+      ConcurrentRefinementWorker.spawn(numThreads);
     }
+    UncommitWorker.spawn();
+    predictor.stat.setWorkers(numThreads);
+    G1MarkTraceLocal.createChunkDeques(Math.max(numThreads, concurrentThreadCount(numThreads)));
     super.spawnCollectorThreads(numThreads);
   }
 
+  @Override
+  protected int concurrentThreadCount(int numThreads) {
+    int threads = Options.g1ConcGCThreads.getValue();
+    return threads > 0 ? threads : numThreads;
+  }
+
   @Override
   @Interruptible
   public void processOptions() {
     super.processOptions();
+    selectFeatures();
+    predictor.processOptions();
+    final int regionPages = Options.g1RegionSize.getPages();
+    if (regionPages != 0 && regionPages != Region.PAGES_IN_REGION) {
+      // The VM may parse options after allocation has started, too late to change the heap layout
+      Log.write("Warning: G1 Region Size ignored, regions are ", Region.BYTES_IN_REGION >> 10);
+      Log.writeln(" KB");
+    }
     if (ENABLE_CONCURRENT_MARKING) {
       int oldClosure = Phase.scheduleCollector(CLOSURE);
       int newClosure = Phase.scheduleComplex(concurrentClosure);
@@ -107,6 +177,95 @@ public class G1 extends G1Base {
     }
   }
 
+  /**
+   * Turn off the G1 features disabled by the feature options.
+   *
+   * Barriers, header bits and phases for every feature built into the image
+   * are in place, so a feature can be turned off here but not on. Features
+   * that depend on a turned off one are turned off with it. This runs before
+   * collection is enabled, so no collector or refinement thread has started.
+   */
+  @Interruptible
+  private void selectFeatures() {
+    final boolean builtWithRemSets = ENABLE_REMEMBERED_SETS;
+    ENABLE_CONCURRENT_MARKING = selectFeature(Options.g1ConcurrentMarking, ENABLE_CONCURRENT_MARKING);
+    ENABLE_REMEMBERED_SETS = selectFeature(Options.g1RememberedSets, ENABLE_REMEMBERED_SETS);
+    ENABLE_CONCURRENT_REFINEMENT = ENABLE_REMEMBERED_SETS && selectFeature(Options.g1ConcurrentRefinement, ENABLE_CONCURRENT_REFINEMENT);
+    ENABLE_HOT_CARD_OPTIMIZATION = ENABLE_CONCURRENT_REFINEMENT && selectFeature(Options.g1HotCardOptimization, ENABLE_HOT_CARD_OPTIMIZATION);
+    ENABLE_GENERATIONAL_GC = ENABLE_REMEMBERED_SETS && selectFeature(Options.g1GenerationalMode, ENABLE_GENERATIONAL_GC);
+    ENABLE_PAUSE_TIME_PREDICTOR = ENABLE_REMEMBERED_SETS && selectFeature(Options.g1PauseTimePredictor, ENABLE_PAUSE_TIME_PREDICTOR);
+    ENABLE_YOUNG_CARD_FILTER = ENABLE_GENERATIONAL_GC && ENABLE_YOUNG_CARD_FILTER;
+    USE_XOR_BARRIER = selectFeature(Options.g1XorBarrier, USE_XOR_BARRIER);
+
+    if (builtWithRemSets && !ENABLE_REMEMBERED_SETS) {
+      int oldEvacuate = Phase.scheduleComplex(remsetEvacuatePhase);
+      int newEvacuate = Phase.scheduleComplex(fullTraceEvacuatePhase);
+      ComplexPhase cp = (ComplexPhase) Phase.getPhase(mixedCollection);
+      cp.replacePhase(oldEvacuate, newEvacuate);
+      // Cards dirtied while booting are never refined
+      Address buffer;
+      while (!(buffer = CardRefinement.filledRSBufferQueue.dequeue()).isZero()) {
+        CardRefinement.filledRSBufferQueue.release(buffer);
+      }
+    }
+    if (Options.verbose.getValue() >= 1) {
+      Log.write("[G1 features:");
+      if (ENABLE_CONCURRENT_MARKING) Log.write(" concurrent-marking");
+      if (ENABLE_REMEMBERED_SETS) Log.write(" remsets");
+      if (ENABLE_CONCURRENT_REFINEMENT) Log.write(" refinement");
+      if (ENABLE_HOT_CARD_OPTIMIZATION) Log.write(" hot-cards");
+      if (ENABLE_GENERATIONAL_GC) Log.write(" generational");
+      if (ENABLE_PAUSE_TIME_PREDICTOR) Log.write(" predictor");
+      if (ENABLE_YOUNG_CARD_FILTER) Log.write(" young-card-filter");
+      if (USE_XOR_BARRIER) Log.write(" xor-barrier");
+      Log.writeln("]");
+    }
+  }
+
+  @Interruptible
+  private static boolean selectFeature(BooleanOption option, boolean built) {
+    if (option.getValue() && !built) {
+      Log.write("Warning: ");
+      Log.write(option.getName());
+      Log.writeln(" is not built into this image");
+    }
+    return built && option.getValue();
+  }
+
+  @Override
+  @Interruptible
+  public void notifyExit(int value) {
+    super.notifyExit(value);
+    if (ENABLE_REMEMBERED_SETS && Options.verbose.getValue() >= 1) {
+      Log.write("[G1 cards: ", predictor.stat.enqueuedCards.get());
+      Log.write(" enqueued, ", predictor.stat.concurrentRefineCards.get());
+      Log.write(" refined concurrently, ", predictor.stat.mutatorRefineCards.get());
+      Log.writeln(" refined by mutators]");
+      Log.write("[G1 refinement: ");
+      Log.write(VM.statistics.nanosToMillis(predictor.stat.concurrentRefineTime.get()), 3);
+      Log.write(" ms by refinement threads, ");
+      Log.write(VM.statistics.nanosToMillis(predictor.stat.mutatorRefineTime.get()), 3);
+      Log.write(" ms by mutators, ", predictor.stat.totalDirtyCardsAtPauseStart);
+      Log.write(" cards left for ", predictor.stat.pauses);
+      Log.writeln(" pauses]");
+    }
+    if (Options.verbose.getValue() >= 1) {
+      Log.write("[G1 heap: ", regionSpace.committedBytes() >> 10);
+      Log.write(" KB committed, ", regionSpace.reservedBytes() >> 10);
+      Log.write(" KB reserved, ", regionSpace.uncommittedRegions);
+      Log.writeln(" regions uncommitted]");
+      Log.write("[G1 humongous: ", predictor.stat.humongousObjectsReclaimed);
+      Log.write(" objects, ", predictor.stat.humongousBytesReclaimed >> 10);
+      Log.writeln(" KB reclaimed]");
+      Log.write("[G1 cleanup: ", predictor.stat.cleanupRegions);
+      Log.writeln(" dead regions freed after marking]");
+      Log.write("[G1 copy: ", predictor.stat.totalCopiedBytes >> 10);
+      Log.write(" KB copied by young GCs, ", predictor.stat.totalPlabWasteBytes >> 10);
+      Log.write(" KB PLAB waste, ", predictor.stat.totalRegionWasteBytes >> 10);
+      Log.writeln(" KB region tail waste]");
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -117,8 +276,14 @@ public class G1 extends G1Base {
       Log.writeln(Phase.getName(phaseId));
     }
 
-    if (phaseId == SET_COLLECTION_KIND) inGC = true;
-    if (phaseId == COMPLETE) inGC = false;
+    if (phaseId == SET_COLLECTION_KIND) {
+      inGC = true;
+      UncommitWorker.pause();
+    }
+    if (phaseId == COMPLETE) {
+      inGC = false;
+      UncommitWorker.resume();
+    }
 //
     if (phaseId == SET_BARRIER_ACTIVE) {
       G1Mutator.newMutatorBarrierActive = true;
@@ -142,6 +307,7 @@ public class G1 extends G1Base {
       regionSpace.clearNextMarkTables();
       regionSpace.prepare();
       markTrace.prepareNonBlocking();
+      if (gcKind == GCKind.MIXED) ihop.markingStarted();
       return;
     }
 
@@ -155,6 +321,12 @@ public class G1 extends G1Base {
         modbufPool.reset();//(1);
       }
       markTrace.release();
+      G1MarkTraceLocal.resetChunkDeques();
+      if (gcKind == GCKind.MIXED) {
+        ihop.markingFinished();
+      } else {
+        ihop.markingAborted();
+      }
       if (!ENABLE_REMEMBERED_SETS) {
         VM.memory.globalReleaseVMSpace();
         loSpace.release(true);
@@ -163,13 +335,25 @@ public class G1 extends G1Base {
       return;
     }
 
+    if (phaseId == CLEANUP) {
+      // Refinement must not scan cards of the regions freed here
+      if (ENABLE_CONCURRENT_REFINEMENT) ConcurrentRefinementWorker.pause();
+      int regions = regionSpace.cleanup();
+      predictor.stat.cleanupRegions += regions;
+      if (regions > 0 && Options.verbose.getValue() >= 2) {
+        Log.writeln("[G1 cleanup: freed dead regions ", regions);
+      }
+      return;
+    }
+
     if (phaseId == RELOCATION_SET_SELECTION) {
 //      if (gcKind == GCKind.YOUNG) Log.writeln("Young GC");
 //      if (gcKind == GCKind.MIXED) Log.writeln("Mixed GC");
 //      if (gcKind == GCKind.FULL)  Log.writeln("Full GC");
       if (ENABLE_CONCURRENT_REFINEMENT) ConcurrentRefinementWorker.pause();
 //      Space.printVMMap();
-      predictor.prepare();
+      predictor.prepare(ENABLE_REMEMBERED_SETS ? CardRefinement.collectDirtyCardCount() : 0);
+      regionSpace.eagerHumongousReclaim = gcKind == GCKind.YOUNG && !Phase.concurrentPhaseActive();
       int availablePages = getTotalPages() - getPagesUsed();
       CollectionSet.compute(regionSpace, gcKind, availablePages, predictor);
       return;
@@ -180,7 +364,9 @@ public class G1 extends G1Base {
     }
 
     if (phaseId == EVACUATE_PREPARE) {
-      regionSpace.shiftMarkTables();
+      // Young GCs keep the last mark, the old regions they evacuate as part of
+      // a mixed GC series are traced with it
+      if (gcKind != GCKind.YOUNG) regionSpace.shiftMarkTables();
       if (!ENABLE_REMEMBERED_SETS) {
         VM.memory.globalPrepareVMSpace();
         immortalSpace.prepare();
@@ -198,6 +384,7 @@ public class G1 extends G1Base {
     }
 
     if (phaseId == EVACUATE_RELEASE) {
+      if (regionSpace.eagerHumongousReclaim) regionSpace.reclaimDeadHumongousObjects(true);
       regionSpace.clearRemSetCardsPointingToCollectionSet();
       (gcKind == GCKind.YOUNG ? nurseryTrace : evacuateTrace).release();
       if (G1.gcKind == GCKind.YOUNG) {
@@ -208,12 +395,81 @@ public class G1 extends G1Base {
         VM.memory.globalReleaseVMSpace();
         regionSpace.release();
       }
+      regionSpace.eagerHumongousReclaim = false;
+      releaseUnusedMemory();
+      if (ENABLE_CONCURRENT_REFINEMENT) ConcurrentRefinementWorker.resume();
+      return;
+    }
+
+    if (phaseId == COMPACT_PREPARE) {
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(ENABLE_REMEMBERED_SETS);
+      if (ENABLE_CONCURRENT_REFINEMENT) ConcurrentRefinementWorker.pause();
+      CollectionSet.clearCandidates();
+      predictor.stat.fullCompactions += 1;
+      return;
+    }
+
+    if (phaseId == CALCULATE_FORWARDING) {
+      loSpace.release(true);
+      immortalSpace.release();
+      VM.memory.globalReleaseVMSpace();
+      regionSpace.prepareCompaction();
+      return;
+    }
+
+    if (phaseId == FORWARD_PREPARE) {
+      VM.memory.globalPrepareVMSpace();
+      immortalSpace.prepare();
+      loSpace.prepare(true);
+      compactTrace.prepare();
+      return;
+    }
+
+    if (phaseId == FORWARD_CLOSURE) {
+      return;
+    }
+
+    if (phaseId == FORWARD_RELEASE) {
+      compactTrace.release();
+      loSpace.release(true);
+      immortalSpace.release();
+      VM.memory.globalReleaseVMSpace();
+      return;
+    }
+
+    if (phaseId == COMPACT_RELEASE) {
+      int regionsBefore = regionSpace.committedRegions;
+      regionSpace.releaseCompaction();
+      if (Options.verbose.getValue() >= 1) {
+        Log.write("[G1 full compaction #", predictor.stat.fullCompactions);
+        Log.write(": ", regionsBefore);
+        Log.write(" -> ", regionSpace.committedRegions);
+        Log.writeln(" regions]");
+      }
+      releaseUnusedMemory();
       if (ENABLE_CONCURRENT_REFINEMENT) ConcurrentRefinementWorker.resume();
       return;
     }
 
     if (phaseId == COMPLETE) {
-      predictor.release(gcKind == GCKind.YOUNG);
+      if (gcKind != GCKind.FULL_COMPACT) {
+        predictor.release(gcKind == GCKind.YOUNG && CollectionSet.oldRegionsInCSet == 0);
+        if (gcKind == GCKind.YOUNG) ageTable.computeTenuringThreshold();
+        if (Options.verbose.getValue() >= 2) {
+          Log.write("[G1 copy: ", predictor.stat.nurserySurvivedBytes.get() >> 10);
+          Log.write(" KB copied, ", predictor.stat.plabWasteBytes.get() >> 10);
+          Log.write(" KB PLAB waste, ", predictor.stat.regionWasteBytes.get() >> 10);
+          Log.writeln(" KB region tail waste]");
+        }
+      }
+      ihop.sampleAllocation(regionSpace.allocatedRegions);
+      lastCollectionExhausted = heapExhausted && (gcKind == GCKind.FULL || gcKind == GCKind.FULL_COMPACT);
+      heapExhausted = false;
+      if (Stats.gatheringStats()) {
+        if (ENABLE_REMEMBERED_SETS) statRemSetFootprint();
+        heapCommittedBytes.inc(regionSpace.committedBytes());
+        heapReservedBytes.inc(regionSpace.reservedBytes());
+      }
     }
 
     if (phaseId == Validation.VALIDATE_PREPARE) {
@@ -230,13 +486,44 @@ public class G1 extends G1Base {
     super.collectionPhase(phaseId);
   }
 
-  private static final float G1_INITIATING_HEAP_OCCUPANCY_PERCENT = VM.activePlan.constraints().g1InitiatingHeapOccupancy();
+  /**
+   * Hand back remset chunks and long free regions. Called before concurrent
+   * refinement resumes, as no other thread may acquire pages meanwhile.
+   */
+  private void releaseUnusedMemory() {
+    if (ENABLE_REMEMBERED_SETS) RemSet.reclaimMemory();
+    final int delay = Options.g1UncommitDelay.getValue();
+    if (delay == 0) return;
+    final int regions = regionSpace.uncommitFreeRegions(delay);
+    if (regions > 0 && Options.verbose.getValue() >= 2) {
+      Log.write("[G1 uncommitted ", regions);
+      Log.write(" regions, ", regionSpace.committedBytes() >> 10);
+      Log.writeln(" KB committed]");
+    }
+  }
+
+  private void statRemSetFootprint() {
+    final double committedBytes = RemSet.committedBytesTotal();
+    remsetCommittedBytes.inc(committedBytes);
+    if (regionSpace.committedRegions > 0) {
+      remsetCommittedBytesPerRegion.inc(committedBytes / regionSpace.committedRegions);
+    }
+  }
 
   @Override
   protected boolean concurrentCollectionRequired() {
     if (!ENABLE_CONCURRENT_MARKING) return false;
-    if (!Phase.concurrentPhaseActive()) {
-      if (regionSpace.committedRatio() > G1_INITIATING_HEAP_OCCUPANCY_PERCENT) {
+    // Do not start a new mark before the mixed GCs of the last one are done
+    if (!Phase.concurrentPhaseActive() && !CollectionSet.hasCandidates()) {
+      float committedRatio = regionSpace.committedRatio();
+      if (committedRatio > ihop.threshold()) {
+        if (Options.verbose.getValue() >= 1) {
+          Log.write("[G1 start marking at ");
+          Log.write(committedRatio * 100f, 1);
+          Log.write("% committed, IHOP ");
+          Log.write(ihop.threshold() * 100f, 1);
+          Log.writeln("%]");
+        }
         gcKind = GCKind.MIXED;
         return true;
       }
@@ -248,7 +535,11 @@ public class G1 extends G1Base {
   protected boolean collectionRequired(boolean spaceFull, Space space) {
     boolean heapFull = getPagesReserved() > getTotalPages();
     if (spaceFull || heapFull) {
-      gcKind = GCKind.FULL;
+      // If the last full GC did not free enough memory, the heap is probably
+      // too fragmented for evacuation. Compact it instead.
+      heapExhausted = true;
+      boolean compact = ENABLE_REMEMBERED_SETS && lastCollectionExhausted && !Phase.concurrentPhaseActive();
+      gcKind = compact ? GCKind.FULL_COMPACT : GCKind.FULL;
       return true;
     }
     if (ENABLE_GENERATIONAL_GC && !inGC) {
@@ -354,12 +645,39 @@ public class G1 extends G1Base {
     return true;
   }
 
+  // Object age, the number of young GCs survived, in the header bits above LOG_BIT
+  private static final int AGE_SHIFT = 3;
+  private static final int AGE_BITS = 4;
+  public static final int MAX_AGE = (1 << AGE_BITS) - 1;
+  private static final int AGE_MASK = MAX_AGE << AGE_SHIFT;
+
+  @Inline
+  public static int ageOf(ObjectReference o) {
+    return (VM.objectModel.readAvailableByte(o) & AGE_MASK) >>> AGE_SHIFT;
+  }
+
+  /** Called on a copy made into a survivor region */
+  @Inline
+  public static void incrementAge(ObjectReference o) {
+    final byte value = VM.objectModel.readAvailableByte(o);
+    final int age = (value & AGE_MASK) >>> AGE_SHIFT;
+    if (age == MAX_AGE) return;
+    VM.objectModel.writeAvailableByte(o, (byte) ((value & ~AGE_MASK) | ((age + 1) << AGE_SHIFT)));
+  }
+
+  /**
+   * Young objects stay in survivor regions until they reach the tenuring
+   * threshold, old objects are copied to old regions.
+   */
   @Inline
   public static int pickCopyAllocator(ObjectReference o) {
     if (!ENABLE_GENERATIONAL_GC) return ALLOC_G1_OLD;
     switch (Region.getInt(Region.of(o), Region.MD_GENERATION)) {
-      case Region.EDEN: return G1.ALLOC_G1_SURVIVOR;
-      default:          return G1.ALLOC_G1_OLD;
+      case Region.EDEN:
+      case Region.SURVIVOR:
+        return ageOf(o) < ageTable.tenuringThreshold() ? ALLOC_G1_SURVIVOR : ALLOC_G1_OLD;
+      default:
+        return ALLOC_G1_OLD;
     }
   }
 }
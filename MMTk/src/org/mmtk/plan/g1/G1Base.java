@@ -4,6 +4,7 @@ import org.mmtk.plan.Phase;
 import org.mmtk.plan.PlanConstraints;
 import org.mmtk.plan.StopTheWorld;
 import org.mmtk.vm.VM;
+import org.vmmagic.pragma.FinalAfterBoot;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
 
@@ -14,14 +15,21 @@ class G1Base extends StopTheWorld {
     return VM.activePlan.constraints();
   }
   // G1 Features
-  public static final boolean ENABLE_CONCURRENT_MARKING = constraints().g1ConcurrentMarking();
-  public static final boolean ENABLE_REMEMBERED_SETS = constraints().g1RememberedSets();
-  public static final boolean ENABLE_CONCURRENT_REFINEMENT = constraints().g1ConcurrentRefinement();
-  public static final boolean ENABLE_HOT_CARD_OPTIMIZATION = constraints().g1HotCardOptimization();
-  public static final boolean ENABLE_GENERATIONAL_GC = constraints().g1GenerationalGC();
-  public static final boolean ENABLE_PAUSE_TIME_PREDICTOR = constraints().g1PauseTimePredictor();
-  public static final boolean USE_XOR_BARRIER = constraints().g1UseXorBarrier();
+  // The constraints decide what is built into the boot image, the G1 feature
+  // options may turn features off before collection is enabled, see
+  // G1.selectFeatures. Code compiled after boot sees them as constants.
+  @FinalAfterBoot public static boolean ENABLE_CONCURRENT_MARKING = constraints().g1ConcurrentMarking();
+  @FinalAfterBoot public static boolean ENABLE_REMEMBERED_SETS = constraints().g1RememberedSets();
+  @FinalAfterBoot public static boolean ENABLE_CONCURRENT_REFINEMENT = constraints().g1ConcurrentRefinement();
+  @FinalAfterBoot public static boolean ENABLE_HOT_CARD_OPTIMIZATION = constraints().g1HotCardOptimization();
+  @FinalAfterBoot public static boolean ENABLE_GENERATIONAL_GC = constraints().g1GenerationalGC();
+  @FinalAfterBoot public static boolean ENABLE_PAUSE_TIME_PREDICTOR = constraints().g1PauseTimePredictor();
+  @FinalAfterBoot public static boolean USE_XOR_BARRIER = constraints().g1UseXorBarrier();
   public static final boolean FORCE_DRAIN_MODBUF = constraints().g1ForceDrainModbuf();
+  /** Cards of young regions are pre-marked, so the write barrier skips them */
+  @FinalAfterBoot public static boolean ENABLE_YOUNG_CARD_FILTER = ENABLE_GENERATIONAL_GC && constraints().g1YoungCardFilter();
+  /** Regions allocated before the features were selected may still have pre-marked young cards */
+  public static final boolean BUILT_WITH_YOUNG_CARD_FILTER = ENABLE_YOUNG_CARD_FILTER;
 
   private static void requires(boolean x) {
     if (!x) VM.assertions.fail("");
@@ -45,6 +53,7 @@ class G1Base extends StopTheWorld {
   public static final short EVACUATE_CLOSURE         = Phase.createSimple("evacuate-closure", null);
   public static final short EVACUATE_RELEASE         = Phase.createSimple("evacuate-release", null);
   public static final short RELOCATION_SET_SELECTION = Phase.createSimple("relocation-set-selection", null);
+  public static final short CLEANUP                  = Phase.createSimple("cleanup", null);
   public static final short FLUSH_MUTATOR            = Phase.createSimple("flush-mutator", null);
   public static final short SET_BARRIER_ACTIVE       = Phase.createSimple("set-barrier", null);
   public static final short FLUSH_COLLECTOR          = Phase.createSimple("flush-collector", null);
@@ -53,6 +62,14 @@ class G1Base extends StopTheWorld {
   public static final short REFINE_CARDS             = Phase.createSimple("refine-cards", null);
   public static final short REMSET_ROOTS             = Phase.createSimple("remset-roots", null);
   public static final short STAT_REMSET              = Phase.createSimple("stat-remset", null);
+  // Compacting full GC
+  public static final short COMPACT_PREPARE          = Phase.createSimple("compact-prepare", null);
+  public static final short CALCULATE_FORWARDING     = Phase.createSimple("calculate-forwarding", null);
+  public static final short FORWARD_PREPARE          = Phase.createSimple("forward-prepare", null);
+  public static final short FORWARD_CLOSURE          = Phase.createSimple("forward-closure", null);
+  public static final short FORWARD_RELEASE          = Phase.createSimple("forward-release", null);
+  public static final short COMPACT                  = Phase.createSimple("compact-regions", null);
+  public static final short COMPACT_RELEASE          = Phase.createSimple("compact-release", null);
 
   protected static final short preemptConcurrentClosure = Phase.createComplex("preeempt-concurrent-trace", null,
       Phase.scheduleMutator  (FLUSH_MUTATOR),
@@ -146,10 +163,12 @@ class G1Base extends StopTheWorld {
       Phase.scheduleComplex  (rootClosurePhase),
       Phase.scheduleComplex  (refTypeClosurePhase),
       Phase.scheduleComplex  (completeClosurePhase),
+      // Free dead regions
+      Phase.scheduleGlobal   (CLEANUP),
       // Select relocation sets
       Phase.scheduleGlobal   (RELOCATION_SET_SELECTION),
       Phase.schedulePlaceholder(STAT_REMSET),
-      // Evacuate
+      // Evacuate, G1.selectFeatures switches to the full trace if remembered sets are turned off
       Phase.scheduleComplex  (ENABLE_REMEMBERED_SETS ? remsetEvacuatePhase : fullTraceEvacuatePhase),
 
       Validation.scheduledPhase(),
@@ -205,6 +224,68 @@ class G1Base extends StopTheWorld {
       Phase.scheduleComplex  (finishPhase)
   );
 
+  /**
+   * Last resort full GC: mark, then slide the live objects within the regions.
+   * The mark phases are spelled out here since the shared root and ref closure
+   * phases are rewired for concurrent marking.
+   */
+  public static final short fullCompactCollection = Phase.createComplex("full-compact-collection", null,
+      Phase.scheduleComplex  (initPhase),
+      // Mark
+      Phase.scheduleMutator  (PREPARE),
+      Phase.scheduleGlobal   (PREPARE),
+      Phase.scheduleCollector(PREPARE),
+      Phase.scheduleComplex  (prepareStacks),
+      Phase.scheduleCollector(STACK_ROOTS),
+      Phase.scheduleGlobal   (STACK_ROOTS),
+      Phase.scheduleCollector(ROOTS),
+      Phase.scheduleGlobal   (ROOTS),
+      Phase.scheduleGlobal   (CLOSURE),
+      Phase.scheduleCollector(CLOSURE),
+      Phase.scheduleCollector(SOFT_REFS),
+      Phase.scheduleGlobal   (CLOSURE),
+      Phase.scheduleCollector(CLOSURE),
+      Phase.scheduleCollector(WEAK_REFS),
+      Phase.scheduleCollector(FINALIZABLE),
+      Phase.scheduleGlobal   (CLOSURE),
+      Phase.scheduleCollector(CLOSURE),
+      Phase.scheduleCollector(PHANTOM_REFS),
+      Phase.scheduleComplex  (completeClosurePhase),
+      // Compute new locations
+      Phase.scheduleGlobal   (COMPACT_PREPARE),
+      Phase.scheduleGlobal   (REFINE_CARDS),
+      Phase.scheduleMutator  (REFINE_CARDS),
+      Phase.scheduleCollector(REFINE_CARDS),
+      Phase.scheduleGlobal   (CALCULATE_FORWARDING),
+      Phase.scheduleCollector(CALCULATE_FORWARDING),
+      // Update references
+      Phase.scheduleMutator  (FORWARD_PREPARE),
+      Phase.scheduleGlobal   (FORWARD_PREPARE),
+      Phase.scheduleCollector(FORWARD_PREPARE),
+      Phase.scheduleMutator  (PREPARE_STACKS),
+      Phase.scheduleGlobal   (PREPARE_STACKS),
+      Phase.scheduleCollector(STACK_ROOTS),
+      Phase.scheduleGlobal   (STACK_ROOTS),
+      Phase.scheduleCollector(ROOTS),
+      Phase.scheduleGlobal   (ROOTS),
+      Phase.scheduleGlobal   (FORWARD_CLOSURE),
+      Phase.scheduleCollector(FORWARD_CLOSURE),
+      Phase.scheduleCollector(FORWARD_REFS),
+      Phase.scheduleCollector(FORWARD_FINALIZABLE),
+      Phase.scheduleGlobal   (FORWARD_CLOSURE),
+      Phase.scheduleCollector(FORWARD_CLOSURE),
+      Phase.scheduleMutator  (FORWARD_RELEASE),
+      Phase.scheduleCollector(FORWARD_RELEASE),
+      Phase.scheduleGlobal   (FORWARD_RELEASE),
+      // Move objects
+      Phase.scheduleCollector(COMPACT),
+      Phase.scheduleGlobal   (COMPACT_RELEASE),
+
+      Validation.scheduledPhase(),
+
+      Phase.scheduleComplex  (finishPhase)
+  );
+
   @Inline
   short getCollection() {
     if (VM.VERIFY_ASSERTIONS) {
@@ -212,6 +293,7 @@ class G1Base extends StopTheWorld {
         VM.assertions._assert(ENABLE_GENERATIONAL_GC);
       }
     }
+    if (G1.gcKind == G1.GCKind.FULL_COMPACT) return fullCompactCollection;
     return G1.gcKind == G1.GCKind.YOUNG ? nurseryCollection : mixedCollection;
   }
 }
@@ -15,9 +15,12 @@ package org.mmtk.plan.g1;
 import org.mmtk.plan.*;
 import org.mmtk.policy.region.CardTable;
 import org.mmtk.policy.region.Region;
+import org.mmtk.policy.region.RegionCompactor;
+import org.mmtk.policy.region.RemSetScanner;
 import org.mmtk.utility.ForwardingWord;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.RegionAllocator2;
+import org.mmtk.utility.options.Options;
 import org.mmtk.utility.deque.ObjectReferenceDeque;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
@@ -48,16 +51,20 @@ public class G1Collector extends G1CollectorBase {
   protected static final int EVACUATE_TRACE = 1;
   protected static final int NURSERY_TRACE  = 2;
   protected static final int VALIDATE_TRACE = 3;
+  protected static final int COMPACT_TRACE  = 4;
 
   protected final ObjectReferenceDeque modbuf = new ObjectReferenceDeque("modbuf", global().modbufPool);
   protected final G1MarkTraceLocal markTrace = new G1MarkTraceLocal(global().markTrace, modbuf);
   protected final G1EvacuateTraceLocal evacuateTrace = new G1EvacuateTraceLocal(global().evacuateTrace);
   protected final G1NurseryTraceLocal nurseryTrace = new G1NurseryTraceLocal(global().nurseryTrace);
   protected final Validation.TraceLocal validateTrace = new Validation.TraceLocal();
+  protected final RemSetScanner remSetScanner = new RemSetScanner();
+  protected final RegionCompactor compactor = new RegionCompactor(G1.regionSpace);
+  protected final G1CompactTraceLocal compactTrace = new G1CompactTraceLocal(global().compactTrace, compactor);
   protected int currentTrace = MARK_TRACE;
 
-  protected final RegionAllocator2 g1Survivor = new RegionAllocator2(G1.regionSpace, Region.SURVIVOR);
-  protected final RegionAllocator2 g1Old = new RegionAllocator2(G1.regionSpace, Region.OLD);
+  protected final RegionAllocator2 g1Survivor = new RegionAllocator2(G1.regionSpace, Region.SURVIVOR, true);
+  protected final RegionAllocator2 g1Old = new RegionAllocator2(G1.regionSpace, Region.OLD, true);
 
   /****************************************************************************
    *
@@ -89,6 +96,7 @@ public class G1Collector extends G1CollectorBase {
   @Override
   @Inline
   public void postCopy(ObjectReference object, ObjectReference typeRef, int bytes, int allocator) {
+    if (allocator == G1.ALLOC_G1_SURVIVOR) G1.incrementAge(object);
     ForwardingWord.clearForwardingBits(object);
   }
 
@@ -144,7 +152,7 @@ public class G1Collector extends G1CollectorBase {
     }
 
     if (phaseId == G1.REMSET_ROOTS) {
-      G1.regionSpace.iterateToSpaceRemSetRoots(getCurrentTrace(), parallelWorkerOrdinal(), parallelWorkerCount(), G1.gcKind == G1.GCKind.YOUNG);
+      G1.regionSpace.iterateToSpaceRemSetRoots(getCurrentTrace(), remSetScanner, parallelWorkerOrdinal(), parallelWorkerCount(), G1.gcKind == G1.GCKind.YOUNG);
       return;
     }
 
@@ -153,8 +161,9 @@ public class G1Collector extends G1CollectorBase {
       if (VM.VERIFY_ASSERTIONS) {
         if (!G1.ENABLE_GENERATIONAL_GC) VM.assertions._assert(G1.gcKind != G1.GCKind.YOUNG);
       }
-      g1Survivor.adjustTLABSize();
-      g1Old.adjustTLABSize();
+      final long copiedBytes = G1.predictor.stat.lastSurvivedBytes / parallelWorkerCount();
+      g1Survivor.adjustPLABSize(copiedBytes);
+      g1Old.adjustPLABSize(copiedBytes);
       g1Survivor.reset();
       g1Old.reset();
       getCurrentTrace().prepare();
@@ -179,10 +188,61 @@ public class G1Collector extends G1CollectorBase {
       getCurrentTrace().release();
       g1Survivor.reset();
       g1Old.reset();
+      G1.predictor.stat.plabWasteBytes.add(g1Survivor.plabWasteBytes() + g1Old.plabWasteBytes());
+      G1.predictor.stat.regionWasteBytes.add(g1Survivor.regionWasteBytes() + g1Old.regionWasteBytes());
+      g1Survivor.clearWasteBytes();
+      g1Old.clearWasteBytes();
       super.collectionPhase(G1.RELEASE, primary);
       return;
     }
 
+    if (phaseId == G1.CALCULATE_FORWARDING) {
+      compactor.prepare(parallelWorkerOrdinal());
+      compactor.calculateForwardingPointers();
+      return;
+    }
+
+    if (phaseId == G1.FORWARD_PREPARE) {
+      currentTrace = COMPACT_TRACE;
+      compactTrace.prepare();
+      super.collectionPhase(G1.PREPARE, primary);
+      CardTable.clearAllHotnessPar(parallelWorkerOrdinal(), parallelWorkerCount());
+      return;
+    }
+
+    if (phaseId == G1.FORWARD_CLOSURE) {
+      compactTrace.completeTrace();
+      return;
+    }
+
+    if (phaseId == G1.FORWARD_REFS) {
+      // G1 does not need the generic forwarding pass, so this is done here
+      if (!Options.noReferenceTypes.getValue()) {
+        ReferenceProcessing.forward(this, VM.softReferences, compactTrace, false, primary);
+        ReferenceProcessing.forward(this, VM.weakReferences, compactTrace, false, primary);
+        ReferenceProcessing.forward(this, VM.phantomReferences, compactTrace, false, primary);
+      }
+      return;
+    }
+
+    if (phaseId == G1.FORWARD_FINALIZABLE) {
+      if (!Options.noFinalizer.getValue()) {
+        ReferenceProcessing.forwardFinalizable(this, compactTrace, false, primary);
+      }
+      return;
+    }
+
+    if (phaseId == G1.FORWARD_RELEASE) {
+      compactTrace.release();
+      super.collectionPhase(G1.RELEASE, primary);
+      return;
+    }
+
+    if (phaseId == G1.COMPACT) {
+      compactor.compact();
+      return;
+    }
+
     if (phaseId == Validation.VALIDATE_PREPARE) {
       currentTrace = VALIDATE_TRACE;
       validateTrace.prepare();
@@ -214,6 +274,7 @@ public class G1Collector extends G1CollectorBase {
       case EVACUATE_TRACE: return evacuateTrace;
       case NURSERY_TRACE:  return nurseryTrace;
       case VALIDATE_TRACE: return validateTrace;
+      case COMPACT_TRACE:  return compactTrace;
       default:
         VM.assertions.fail("unknown traceLocal");
         return null;
@@ -99,7 +99,7 @@ public class G1CollectorBase extends StopTheWorldCollector {
    * @return whether all work has been completed
    */
   protected boolean concurrentTraceComplete() {
-    if (!global().markTrace.hasWork()) {
+    if (!global().markTrace.hasWork() && G1MarkTraceLocal.chunkDequesEmpty()) {
       return true;
     }
     return false;
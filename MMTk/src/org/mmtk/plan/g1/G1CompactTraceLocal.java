@@ -0,0 +1,98 @@
+package org.mmtk.plan.g1;
+
+import org.mmtk.plan.Plan;
+import org.mmtk.plan.Trace;
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.policy.Space;
+import org.mmtk.policy.region.Card;
+import org.mmtk.policy.region.Region;
+import org.mmtk.policy.region.RegionCompactor;
+import org.mmtk.policy.region.RemSet;
+import org.mmtk.utility.Log;
+import org.mmtk.utility.heap.layout.HeapLayout;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * Reference updating trace of the compacting full GC.
+ *
+ * Every reference is redirected to the location computed by the
+ * <code>RegionCompactor</code>, before any object is moved. Remembered sets
+ * are rebuilt on the way, using the cards the scanned objects will occupy
+ * after compaction.
+ */
+@Uninterruptible
+public class G1CompactTraceLocal extends TraceLocal {
+  private final RegionCompactor compactor;
+  /** Card of the object being scanned, after compaction */
+  private Address sourceCard = Address.zero();
+
+  public G1CompactTraceLocal(Trace trace, RegionCompactor compactor) {
+    super(trace);
+    this.compactor = compactor;
+  }
+
+  @Override
+  @Inline
+  protected void scanObject(ObjectReference object) {
+    if (Space.isInSpace(G1.REGION_SPACE, object) && !Region.isHumongous(Region.of(object))) {
+      compactor.getForwardedReference(object);
+      sourceCard = Card.of(compactor.getForwardedStart());
+    } else {
+      sourceCard = Card.of(object);
+    }
+    super.scanObject(object);
+  }
+
+  @Override
+  @Inline
+  public void processEdge(ObjectReference src, Address slot) {
+    ObjectReference object = VM.activePlan.global().loadObjectReference(slot);
+    ObjectReference newObject = traceObject(object, false);
+    if (!newObject.isNull() && Space.isInSpace(G1.REGION_SPACE, newObject)) {
+      Address region = Region.of(newObject);
+      if (Region.of(sourceCard).NE(region)) RemSet.addCard(region, sourceCard);
+    }
+    VM.activePlan.global().storeObjectReference(slot, newObject);
+  }
+
+  @Override
+  @Inline
+  public boolean isLive(ObjectReference object) {
+    if (object.isNull()) return false;
+    if (Space.isInSpace(G1.REGION_SPACE, object)) {
+      return Region.isHumongous(Region.of(object)) || G1.regionSpace.isLivePrev(object);
+    }
+    if (Space.isInSpace(G1.LOS, object)) return Plan.loSpace.isLive(object);
+    return true;
+  }
+
+  @Override
+  @Inline
+  public ObjectReference traceObject(ObjectReference object) {
+    if (object.isNull()) return object;
+    final int descriptor = HeapLayout.vmMap.getDescriptorForAddress(VM.objectModel.refToAddress(object));
+    if (descriptor == G1.REGION_SPACE) return G1.regionSpace.traceCompactObject(this, object, compactor);
+    if (descriptor == G1.IMMORTAL)     return G1.immortalSpace.traceObject(this, object);
+    if (descriptor == G1.LOS)          return G1.loSpace.traceObject(this, object);
+    if (descriptor == G1.VM_SPACE)     return object;
+    if (VM.VERIFY_ASSERTIONS) {
+      Log.writeln("Failing object => ", object);
+      Space.printVMMap();
+      VM.assertions._assert(false, "No special case for space in traceObject");
+    }
+    return ObjectReference.nullReference();
+  }
+
+  @Override
+  public boolean willNotMoveInCurrentCollection(ObjectReference object) {
+    if (Space.isInSpace(G1.REGION_SPACE, object)) {
+      return false;
+    } else {
+      return super.willNotMoveInCurrentCollection(object);
+    }
+  }
+}
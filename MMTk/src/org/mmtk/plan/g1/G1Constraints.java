@@ -32,7 +32,8 @@ public class G1Constraints extends StopTheWorldConstraints {
   }
   @Override
   public int gcHeaderBits() {
-    return RegionSpace.LOCAL_GC_BITS_REQUIRED;
+    // Forwarding bits, then G1.LOG_BIT and the four age bits
+    return RegionSpace.LOCAL_GC_BITS_REQUIRED + 1 + 4;
   }
   @Override
   public int gcHeaderWords() {
@@ -46,6 +47,10 @@ public class G1Constraints extends StopTheWorldConstraints {
   public int maxNonLOSDefaultAllocBytes() {
     return Region.MAX_ALLOC_SIZE;
   }
+  @Override
+  public boolean objectReferenceBulkCopySupported() {
+    return true;
+  }
 
   // G1 Specific features
   public int g1LogPagesInRegion() { return 8; }
@@ -59,6 +64,7 @@ public class G1Constraints extends StopTheWorldConstraints {
   }
   public boolean g1ForceDrainModbuf() { return false; }
   public boolean g1UseXorBarrier() { return true; }
+  public boolean g1YoungCardFilter() { return true; }
   public float g1FixedNurseryRatio() { return 0.15f; }
 
   // Derived
@@ -12,15 +12,19 @@
  */
 package org.mmtk.plan.g1;
 
+import org.mmtk.plan.ParallelCollector;
 import org.mmtk.plan.Plan;
 import org.mmtk.plan.Trace;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.policy.Space;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.utility.deque.WorkStealingDeque;
 import org.mmtk.utility.heap.layout.HeapLayout;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Interruptible;
+import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.ObjectReference;
@@ -28,10 +32,48 @@ import org.vmmagic.unboxed.ObjectReference;
 /**
  * This class implements the core functionality for a transitive
  * closure over the heap graph.
+ *
+ * Reference arrays longer than <code>ARRAY_CHUNK_ELEMENTS</code> are scanned
+ * one chunk at a time. A chunk task (array, start index) for the rest of the
+ * array is pushed onto the marking thread's own work-stealing deque before
+ * the chunk is scanned, so idle marking threads can steal the remainder of
+ * a large array. Each thread drains its own deque before it leaves a closure,
+ * and steals from the other threads' deques once it runs out of grey objects.
  */
 @Uninterruptible
 public class G1MarkTraceLocal extends TraceLocal {
+  /** Number of elements scanned per chunk of a large reference array */
+  public static final int ARRAY_CHUNK_ELEMENTS = 512;
+  private static final int LOG_CHUNK_DEQUE_WORDS = 12;
+
+  /** One chunk deque per worker ordinal, shared by the parallel and the concurrent workers */
+  private static WorkStealingDeque[] chunkDeques;
+
   private final ObjectReferenceDeque modbuf;
+  private WorkStealingDeque chunks;
+  private int stealCursor = 0;
+
+  @Interruptible
+  static void createChunkDeques(int workers) {
+    chunkDeques = new WorkStealingDeque[workers];
+    for (int i = 0; i < workers; i++) {
+      chunkDeques[i] = new WorkStealingDeque(G1.metaDataSpace, LOG_CHUNK_DEQUE_WORDS, 2);
+    }
+  }
+
+  static boolean chunkDequesEmpty() {
+    for (int i = 0; i < chunkDeques.length; i++) {
+      if (!chunkDeques[i].isEmpty()) return false;
+    }
+    return true;
+  }
+
+  static void resetChunkDeques() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(chunkDequesEmpty());
+    for (int i = 0; i < chunkDeques.length; i++) {
+      chunkDeques[i].reset();
+    }
+  }
 
   public G1MarkTraceLocal(Trace trace, ObjectReferenceDeque modbuf) {
     super(G1.SCAN_MARK, trace);
@@ -103,6 +145,79 @@ public class G1MarkTraceLocal extends TraceLocal {
     }
   }
 
+  @Override
+  @Inline
+  protected void scanObject(ObjectReference object) {
+    final int length = VM.scanning.referenceArrayLength(object);
+    if (length > ARRAY_CHUNK_ELEMENTS) {
+      scanArrayChunk(object, 0, length);
+    } else {
+      super.scanObject(object);
+    }
+  }
+
+  /**
+   * Push the rest of the array as a new chunk task, then scan the chunk
+   * starting at <code>start</code>.
+   */
+  @Inline
+  private void scanArrayChunk(ObjectReference array, int start, int length) {
+    int end = start + ARRAY_CHUNK_ELEMENTS;
+    if (end >= length) {
+      end = length;
+    } else if (!chunkDeque().push(array.toAddress(), Address.fromIntZeroExtend(end))) {
+      // The deque is full, scan the rest of the array here
+      end = length;
+    }
+    VM.scanning.scanArrayRange(this, array, start, end);
+  }
+
+  /**
+   * Scan one chunk from this thread's deque, or one stolen from another thread.
+   *
+   * @return false if no chunk was found
+   */
+  @Inline
+  private boolean processArrayChunk() {
+    final WorkStealingDeque deque = chunkDeque();
+    if (!deque.pop() && !steal(deque)) return false;
+    ObjectReference array = deque.popped0().toObjectReference();
+    scanArrayChunk(array, deque.popped1().toInt(), VM.scanning.referenceArrayLength(array));
+    return true;
+  }
+
+  @NoInline
+  private boolean steal(WorkStealingDeque thief) {
+    final int victims = chunkDeques.length;
+    for (int i = 0; i < victims; i++) {
+      WorkStealingDeque victim = chunkDeques[stealCursor];
+      stealCursor = stealCursor + 1 == victims ? 0 : stealCursor + 1;
+      if (victim != thief && victim.stealInto(thief)) return thief.pop();
+    }
+    return false;
+  }
+
+  @Inline
+  private WorkStealingDeque chunkDeque() {
+    if (chunks == null) {
+      chunks = chunkDeques[((ParallelCollector) VM.activePlan.collector()).parallelWorkerOrdinal()];
+    }
+    return chunks;
+  }
+
+  @Override
+  public void completeTrace() {
+    do {
+      super.completeTrace();
+    } while (processArrayChunk());
+  }
+
+  @Override
+  public boolean incrementalTrace(int workLimit) {
+    if (!super.incrementalTrace(workLimit)) return false;
+    return !processArrayChunk();
+  }
+
   @Override
   @Inline
   protected void processRememberedSets() {
@@ -33,6 +33,7 @@ import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
 import org.vmmagic.unboxed.Word;
 
 /**
@@ -62,6 +63,8 @@ public class G1Mutator extends StopTheWorldMutator {
   protected Address dirtyCardQueue = Address.zero();
   protected Address dirtyCardQueueCursor = Address.zero();
   protected Address dirtyCardQueueLimit = Address.zero();
+  /** Cards dirtied by this mutator since the last pause */
+  protected int dirtyCards = 0;
 
   /**
    * {@inheritDoc}
@@ -82,16 +85,49 @@ public class G1Mutator extends StopTheWorldMutator {
     switch (allocator) {
       case G1.ALLOC_DEFAULT: return g1.alloc(bytes, align, offset);
       case G1.ALLOC_LOS:     return los.alloc(bytes, align, offset);
+      case G1.ALLOC_HUMONGOUS: return allocHumongous(bytes, align, offset);
       default:               return immortal2.alloc(bytes, align, offset);
     }
   }
 
+  /**
+   * Objects larger than half a region go to humongous regions rather than
+   * the large object space, as long as they fit within a single chunk.
+   */
+  @Override
+  @Inline
+  public int checkAllocator(int bytes, int align, int allocator) {
+    // The region size is selected at boot, so the build time LOS threshold is not enough
+    if (allocator == G1.ALLOC_DEFAULT || allocator == G1.ALLOC_NON_REFERENCE) {
+      int maxBytes = Allocator.getMaximumAlignedSize(bytes, align);
+      if (maxBytes > Region.MAX_ALLOC_SIZE) {
+        return maxBytes <= Region.MAX_HUMONGOUS_SIZE ? G1.ALLOC_HUMONGOUS : G1.ALLOC_LOS;
+      }
+    }
+    return super.checkAllocator(bytes, align, allocator);
+  }
+
+  @NoInline
+  private Address allocHumongous(int bytes, int align, int offset) {
+    int maxBytes = Allocator.getMaximumAlignedSize(bytes, align);
+    // Retry once after the GC triggered by a failed attempt
+    for (int i = 0; i < 2; i++) {
+      Address start = G1.regionSpace.allocHumongous(maxBytes);
+      if (!start.isZero()) return Allocator.alignAllocation(start, align, offset);
+    }
+    // No contiguous run of free regions is available, fall back to LOS
+    return los.alloc(bytes, align, offset);
+  }
+
   @Override
   @Inline
   public void postAlloc(ObjectReference ref, ObjectReference typeRef, int bytes, int allocator) {
     switch (allocator) {
       case G1.ALLOC_DEFAULT: return;
       case G1.ALLOC_LOS:     G1.loSpace.initializeHeader(ref, true); return;
+      case G1.ALLOC_HUMONGOUS:
+        if (Space.isInSpace(G1.LOS, ref)) G1.loSpace.initializeHeader(ref, true);
+        return;
       default:               G1.immortalSpace.initializeHeader(ref);  return;
     }
   }
@@ -156,6 +192,20 @@ public class G1Mutator extends StopTheWorldMutator {
       return;
     }
 
+    if (phaseId == G1.FORWARD_PREPARE) {
+      g1.reset();
+      immortal2.reset();
+      VM.memory.collectorPrepareVMSpace();
+      return;
+    }
+
+    if (phaseId == G1.FORWARD_RELEASE) {
+      g1.reset();
+      immortal2.reset();
+      VM.memory.collectorReleaseVMSpace();
+      return;
+    }
+
     if (phaseId == G1.SET_BARRIER_ACTIVE) {
       barrierActive = true;
       return;
@@ -209,24 +259,62 @@ public class G1Mutator extends StopTheWorldMutator {
     }
   }
 
+  /**
+   * Dirty and enqueue the card of <code>src</code> if it is clean. The
+   * caller must fence between the reference store and this check, see
+   * <code>cardMarkingBarrierOutOfLine</code>.
+   */
   @Inline
   protected void cardMarkingBarrier(ObjectReference src) {
     if (!G1.ENABLE_REMEMBERED_SETS) return;
     int index = CardTable.getIndex(src);
     if (CardTable.get(index) == Card.NOT_DIRTY) {
       CardTable.set(index, Card.DIRTY);
+      dirtyCards += 1;
       rsEnqueue(Word.fromIntZeroExtend(index).lsh(Card.LOG_BYTES_IN_CARD).toAddress());
     }
   }
 
+  /** Return the number of cards dirtied since the last call, and reset it */
+  @Inline
+  final int takeDirtyCardCount() {
+    int cards = dirtyCards;
+    dirtyCards = 0;
+    return cards;
+  }
+
+  /**
+   * Make the reference store visible before checking the card. Refinement
+   * cleans a card, fences and then scans it, so either the scan sees the
+   * store or this check sees the clean card and dirties it again.
+   */
   @NoInline
   protected void cardMarkingBarrierOutOfLine(ObjectReference src) {
+    VM.memory.fence();
     cardMarkingBarrier(src);
   }
 
   @Inline
   protected void xorBarrier(ObjectReference src, Address slot, ObjectReference ref) {
+    if (!G1.ENABLE_REMEMBERED_SETS) return;
     if (RegionSpace.isCrossRegionRef(src, slot, ref)) {
+      if (G1.ENABLE_YOUNG_CARD_FILTER) {
+        youngFilteringBarrier(src);
+      } else {
+        cardMarkingBarrierOutOfLine(src);
+      }
+    }
+  }
+
+  /**
+   * Inlined part of the card marking barrier when young cards are pre-marked.
+   * Stores from young regions are filtered with a single card byte load. A
+   * dirty card may be cleaned by refinement concurrently, so only the
+   * out-of-line path can check it, after its fence.
+   */
+  @Inline
+  protected void youngFilteringBarrier(ObjectReference src) {
+    if (CardTable.get(CardTable.getIndex(src)) != Card.NURSERY) {
       cardMarkingBarrierOutOfLine(src);
     }
   }
@@ -251,10 +339,14 @@ public class G1Mutator extends StopTheWorldMutator {
   @NoInline
   private void flushDirtyCardQueue() {
     if (!dirtyCardQueue.isZero()) {
+      G1.predictor.stat.enqueuedCards.add(dirtyCardQueueCursor.diff(dirtyCardQueue).toInt() >> Constants.LOG_BYTES_IN_ADDRESS);
       CardRefinement.filledRSBufferQueue.enqueue(dirtyCardQueue);
       dirtyCardQueue = Address.zero();
       dirtyCardQueueCursor = Address.zero();
       dirtyCardQueueLimit = Address.zero();
+      if (G1.ENABLE_CONCURRENT_REFINEMENT && ConcurrentRefinementWorker.inRedZone()) {
+        ConcurrentRefinementWorker.mutatorRefine();
+      }
     }
   }
 
@@ -276,7 +368,7 @@ public class G1Mutator extends StopTheWorldMutator {
     if (G1.USE_XOR_BARRIER) {
       xorBarrier(src, slot, tgt);
     } else {
-      cardMarkingBarrier(src);
+      cardMarkingBarrierOutOfLine(src);
     }
   }
 
@@ -289,12 +381,62 @@ public class G1Mutator extends StopTheWorldMutator {
       if (G1.USE_XOR_BARRIER) {
         xorBarrier(src, slot, tgt);
       } else {
-        cardMarkingBarrier(src);
+        cardMarkingBarrierOutOfLine(src);
       }
     }
     return result;
   }
 
+  /**
+   * Bulk copy barrier for <code>System.arraycopy</code> of reference arrays.
+   *
+   * The overwritten references are logged in a single pass, then the copy is
+   * done here so that the card is only dirtied once the new references are in
+   * place. Cards are keyed by the start of the mutated object, so the single
+   * card marked here is the one every element store would have marked.
+   */
+  @Inline
+  @Override
+  public boolean objectReferenceBulkCopy(ObjectReference src, Offset srcOffset, ObjectReference dst, Offset dstOffset, int bytes) {
+    final Address dstStart = dst.toAddress().plus(dstOffset);
+    if (G1.ENABLE_CONCURRENT_MARKING && barrierActive) logOverwrittenReferences(dstStart, bytes);
+    copyReferences(src.toAddress().plus(srcOffset), dstStart, bytes);
+    if (bytes > 0) {
+      if (G1.ENABLE_YOUNG_CARD_FILTER) {
+        youngFilteringBarrier(dst);
+      } else {
+        cardMarkingBarrierOutOfLine(dst);
+      }
+    }
+    return true;
+  }
+
+  @NoInline
+  private void logOverwrittenReferences(Address start, int bytes) {
+    final Address limit = start.plus(bytes);
+    for (Address slot = start; slot.LT(limit); slot = slot.plus(Constants.BYTES_IN_ADDRESS)) {
+      checkAndEnqueueReference(slot.loadObjectReference());
+    }
+  }
+
+  /** Copies above this size go through the native memcopy */
+  private static final int NATIVE_COPY_THRESHOLD = 64 << Constants.LOG_BYTES_IN_ADDRESS;
+
+  /**
+   * Word-wise forward copy. The caller guarantees the ranges either do not
+   * overlap or the source lies above the destination.
+   */
+  @Inline
+  private static void copyReferences(Address from, Address to, int bytes) {
+    if (bytes > NATIVE_COPY_THRESHOLD) {
+      VM.memory.copy(from, to, bytes);
+    } else {
+      for (int i = 0; i < bytes; i += Constants.BYTES_IN_ADDRESS) {
+        to.plus(i).store(from.plus(i).loadWord());
+      }
+    }
+  }
+
   @Inline
   @Override
   public ObjectReference javaLangReferenceReadBarrier(ObjectReference ref) {
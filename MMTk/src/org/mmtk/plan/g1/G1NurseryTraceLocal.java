@@ -17,6 +17,8 @@ import org.vmmagic.unboxed.ObjectReference;
 @Uninterruptible
 public class G1NurseryTraceLocal extends TraceLocal {
   public int copyBytes = 0;
+  /** Bytes copied into survivor regions, by age after the copy */
+  public final long[] survivorAgeBytes = new long[G1.MAX_AGE + 1];
 
   public G1NurseryTraceLocal(Trace trace) {
     super(G1.SCAN_NURSERY, trace);
@@ -26,6 +28,8 @@ public class G1NurseryTraceLocal extends TraceLocal {
   public void release() {
     super.release();
     G1.predictor.stat.nurserySurvivedBytes.add(copyBytes);
+    copyBytes = 0;
+    G1.ageTable.merge(survivorAgeBytes);
   }
 
   @Override
@@ -55,8 +59,11 @@ public class G1NurseryTraceLocal extends TraceLocal {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(G1.ENABLE_GENERATIONAL_GC);
     if (object.isNull()) return false;
     if (Space.isInSpace(G1.REGION_SPACE, object)) {
-      if (Region.getBool(Region.of(object), Region.MD_RELOCATE)) {
+      Address region = Region.of(object);
+      if (Region.getBool(region, Region.MD_RELOCATE)) {
         return ForwardingWord.isForwardedOrBeingForwarded(object);
+      } else if (Region.startsHumongous(region)) {
+        return !G1.regionSpace.isHumongousReclaimable(region);
       } else {
         return true;
       }
@@ -80,6 +87,9 @@ public class G1NurseryTraceLocal extends TraceLocal {
           return ObjectReference.nullReference();
         }
       } else {
+        if (Region.startsHumongous(region) && !Region.getBool(region, Region.MD_HUMONGOUS_REACHED)) {
+          Region.set(region, Region.MD_HUMONGOUS_REACHED, true);
+        }
         return object;
       }
     } else {
@@ -1,10 +1,10 @@
 package org.mmtk.plan.g1;
 
-import org.mmtk.policy.region.CardTable;
 import org.mmtk.policy.region.Region;
 import org.mmtk.policy.region.RemSet;
 import org.mmtk.policy.region.Stat;
 import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
@@ -21,26 +21,47 @@ import org.vmmagic.unboxed.Address;
  * - rsSize(r)    is the number of card entries in r’s remembered set;
  * - C            is the cost per byte of evacuating (and scanning) a live object,
  * - liveBytes(r) is an estimate of the number of live bytes in region r.
+ *
+ * U, S, C and V_{fixed} are tracked as decaying averages (with their decaying
+ * absolute deviation), and predictions use avg + SIGMA * deviation, as HotSpot does.
+ * The pause time goal and the nursery size bounds come from the
+ * MaxGCPauseMillis, G1NewSizePercent and G1MaxNewSizePercent options.
  */
 @Uninterruptible
 public class PauseTimePredictor {
-  static final long PAUSE_TIME_GOAL = VM.statistics.millisToNanos(15); // ms
+  private static final double SIGMA = 0.5;
+
+  // Options
+  long pauseTimeGoal = VM.statistics.millisToNanos(15);
+  float minNurseryRatio = 0.05f;
+  float maxNurseryRatio = 0.40f;
 
   // Parameters
   float nurseryRatio = G1.constraints().g1FixedNurseryRatio();
-  long V_fixed;
-  double U, S, C;
-  double nurserySurvivorRate;
-  double nurseryRemsetCards, nurseryDirtyCards;
+  final DecayingAverage V_fixed = new DecayingAverage();
+  final DecayingAverage U = new DecayingAverage();
+  final DecayingAverage S = new DecayingAverage();
+  final DecayingAverage C = new DecayingAverage();
+  final DecayingAverage nurserySurvivorRate = new DecayingAverage();
+  final DecayingAverage nurseryRemsetCards = new DecayingAverage();
+  final DecayingAverage nurseryDirtyCards = new DecayingAverage();
   public final Stat stat = new Stat();
 
   // Per-GC data
   double V_cs;
 
-  public void prepare() {
+  public void processOptions() {
+    pauseTimeGoal = VM.statistics.millisToNanos(Options.maxGCPauseMillis.getValue());
+    minNurseryRatio = Options.g1NewSizePercent.getValue() / 100f;
+    maxNurseryRatio = Options.g1MaxNewSizePercent.getValue() / 100f;
+    if (maxNurseryRatio < minNurseryRatio) maxNurseryRatio = minNurseryRatio;
+    nurseryRatio = clampNurseryRatio(nurseryRatio);
+  }
+
+  public void prepare(int dirtyCards) {
     if (!G1.ENABLE_PAUSE_TIME_PREDICTOR) return;
-    stat.pauseStart(CardTable.numDirtyCards());
-    V_cs = V_fixed + (long) (U * CardTable.numDirtyCards());
+    stat.pauseStart(dirtyCards);
+    V_cs = V_fixed.predict() + U.predict() * dirtyCards;
   }
 
   /// Return true if within pause time goal
@@ -48,12 +69,12 @@ public class PauseTimePredictor {
   public boolean predict(Address region, boolean alwaysIncludeInCSet) {
     if (!G1.ENABLE_PAUSE_TIME_PREDICTOR) return true;
     int cards = RemSet.calculateRememberedCards(region);
-    double delta = S * cards + C * Region.liveBytes(region);
+    double delta = S.predict() * cards + C.predict() * Region.liveBytes(region);
     if (alwaysIncludeInCSet) {
       V_cs += delta;
       return true;
     } else {
-      if (V_cs + delta > PAUSE_TIME_GOAL) return false;
+      if (V_cs + delta > pauseTimeGoal) return false;
       V_cs += delta;
       return true;
     }
@@ -63,46 +84,85 @@ public class PauseTimePredictor {
   public void release(boolean nursery) {
     if (!G1.ENABLE_PAUSE_TIME_PREDICTOR) return;
     stat.pauseEnd();
+    V_fixed.add(stat.V_fixed);
+    if (stat.totalRefineCards != 0) U.add(stat.U);
+    if (stat.totalRemSetCards.get() != 0) S.add(stat.S);
+    if (stat.totalCopyBytes != 0) C.add(stat.C);
     if (nursery) {
-      V_fixed = mix(V_fixed, stat.V_fixed);
-      U = mix(U, stat.U);
-      S = mix(S, stat.S);
-      C = mix(C, stat.C);
-
       double survivorRate = ((double) stat.nurserySurvivedBytes.get()) / ((double) (G1.regionSpace.maxRegions() * nurseryRatio * Region.BYTES_IN_REGION));
-      nurserySurvivorRate = mix(nurserySurvivorRate, survivorRate);
-
-      double copyTimePerRegion = Region.BYTES_IN_REGION * survivorRate * stat.C;
-      nurseryRemsetCards = (nurseryRemsetCards + (double) stat.totalRemSetCards.get()) / 2;
-      nurseryDirtyCards = (nurseryDirtyCards + (double) stat.totalRefineCards) / 2;
-      double fixedTime = V_fixed;
-      fixedTime += nurseryDirtyCards * U + nurseryRemsetCards * C;
-      double nurserySizeAwareTime = ((double) PAUSE_TIME_GOAL) - fixedTime;
-      double newNurseryRatio = nurserySizeAwareTime / copyTimePerRegion;
-      nurseryRatio = (nurseryRatio + (float) newNurseryRatio) / 2;
-//      if (nurserySizeAwareTime < 0) return;
-//      long budget = PAUSE_TIME_GOAL - stat.V_fixed - stat.totalRefineTime;
-//      if (budget < 0) budget = 0;
-//      nurseryRatio = (float) (nurseryRatio * (((double) budget) / ((double) nurserySizeAwareTime)));
-      if (nurseryRatio < 0.05f) nurseryRatio = 0.05f;
-      if (nurseryRatio > 0.40f) nurseryRatio = 0.40f;
-    } else {
-      V_fixed = mix(V_fixed, stat.V_fixed);
-      U = mix(U, stat.U);
-      S = mix(S, stat.S);
-      C = mix(C, stat.C);
+      nurserySurvivorRate.add(survivorRate);
+      nurseryRemsetCards.add(stat.totalRemSetCards.get());
+      nurseryDirtyCards.add(stat.totalRefineCards);
+
+      double copyTimePerRegion = Region.BYTES_IN_REGION * nurserySurvivorRate.predict() * C.predict();
+      double fixedTime = V_fixed.predict();
+      fixedTime += nurseryDirtyCards.predict() * U.predict() + nurseryRemsetCards.predict() * S.predict();
+      double nurserySizeAwareTime = ((double) pauseTimeGoal) - fixedTime;
+      if (copyTimePerRegion > 0) {
+        double nurseryRegions = nurserySizeAwareTime / copyTimePerRegion;
+        nurseryRatio = clampNurseryRatio((float) (nurseryRegions / G1.regionSpace.maxRegions()));
+      }
+    }
+    if (Options.verbose.getValue() >= 1) {
+      Log.write("[G1 ");
+      Log.write(nursery ? "young" : "mixed");
+      Log.write(" pause: predicted ");
+      Log.write(VM.statistics.nanosToMillis((long) V_cs), 3);
+      Log.write(" ms, actual ");
+      Log.write(VM.statistics.nanosToMillis(stat.totalTime), 3);
+      Log.write(" ms, goal ");
+      Log.write(VM.statistics.nanosToMillis(pauseTimeGoal), 3);
+      Log.write(" ms, nursery ratio ");
+      Log.write(nurseryRatio, 3);
+      Log.writeln("]");
     }
   }
 
   @Inline
-  private static long mix(long a, long b) {
-    if (a == 0) return b;
-    return (a + b) / 2;
+  private float clampNurseryRatio(float ratio) {
+    if (ratio < minNurseryRatio) return minNurseryRatio;
+    if (ratio > maxNurseryRatio) return maxNurseryRatio;
+    return ratio;
   }
 
-  @Inline
-  private static double mix(double a, double b) {
-    if (a == 0) return b;
-    return (a + b) / 2;
+  /**
+   * Exponentially decaying average and absolute deviation of a series,
+   * in the style of HotSpot's TruncatedSeq.
+   */
+  @Uninterruptible
+  static class DecayingAverage {
+    private static final double ALPHA = 0.7;
+    private int samples = 0;
+    private double average = 0;
+    private double deviation = 0;
+
+    @Inline
+    void add(double value) {
+      if (samples == 0) {
+        average = value;
+        deviation = 0;
+      } else {
+        average = (1 - ALPHA) * value + ALPHA * average;
+        double diff = value > average ? value - average : average - value;
+        deviation = (1 - ALPHA) * diff + ALPHA * deviation;
+      }
+      samples += 1;
+    }
+
+    @Inline
+    double average() {
+      return average;
+    }
+
+    @Inline
+    double deviation() {
+      return deviation;
+    }
+
+    /** A slightly conservative prediction of the next value */
+    @Inline
+    double predict() {
+      return average + SIGMA * deviation();
+    }
   }
 }
@@ -0,0 +1,69 @@
+package org.mmtk.plan.g1;
+
+import org.mmtk.plan.CollectorContext;
+import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
+import org.mmtk.vm.Monitor;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.*;
+
+/**
+ * Periodically hands long free regions back to the operating system.
+ *
+ * Regions are only freed by a GC, but an idle VM may not collect again for
+ * a long time. This thread wakes up every <code>G1UncommitDelay</code>
+ * milliseconds and uncommits the regions that have been free for at least
+ * that long. It is paused for the duration of every GC.
+ */
+@Uninterruptible
+@NonMoving
+public class UncommitWorker extends CollectorContext {
+  private static Monitor lock;
+  private static boolean paused = false;
+  private static boolean busy = false;
+
+  @Interruptible
+  public static void spawn() {
+    if (Options.g1UncommitDelay.getValue() == 0) return;
+    lock = VM.newHeavyCondLock("uncommit-worker");
+    VM.collection.spawnCollectorContext(new UncommitWorker());
+  }
+
+  /** Stop uncommitting, and wait for a running pass to finish */
+  public static void pause() {
+    if (lock == null) return;
+    lock.lock();
+    paused = true;
+    while (busy) lock.await();
+    lock.unlock();
+  }
+
+  public static void resume() {
+    if (lock == null) return;
+    lock.lock();
+    paused = false;
+    lock.unlock();
+  }
+
+  @Override
+  @Unpreemptible
+  public void run() {
+    lock.lock();
+    while (true) {
+      final int delay = Options.g1UncommitDelay.getValue();
+      lock.timedAwait(delay * 1000000L);
+      if (paused) continue;
+      busy = true;
+      lock.unlock();
+      final int regions = G1.regionSpace.uncommitFreeRegionsConcurrently(delay);
+      if (regions > 0 && Options.verbose.getValue() >= 2) {
+        Log.write("[G1 uncommitted ", regions);
+        Log.write(" idle regions, ", G1.regionSpace.committedBytes() >> 10);
+        Log.writeln(" KB committed]");
+      }
+      lock.lock();
+      busy = false;
+      lock.broadcast();
+    }
+  }
+}
@@ -31,8 +31,6 @@ public class Validation {
 
         VM.objectModel.dumpObject(object);
         Log.writeln(Space.getSpaceForObject(object).getName());
-        Address remset = Region.getAddress(Region.of(object), Region.MD_REMSET);
-        VM.assertions._assert(!remset.isZero());
         Log.writeln("region ", Region.of(object));
 //        if (RemSet.containsCard(remset, Card.of(src))) Log.writeln("Remset is correct");
 //        else Log.writeln("Remset is incorrect");
@@ -45,8 +43,6 @@ public class Validation {
         Log.writeln(Space.getSpaceForObject(object).getName());
 
         Log.writeln("slot ", slot);
-        Address remset = Region.getAddress(Region.of(object), Region.MD_REMSET);
-        VM.assertions._assert(!remset.isZero());
         Log.writeln("card ", Card.of(src));
         Log.writeln("card mark ", CardTable.get(Card.of(src)));
         Log.writeln("region ", Region.of(object));
@@ -22,4 +22,6 @@ public class G1Constraints extends org.mmtk.plan.g1.G1Constraints {
   @Override public boolean g1HotCardOptimization() { return false; }
   @Override public boolean g1GenerationalGC() { return false; }
   @Override public boolean g1PauseTimePredictor() { return false; }
+  // Measure the per-element barriers only
+  @Override public boolean objectReferenceBulkCopySupported() { return false; }
 }
@@ -20,4 +20,9 @@ public class G1Constraints extends org.mmtk.plan.g1.barrieranalysis.cardmark.G1C
   public boolean needsObjectReferenceWriteBarrier() {
     return true;
   }
+  /** The barrier variants compare addresses at a multiple of the region size */
+  @Override
+  public boolean g1FixedRegionSize() {
+    return true;
+  }
 }
@@ -38,19 +38,29 @@ public class G1 extends org.mmtk.plan.g1.G1 {
   static final DoubleCounter remsetFootprintOverMaxHeapSize;
   static final DoubleCounter remsetFootprintOverUsedHeapSize;
   static final DoubleCounter remsetUtilization;
+  static final DoubleCounter remsetSparseFootprint;
+  static final DoubleCounter remsetFineFootprint;
+  static final DoubleCounter remsetCoarseRegions;
 
   static {
     remsetFootprintOverMaxHeapSize = new DoubleCounter("remset.footprint.overMaxHeapSize", true, true, true);
     remsetFootprintOverUsedHeapSize = new DoubleCounter("remset.footprint.overUsedHeapSize", true, true, true);
     remsetUtilization = new DoubleCounter("remset.utilization", true, true, true);
+    remsetSparseFootprint = new DoubleCounter("remset.footprint.sparse.overMaxHeapSize", true, true, true);
+    remsetFineFootprint = new DoubleCounter("remset.footprint.fine.overMaxHeapSize", true, true, true);
+    remsetCoarseRegions = new DoubleCounter("remset.coarseRegions", true, true, true);
   }
 
 
   private void statRemSet() {
     int committedBytes = 0, recordedCards = 0;
+    int sparseBytes = 0, fineBytes = 0, coarseRegions = 0;
     for (Address region = regionSpace.firstRegion(); !region.isZero(); region = Region.getNext(region)) {
       committedBytes += RemSet.committedBytes(region);
       recordedCards += RemSet.rememberedCards(region);
+      sparseBytes += RemSet.sparseBytes(region);
+      fineBytes += RemSet.fineBytes(region);
+      coarseRegions += RemSet.coarseRegions(region);
     }
     int maxHeapSize = this.getTotalPages() * Constants.BYTES_IN_PAGE;
     int usedHeapSize = this.getPagesUsed() * Constants.BYTES_IN_PAGE;
@@ -62,6 +72,9 @@ public class G1 extends org.mmtk.plan.g1.G1 {
     remsetFootprintOverMaxHeapSize.inc(footprintOverMaxHeapSize);
     remsetFootprintOverUsedHeapSize.inc(footprintOverUsedHeapSize);
     remsetUtilization.inc(utilization);
+    remsetSparseFootprint.inc(((double) sparseBytes) / ((double) maxHeapSize));
+    remsetFineFootprint.inc(((double) fineBytes) / ((double) maxHeapSize));
+    remsetCoarseRegions.inc(coarseRegions);
   }
 
   @Override
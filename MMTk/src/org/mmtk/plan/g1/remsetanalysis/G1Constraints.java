@@ -21,4 +21,6 @@ public class G1Constraints extends org.mmtk.plan.g1.G1Constraints {
   @Override public boolean g1ConcurrentRefinement() { return false; }
   @Override public boolean g1HotCardOptimization() { return false; }
   @Override public boolean g1PauseTimePredictor() { return false; }
+  // Variants measure remembered sets at a given region size
+  @Override public boolean g1FixedRegionSize() { return true; }
 }
@@ -15,6 +15,7 @@ package org.mmtk.plan.regional.rust;
 import org.mmtk.plan.Plan;
 import org.mmtk.plan.Phase;
 import org.mmtk.plan.ParallelCollector;
+import org.mmtk.plan.ReferenceProcessing;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.plan.CollectorContext;
 import org.mmtk.policy.Region;
@@ -140,63 +141,59 @@ public class RegionalCollector extends ParallelCollector {
     }
 
     if (phaseId == Regional.SOFT_REFS) {
-      if (primary) {
-        if (!Options.noReferenceTypes.getValue()) {
-          if (!Plan.isEmergencyCollection()) {
-            VM.softReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(),true);
-          }
+      if (!Options.noReferenceTypes.getValue()) {
+        if (!Plan.isEmergencyCollection()) {
+          ReferenceProcessing.scan(this, VM.softReferences, getCurrentTrace(), global().isCurrentGCNursery(), true, primary);
         }
       }
       return;
     }
 
     if (phaseId == Regional.WEAK_REFS) {
-      if (primary) {
-        if (Options.noReferenceTypes.getValue()) {
+      if (Options.noReferenceTypes.getValue()) {
+        if (primary) {
           VM.softReferences.clear();
           VM.weakReferences.clear();
-        } else {
-          VM.softReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(), false);
-          VM.weakReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(), false);
         }
+      } else {
+        ReferenceProcessing.scan(this, VM.softReferences, getCurrentTrace(), global().isCurrentGCNursery(), false, primary);
+        ReferenceProcessing.scan(this, VM.weakReferences, getCurrentTrace(), global().isCurrentGCNursery(), false, primary);
       }
       return;
     }
 
     if (phaseId == Regional.FINALIZABLE) {
-      if (primary) {
-        if (Options.noFinalizer.getValue())
-          VM.finalizableProcessor.clear();
-        else
-          VM.finalizableProcessor.scan(getCurrentTrace(),global().isCurrentGCNursery());
+      if (Options.noFinalizer.getValue()) {
+        if (primary) VM.finalizableProcessor.clear();
+      } else {
+        ReferenceProcessing.scanFinalizable(this, getCurrentTrace(), global().isCurrentGCNursery(), primary);
       }
       return;
     }
 
     if (phaseId == Regional.PHANTOM_REFS) {
-      if (primary) {
-        if (Options.noReferenceTypes.getValue())
-          VM.phantomReferences.clear();
-        else
-          VM.phantomReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(),false);
+      if (Options.noReferenceTypes.getValue()) {
+        if (primary) VM.phantomReferences.clear();
+      } else {
+        ReferenceProcessing.scan(this, VM.phantomReferences, getCurrentTrace(), global().isCurrentGCNursery(), false, primary);
       }
       return;
     }
 
     if (phaseId == Regional.FORWARD_REFS) {
-      if (primary && !Options.noReferenceTypes.getValue() &&
+      if (!Options.noReferenceTypes.getValue() &&
           VM.activePlan.constraints().needsForwardAfterLiveness()) {
-        VM.softReferences.forward(getCurrentTrace(),global().isCurrentGCNursery());
-        VM.weakReferences.forward(getCurrentTrace(),global().isCurrentGCNursery());
-        VM.phantomReferences.forward(getCurrentTrace(),global().isCurrentGCNursery());
+        ReferenceProcessing.forward(this, VM.softReferences, getCurrentTrace(), global().isCurrentGCNursery(), primary);
+        ReferenceProcessing.forward(this, VM.weakReferences, getCurrentTrace(), global().isCurrentGCNursery(), primary);
+        ReferenceProcessing.forward(this, VM.phantomReferences, getCurrentTrace(), global().isCurrentGCNursery(), primary);
       }
       return;
     }
 
     if (phaseId == Regional.FORWARD_FINALIZABLE) {
-      if (primary && !Options.noFinalizer.getValue() &&
+      if (!Options.noFinalizer.getValue() &&
           VM.activePlan.constraints().needsForwardAfterLiveness()) {
-        VM.finalizableProcessor.forward(getCurrentTrace(),global().isCurrentGCNursery());
+        ReferenceProcessing.forwardFinalizable(this, getCurrentTrace(), global().isCurrentGCNursery(), primary);
       }
       return;
     }
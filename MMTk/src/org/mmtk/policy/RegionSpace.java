@@ -376,7 +376,7 @@ public final class RegionSpace extends Space {
       pr.clearRequest(pagesReserved);
 //      Log.writeln("Block for GC");
       unlock();
-      VM.collection.blockForGC();
+      Plan.blockForGC();
       lock();
       return Address.zero(); // GC required, return failure
     }
@@ -392,7 +392,7 @@ public final class RegionSpace extends Space {
 //      Log.writeln("Block for GC");
 //      tlabLock.release();
       unlock();
-      VM.collection.blockForGC();
+      Plan.blockForGC();
 //      tlabLock.acquire();
       lock();
       return Address.zero();
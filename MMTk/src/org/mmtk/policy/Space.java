@@ -440,7 +440,7 @@ public abstract class Space {
     /* Poll, either fixing budget or requiring GC */
     if (allowPoll && VM.activePlan.global().poll(false, this)) {
       pr.clearRequest(pagesReserved);
-      VM.collection.blockForGC();
+      Plan.blockForGC();
       return Address.zero(); // GC required, return failure
     }
 
@@ -452,7 +452,7 @@ public abstract class Space {
       boolean gcPerformed = VM.activePlan.global().poll(true, this);
       if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(gcPerformed, "GC not performed when forced.");
       pr.clearRequest(pagesReserved);
-      VM.collection.blockForGC();
+      Plan.blockForGC();
       return Address.zero();
     }
 
@@ -17,13 +17,18 @@ public class Card {
   public static final int LOG_BYTES_IN_CARD = 9;
   public static final int BYTES_IN_CARD = 1 << LOG_BYTES_IN_CARD;
   public static final int CARDS_IN_HEAP = 1 << (VMLayoutConstants.LOG_ADDRESS_SPACE - LOG_BYTES_IN_CARD);//.HEAP_END.diff(VM.HEAP_START).toWord().rshl(LOG_BYTES_IN_CARD).toInt();
-  public static final int CARDS_IN_REGION = Word.fromIntZeroExtend(Region.BYTES_IN_REGION).rshl(LOG_BYTES_IN_CARD).toInt();
+  /** Set by <code>regionSizeChanged</code> once the region size is selected at boot */
+  public static int CARDS_IN_REGION = Region.BYTES_IN_REGION >>> LOG_BYTES_IN_CARD;
   public static final Word CARD_MASK = Word.fromIntZeroExtend(BYTES_IN_CARD - 1);// 0..0111111111
 
   public static final byte NOT_DIRTY = 0;
   public static final byte DIRTY = 1;
   public static final byte NURSERY = 2;
 
+  static void regionSizeChanged() {
+    CARDS_IN_REGION = Region.BYTES_IN_REGION >>> LOG_BYTES_IN_CARD;
+  }
+
   @Inline
   public static Address of(Address address) {
     return address.toWord().and(CARD_MASK.not()).toAddress();
@@ -1,52 +1,100 @@
 package org.mmtk.policy.region;
 
-import org.mmtk.utility.Atomic;
 import org.mmtk.utility.Constants;
 import org.mmtk.utility.Log;
 import org.mmtk.vm.VM;
-import org.vmmagic.pragma.Entrypoint;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.NoBoundsCheck;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.ObjectReference;
 import org.vmmagic.unboxed.Word;
-import org.vmmagic.unboxed.WordArray;
 
+/**
+ * One byte per card, updated with plain byte stores.
+ *
+ * Racing stores are benign: two mutators dirtying the same card both enqueue
+ * it, and refinement skips the second entry as the card is clean by then.
+ * Refinement fences after cleaning a card, and the barrier fences between
+ * the reference store and its card check, so a mutator that sees the card
+ * still dirty has its store scanned.
+ *
+ * Card hotness is kept in a small direct-mapped cache keyed by card index,
+ * as only cards that are refined concurrently ever get a hotness.
+ */
 @Uninterruptible
 public class CardTable {
   public static final byte HOTNESS_THRESHOLD = 4;
-  private static final int[] table = new int[(Card.CARDS_IN_HEAP + 3) / 4];
-  private static final byte[] hotnessTable = new byte[Card.CARDS_IN_HEAP];
-  private static final Atomic.Int numDirtyCards = new Atomic.Int();
+  private static final byte[] table = new byte[Card.CARDS_IN_HEAP];
+  /** Per-card claim bytes, a card is claimed if its byte equals <code>claimEpoch</code> */
+  private static final int[] claimTable = new int[(Card.CARDS_IN_HEAP + 3) / 4];
+  private static byte claimEpoch = 0;
 
-  @Inline
-  public static int numDirtyCards() {
-    return numDirtyCards.get();
-  }
+  /** Hotness cache, each entry holds (card index + 1) and the hotness in the low bits */
+  private static final int LOG_HOTNESS_ENTRIES = 14;
+  private static final int HOTNESS_BITS = 3;
+  private static final int HOTNESS_MASK = (1 << HOTNESS_BITS) - 1;
+  private static final int[] hotnessCache = new int[1 << LOG_HOTNESS_ENTRIES];
 
+  /**
+   * Increase the hotness of a card. A card that collides with another one in
+   * the cache takes over the entry and starts again from 1.
+   */
   @Inline
   @NoBoundsCheck
   public static int increaseHotness(Address card) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Card.isAligned(card));
-    int index = getIndex(card);
+    final int index = getIndex(card);
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(index >= 0 && index < Card.CARDS_IN_HEAP);
-    byte oldHotness = hotnessTable[index];
-    if (oldHotness > HOTNESS_THRESHOLD) return oldHotness;
-    byte newHotness = (byte) (oldHotness + 1);
-    hotnessTable[index] = newHotness;
-    return newHotness;
+    final int slot = (index * 0x9E3779B1) >>> (Constants.BITS_IN_INT - LOG_HOTNESS_ENTRIES);
+    final int key = (index + 1) << HOTNESS_BITS;
+    final int entry = hotnessCache[slot];
+    int hotness = 1;
+    if ((entry & ~HOTNESS_MASK) == key) {
+      hotness = entry & HOTNESS_MASK;
+      if (hotness > HOTNESS_THRESHOLD) return hotness;
+      hotness += 1;
+    }
+    hotnessCache[slot] = key | hotness;
+    return hotness;
   }
 
   @Inline
   @NoBoundsCheck
   public static void clearAllHotnessPar(int id, int workers) {
-    int totalSize = (Card.CARDS_IN_HEAP + workers - 1) / workers;
+    int totalSize = (hotnessCache.length + workers - 1) / workers;
     int start = totalSize * id;
     int _limit = totalSize * (id + 1);
-    int limit = _limit > Card.CARDS_IN_HEAP ? Card.CARDS_IN_HEAP : _limit;
+    int limit = _limit > hotnessCache.length ? hotnessCache.length : _limit;
     for (int i = start; i < limit; i++)
-      hotnessTable[i] = 0;
+      hotnessCache[i] = 0;
+  }
+
+  /**
+   * Start a new claiming round, dropping all existing claims.
+   * The claim table is only cleared when the epoch wraps around.
+   */
+  public static void resetClaims() {
+    if (claimEpoch == Byte.MAX_VALUE) {
+      for (int i = 0; i < claimTable.length; i++)
+        claimTable[i] = 0;
+      claimEpoch = 0;
+    }
+    claimEpoch += 1;
+  }
+
+  /**
+   * Claim a card for the current round.
+   *
+   * @return false if the card is already claimed by another collector
+   */
+  @Inline
+  @NoBoundsCheck
+  public static boolean tryClaim(Address card) {
+    int index = getIndex(card);
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(index >= 0 && index < Card.CARDS_IN_HEAP);
+    Address wordSlot = ObjectReference.fromObject(claimTable).toAddress().plus(index & ~3);
+    return attemptByteInWord(wordSlot, index & 3, claimEpoch);
   }
 
   public static void clear() {
@@ -74,22 +122,14 @@ public class CardTable {
       if (!Card.isAligned(card)) Log.writeln("Card is not aligned ", card);
       VM.assertions._assert(Card.isAligned(card));
     }
-    int index = getIndex(card);
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(index >= 0 && index < Card.CARDS_IN_HEAP);
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert((index & ~3) < (CardTable.table.length * 4 - 3));
-    Address wordSlot = ObjectReference.fromObject(table).toAddress().plus(index & ~3);
-    int shift = (index & 3) << Constants.LOG_BITS_IN_BYTE;
-    Word word = wordSlot.loadWord();
-    return (byte) word.and(BYTE_MASK.lsh(shift)).rshl(shift).toInt();
+    return get(getIndex(card));
   }
 
   @Inline
   @NoBoundsCheck
   public static byte get(final int index) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(index >= 0 && index < Card.CARDS_IN_HEAP);
-    Address table = ObjectReference.fromObject(CardTable.table).toAddress();
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(index < (CardTable.table.length * 4));
-    return table.plus(index).loadByte();
+    return table[index];
   }
 
   @Inline
@@ -112,44 +152,50 @@ public class CardTable {
   @Inline
   @NoBoundsCheck
   public static void set(Address card, final byte value) {
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Card.isAligned(card));
-    int index = getIndex(card);
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(index >= 0 && index < Card.CARDS_IN_HEAP);
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert((index & ~3) < (CardTable.table.length * 4 - 3));
-    Address wordSlot = ObjectReference.fromObject(table).toAddress().plus(index & ~3);
-//    int shift = (index & 3) << Constants.LOG_BITS_IN_BYTE;
-    boolean success = attemptByteInWord(wordSlot, index & 3, value);
-    if (success) {
-      if (value == Card.DIRTY) numDirtyCards.add(1);
-      else numDirtyCards.add(-1);
-    }
+    set(getIndex(card), value);
   }
 
   @Inline
   @NoBoundsCheck
   public static void set(final int index, final byte value) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(index >= 0 && index < Card.CARDS_IN_HEAP);
-    if (VM.VERIFY_ASSERTIONS) {
-      VM.assertions._assert((index & ~3) < (CardTable.table.length * 4 - 3));
-    }
-    Address wordSlot = ObjectReference.fromObject(table).toAddress().plus(index & ~3);
-    boolean success = attemptByteInWord(wordSlot, index & 3, value);
-    if (success) {
-      if (value == Card.DIRTY) numDirtyCards.add(1);
-      else numDirtyCards.add(-1);
-    }
+    table[index] = value;
   }
 
+  /**
+   * Mark all cards of a freshly allocated young region as <code>Card.NURSERY</code>,
+   * so that the write barrier filters stores from objects in that region.
+   *
+   * The region holds no objects yet, so no barrier races with these stores.
+   * Stale dirty cards left by a previous use of the region are dropped, their
+   * queued entries are skipped by refinement.
+   * Regions hold a multiple of 4 cards, so the card bytes are written an int at a time.
+   */
   @Inline
   @NoBoundsCheck
   public static void setAllNursery(Address region) {
-    Address regionLimit = region.plus(Region.BYTES_IN_REGION);
-    for (Address card = region; card.LT(regionLimit); card = card.plus(Card.BYTES_IN_CARD)) {
-      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Card.isAligned(card));
-      int index = getIndex(card);
-      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(index >= 0 && index < Card.CARDS_IN_HEAP);
-      Address wordSlot = ObjectReference.fromObject(table).toAddress().plus(index & ~3);
-      boolean success = attemptByteInWord(wordSlot, index & 3, Card.NURSERY);
+    setAllCardsInRegion(region, NURSERY_CARDS_IN_INT);
+  }
+
+  /**
+   * Reset the cards of a young region that is released or promoted to old.
+   */
+  @Inline
+  @NoBoundsCheck
+  public static void clearAllNursery(Address region) {
+    setAllCardsInRegion(region, 0);
+  }
+
+  private static final int NURSERY_CARDS_IN_INT = Card.NURSERY * 0x01010101;
+
+  @Inline
+  @NoBoundsCheck
+  private static void setAllCardsInRegion(Address region, int value) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Region.of(region).EQ(region));
+    Address start = ObjectReference.fromObject(table).toAddress().plus(getIndex(region));
+    Address limit = start.plus(Card.CARDS_IN_REGION);
+    for (Address wordSlot = start; wordSlot.LT(limit); wordSlot = wordSlot.plus(Constants.BYTES_IN_INT)) {
+      wordSlot.store(value);
     }
   }
 }
@@ -4,6 +4,7 @@ import org.mmtk.plan.g1.G1;
 import org.mmtk.plan.g1.PauseTimePredictor;
 import org.mmtk.utility.Constants;
 import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.NoInline;
@@ -13,6 +14,20 @@ import org.vmmagic.unboxed.Word;
 import org.vmmagic.unboxed.WordArray;
 
 
+/**
+ * Collection set selection.
+ *
+ * The mixed GC that follows a concurrent mark builds a list of candidate old
+ * regions, those with at most <code>G1GCLiveThresholdPercent</code> live
+ * bytes, in ascending order of live bytes. The candidates are then spread
+ * over this and the following young GCs: each takes at least
+ * 1/<code>MIXED_GC_COUNT_TARGET</code> of them, and more while the predicted
+ * pause stays within the goal. The series ends when the candidates left
+ * would reclaim less than <code>G1HeapWastePercent</code> of the heap.
+ *
+ * Old regions keep the liveness of the last mark until then, as young GCs do
+ * not shift the mark tables.
+ */
 @Uninterruptible
 public class CollectionSet {
   @Uninterruptible
@@ -21,26 +36,58 @@ public class CollectionSet {
     public abstract boolean withinBudget();
   }
 
+  /** Number of mixed GCs the candidates are spread over */
+  public static final int MIXED_GC_COUNT_TARGET = 8;
+
+  // Candidate old regions, linked through Region.MD_NEXT_CANDIDATE
+  private static Address candidates = Address.zero();
+  private static int candidateRegions = 0;
+  private static long candidateReclaimableBytes = 0;
+  private static int minOldRegionsPerGC = 0;
+  /** Old regions in the collection set of the current GC */
+  public static int oldRegionsInCSet = 0;
+
+  /** True while mixed GCs are pending for the last mark */
+  public static boolean hasCandidates() {
+    return candidateRegions > 0;
+  }
+
+  /** Drop the candidates, e.g. because a full GC invalidated the mark */
+  public static void clearCandidates() {
+    candidates = Address.zero();
+    candidateRegions = 0;
+    candidateReclaimableBytes = 0;
+  }
 
   public static void compute(RegionSpace space, int gcKind, int availablePages, PauseTimePredictor predictor) {
     availablePages = ((int) ((availablePages >>> Region.LOG_PAGES_IN_REGION) * Region.MEMORY_RATIO) << Region.LOG_PAGES_IN_REGION);
+    oldRegionsInCSet = 0;
     switch (gcKind) {
-      case G1.GCKind.YOUNG: computeForNurseryGC(space, availablePages); return;
+      case G1.GCKind.YOUNG: computeForNurseryGC(space, availablePages, predictor); return;
       case G1.GCKind.MIXED: computeForMixedGC(space, availablePages, predictor);   return;
       case G1.GCKind.FULL:  computeForFullGC(space, availablePages);    return;
     }
   }
 
-  private static void computeForNurseryGC(RegionSpace space, int availablePages) {
+  private static void computeForNurseryGC(RegionSpace space, int availablePages, PauseTimePredictor predictor) {
+    int availableBytes = availablePages << Constants.LOG_BYTES_IN_PAGE;
     for (Address region = space.firstRegion(); !region.isZero(); region = Region.getNext(region)) {
-      if (Region.getInt(region, Region.MD_GENERATION) != Region.OLD) {
-        markAsRelocate(region, Region.liveBytes(region));
+      if (Region.startsHumongous(region)) {
+        Region.set(region, Region.MD_HUMONGOUS_REACHED, false);
+      } else if (Region.getInt(region, Region.MD_GENERATION) != Region.OLD) {
+        int size = Region.liveBytes(region);
+        markAsRelocate(region, size);
+        availableBytes -= size;
+        predictor.predict(region, true);
       }
     }
+    if (hasCandidates()) selectCandidates(space, availableBytes, predictor);
   }
 
+  /** Dead regions and humongous objects have already been freed by <code>RegionSpace.cleanup</code> */
   private static void computeForMixedGC(RegionSpace space, final int availablePages, final PauseTimePredictor predictor) {
-    final int regions = space.committedRegions;
+    clearCandidates();
+    final int regions = space.committedRegions - space.humongousRegions;
     WordArray array = createArrayOfRegionsAndSizes(regions, space.firstRegion());
     int availableBytes = availablePages << Constants.LOG_BYTES_IN_PAGE;
 
@@ -54,26 +101,69 @@ public class CollectionSet {
         predictor.predict(region, true);
       }
     }
-    // Select some old regions
-    if (availableBytes <= 0) return;
-    int count = 0;
+    // Collect the old regions worth evacuating, in ascending order of live bytes
+    final int liveThreshold = (int) (Region.BYTES_IN_REGION * Options.g1GCLiveThresholdPercent.getValue() / 100);
+    Address tail = Address.zero();
     for (int i = 0; i < regions; i++) {
       Address region = getRegion(array, i);
       if (Region.getInt(region, Region.MD_GENERATION) != Region.OLD) continue;
       int size = getSize(array, i);
-      if (availableBytes - size <= 0) break;
-      if (predictor.predict(region, false)) {
-        availableBytes -= size;
-        markAsRelocate(region, size);
-        count ++;
+      if (size > liveThreshold) break;
+      Region.set(region, Region.MD_NEXT_CANDIDATE, Address.zero());
+      if (tail.isZero()) {
+        candidates = region;
       } else {
-        break;
+        Region.set(tail, Region.MD_NEXT_CANDIDATE, region);
       }
+      tail = region;
+      candidateRegions += 1;
+      candidateReclaimableBytes += Region.BYTES_IN_REGION - size;
+    }
+    minOldRegionsPerGC = (candidateRegions + MIXED_GC_COUNT_TARGET - 1) / MIXED_GC_COUNT_TARGET;
+    if (Options.verbose.getValue() >= 2) {
+      Log.write("[G1 mixed GC candidates: ", candidateRegions);
+      Log.write(" regions, ", candidateReclaimableBytes >> 10);
+      Log.writeln(" KB reclaimable]");
+    }
+    selectCandidates(space, availableBytes, predictor);
+  }
+
+  /**
+   * Move candidates to the collection set: at least <code>minOldRegionsPerGC</code>,
+   * then more while the pause time goal allows. Ends the mixed GC series once
+   * the remaining candidates are not worth collecting.
+   */
+  private static void selectCandidates(RegionSpace space, int availableBytes, PauseTimePredictor predictor) {
+    final long heapBytes = ((long) space.maxRegions()) << Region.LOG_BYTES_IN_REGION;
+    if (candidateReclaimableBytes * 100 < (long) (heapBytes * Options.g1HeapWastePercent.getValue())) {
+      if (Options.verbose.getValue() >= 2) {
+        Log.write("[G1 mixed GCs done, ", candidateRegions);
+        Log.writeln(" candidates left]");
+      }
+      clearCandidates();
+      return;
+    }
+    int count = 0;
+    while (!candidates.isZero()) {
+      Address region = candidates;
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Region.getInt(region, Region.MD_GENERATION) == Region.OLD);
+      int size = Region.liveBytes(region);
+      if (availableBytes - size <= 0) break;
+      if (!predictor.predict(region, count < minOldRegionsPerGC)) break;
+      availableBytes -= size;
+      markAsRelocate(region, size);
+      count += 1;
+      candidates = Region.getAddress(region, Region.MD_NEXT_CANDIDATE);
+      candidateRegions -= 1;
+      candidateReclaimableBytes -= Region.BYTES_IN_REGION - size;
     }
+    if (candidates.isZero()) clearCandidates();
+    oldRegionsInCSet = count;
   }
 
   private static void computeForFullGC(RegionSpace space, int availablePages) {
-    final int regions = space.committedRegions;
+    clearCandidates();
+    final int regions = space.committedRegions - space.humongousRegions;
     WordArray array = createArrayOfRegionsAndSizes(regions, space.firstRegion());
     int availableBytes = availablePages << Constants.LOG_BYTES_IN_PAGE;
     // Select all nursery regions
@@ -110,9 +200,11 @@ public class CollectionSet {
 
   private static WordArray createArrayOfRegionsAndSizes(int regions, Address headRegion) {
     // Initialize: Array<(Region, Size)>
+    // Humongous regions are never evacuated
     WordArray array = WordArray.create(regions << 1);
     int cursor = 0;
     for (Address region = headRegion; !region.isZero(); region = Region.getNext(region)) {
+      if (Region.startsHumongous(region)) continue;
       array.set(cursor, region.toWord());
       array.set(cursor + 1, Word.fromIntZeroExtend(Region.liveBytes(region)));
       cursor += 2;
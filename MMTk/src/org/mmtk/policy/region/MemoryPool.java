@@ -1,35 +1,92 @@
 package org.mmtk.policy.region;
 
 import org.mmtk.plan.Plan;
+import org.mmtk.utility.Atomic;
 import org.mmtk.vm.Lock;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.*;
 import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.AddressArray;
 import org.vmmagic.unboxed.Extent;
 import org.vmmagic.unboxed.ObjectReference;
 import org.vmmagic.unboxed.Offset;
 
 import static org.mmtk.utility.Constants.*;
 
+/**
+ * Lock-free pool of fixed size cells, carved out of chunks of
+ * <code>PAGES_PER_SLOW_ALLOCATION</code> pages.
+ *
+ * Each chunk keeps the number of its cells in use in its header.
+ * <code>reclaim</code> returns chunks with no cells in use to the meta data
+ * space. The chunk of a cell is found through <code>chunkStarts</code>: chunks
+ * are exactly one frame long, so a cell lies either in the chunk starting in
+ * its own frame or in the one starting in the previous frame.
+ */
 @Uninterruptible
 public class MemoryPool {
     private static final Offset NEXT_OFFSET = Offset.fromIntZeroExtend(0);
     private static final Offset HEAD_OFFSET = VM.objectModel.getFieldOffset(MemoryPool.class, "head", Address.class);
     private static final Offset CURSOR_OFFSET = VM.objectModel.getFieldOffset(MemoryPool.class, "cursor", Address.class);
     private static final int PAGES_PER_SLOW_ALLOCATION = 256;
+    private static final int LOG_BYTES_PER_SLOW_ALLOCATION = LOG_BYTES_IN_PAGE + 8;
     private static final int BYTES_PER_SLOW_ALLOCATION = PAGES_PER_SLOW_ALLOCATION * BYTES_IN_PAGE;
+    // Chunk header
+    private static final Offset CHUNK_LIVE_CELLS_OFFSET = Offset.fromIntZeroExtend(0);
+    private static final Offset CHUNK_NEXT_OFFSET = Offset.fromIntZeroExtend(BYTES_IN_ADDRESS);
+    private static final int CHUNK_HEADER_BYTES = BYTES_IN_ADDRESS * 2;
+    /** Marks a chunk that is queued for release in <code>reclaim</code> */
+    private static final int RECLAIMING = -1;
+
+    private static final int FRAMES = VM.HEAP_END.diff(VM.HEAP_START).toWord().rshl(LOG_BYTES_PER_SLOW_ALLOCATION).toInt() + 1;
+    /** Start of the chunk starting in each frame, shared by all pools */
+    private static final AddressArray chunkStarts = AddressArray.create(FRAMES);
 
     private final Lock lock = VM.newLock("memory-pool-lock");
-    private final int CELL_SIZE;
+    private int CELL_SIZE;
     @Entrypoint private Address head = Address.zero();
     private int popCount = 0;
     @Entrypoint private Address cursor = Address.zero();
     private Address limit = Address.zero();
+    /** The chunk cells are bump allocated from */
+    private Address currentChunk = Address.zero();
+    private int committedChunks = 0;
+    private final Atomic.Int freeCells = new Atomic.Int();
 
     public MemoryPool(int unitSize) {
         CELL_SIZE = unitSize;
     }
 
+    /** Change the size of the cells, before the first one is allocated */
+    public void setCellSize(int unitSize) {
+        if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(committedChunks == 0);
+        CELL_SIZE = unitSize;
+    }
+
+    /** Bytes of meta data space held by this pool */
+    public int committedBytes() {
+        return committedChunks * BYTES_PER_SLOW_ALLOCATION;
+    }
+
+    @Inline
+    private static int frameOf(Address a) {
+        return a.diff(VM.HEAP_START).toWord().rshl(LOG_BYTES_PER_SLOW_ALLOCATION).toInt();
+    }
+
+    @Inline
+    private static Address chunkOf(Address cell) {
+        final int frame = frameOf(cell);
+        Address chunk = chunkStarts.get(frame);
+        if (chunk.isZero() || chunk.GT(cell)) chunk = chunkStarts.get(frame - 1);
+        if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!chunk.isZero() && cell.diff(chunk).toInt() < BYTES_PER_SLOW_ALLOCATION);
+        return chunk;
+    }
+
+    @Inline
+    private static void addLiveCells(Address cell, int delta) {
+        Atomic.Int.fetchAdd(chunkOf(cell).plus(CHUNK_LIVE_CELLS_OFFSET), delta);
+    }
+
     @Inline
     private boolean doubleCAS(Address oldAddress, Address newAddress, int oldCount, int newCount) {
         long oldValue = oldAddress.toLong() | (((long) oldCount) << BITS_IN_INT);
@@ -52,6 +109,7 @@ public class MemoryPool {
             if (oldHead.isZero()) return oldHead;
             newHead = oldHead.loadAddress(NEXT_OFFSET);
         } while (!doubleCAS(oldHead, newHead, popCount, popCount + 1));
+        freeCells.add(-1);
         return zero(oldHead);
     }
 
@@ -64,15 +122,15 @@ public class MemoryPool {
             oldHead = headSlot.loadAddress();
             newHead.store(oldHead);
         } while (!headSlot.attempt(oldHead, newHead));
+        freeCells.add(1);
     }
 
     @Inline
     public Address alloc() {
         Address node = allocFast();
-        if (!node.isZero()) {
-            return node;
-        }
-        return allocSlow();
+        if (node.isZero()) node = allocSlow();
+        addLiveCells(node, 1);
+        return node;
     }
 
     @Inline
@@ -114,14 +172,64 @@ public class MemoryPool {
 
         final Address chunk = Plan.metaDataSpace.acquire(PAGES_PER_SLOW_ALLOCATION);
         if (chunk.isZero()) VM.assertions.fail("OutOfMemory");
-        cursor = chunk.plus(CELL_SIZE);
+        if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(chunkStarts.get(frameOf(chunk)).isZero());
+        chunk.store(0, CHUNK_LIVE_CELLS_OFFSET);
+        chunkStarts.set(frameOf(chunk), chunk);
+        committedChunks += 1;
+        currentChunk = chunk;
+        final Address cell = chunk.plus(CHUNK_HEADER_BYTES);
         limit = chunk.plus(BYTES_PER_SLOW_ALLOCATION);
+        cursor = cell.plus(CELL_SIZE);
         lock.release();
-        return zero(chunk);
+        return zero(cell);
     }
 
     @Inline
     public void free(Address cell) {
+        addLiveCells(cell, -1);
         pushNode(cell);
     }
+
+    /**
+     * Release the chunks that have no cells in use, except the one still being
+     * bump allocated. Walks the free list, so only does so when at least two
+     * chunks worth of cells are free.
+     * Must be called while no other thread uses the pool, e.g. in a global GC phase.
+     */
+    public void reclaim() {
+        if (freeCells.get() < 2 * (BYTES_PER_SLOW_ALLOCATION / CELL_SIZE)) return;
+        Address chunksToRelease = Address.zero();
+        Address prev = Address.zero();
+        Address cell = head;
+        int removedCells = 0;
+        while (!cell.isZero()) {
+            final Address next = cell.loadAddress(NEXT_OFFSET);
+            final Address chunk = chunkOf(cell);
+            final int liveCells = chunk.loadInt(CHUNK_LIVE_CELLS_OFFSET);
+            if (chunk.NE(currentChunk) && (liveCells == 0 || liveCells == RECLAIMING)) {
+                if (prev.isZero()) {
+                    head = next;
+                } else {
+                    prev.store(next, NEXT_OFFSET);
+                }
+                removedCells += 1;
+                if (liveCells == 0) {
+                    chunk.store(RECLAIMING, CHUNK_LIVE_CELLS_OFFSET);
+                    chunk.store(chunksToRelease, CHUNK_NEXT_OFFSET);
+                    chunksToRelease = chunk;
+                }
+            } else {
+                prev = cell;
+            }
+            cell = next;
+        }
+        freeCells.add(-removedCells);
+        while (!chunksToRelease.isZero()) {
+            final Address next = chunksToRelease.loadAddress(CHUNK_NEXT_OFFSET);
+            chunkStarts.set(frameOf(chunksToRelease), Address.zero());
+            Plan.metaDataSpace.release(chunksToRelease);
+            committedChunks -= 1;
+            chunksToRelease = next;
+        }
+    }
 }
@@ -7,7 +7,9 @@ import org.mmtk.plan.g1.G1;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.EmbeddedMetaData;
 import org.mmtk.vm.VM;
+import org.mmtk.utility.options.Options;
 import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Interruptible;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.*;
 
@@ -23,16 +25,31 @@ public class Region {
   public static final int SURVIVOR = 1;
   public static final int OLD = 2;
 
+  // Humongous region kinds
+  public static final int NOT_HUMONGOUS = 0;
+  public static final int STARTS_HUMONGOUS = 1;
+  public static final int CONTINUES_HUMONGOUS = 2;
+
   // Region size
 //  public static final boolean USE_PLAN_SPECIFIC_REGION_SIZE = true;
 
-  public static final int LOG_PAGES_IN_REGION = VM.activePlan.constraints().g1LogPagesInRegion();
-  public static final int PAGES_IN_REGION = 1 << LOG_PAGES_IN_REGION;
-  public static final int LOG_BYTES_IN_REGION = LOG_PAGES_IN_REGION + LOG_BYTES_IN_PAGE;
-  public static final int BYTES_IN_REGION = 1 << LOG_BYTES_IN_REGION;
-  public static final int MAX_ALLOC_SIZE = (int) (BYTES_IN_REGION / 2);
-  private static final int REGIONS_IN_CHUNK = (1 << (EmbeddedMetaData.LOG_PAGES_IN_REGION - LOG_PAGES_IN_REGION));
-  public static final Word REGION_MASK = Word.fromIntZeroExtend(BYTES_IN_REGION - 1);// 0..011111111111
+  // The region size is chosen once at boot by selectRegionSize, before the
+  // first region is acquired. The plan constraints give the default, which
+  // is also the size until then. Everything below that depends on it is
+  // recomputed by setLogPagesInRegion.
+  /** 64KB up to a quarter of a chunk, since the chunk's meta data takes at least one region */
+  public static final int MIN_LOG_PAGES_IN_REGION = 4;
+  public static final int MAX_LOG_PAGES_IN_REGION = EmbeddedMetaData.LOG_PAGES_IN_REGION - 2;
+  /** The number of regions selectRegionSize aims for in the maximum heap */
+  private static final int TARGET_REGIONS_IN_HEAP = 2048;
+
+  public static int LOG_PAGES_IN_REGION;
+  public static int PAGES_IN_REGION;
+  public static int LOG_BYTES_IN_REGION;
+  public static int BYTES_IN_REGION;
+  public static int MAX_ALLOC_SIZE;
+  private static int REGIONS_IN_CHUNK;
+  public static Word REGION_MASK;// 0..011111111111
 
   // Mark table:
   // 1 bit per 4 byte: 1/32 ratio
@@ -48,7 +65,7 @@ public class Region {
   public static final int BYTES_IN_MARKTABLE = 1 << (LOG_PAGES_IN_MARKTABLE + LOG_BYTES_IN_PAGE);
   public static final int MARKTABLE0_OFFSET = 0;
   public static final int MARKTABLE1_OFFSET = BYTES_IN_MARKTABLE;
-  public static final int MARK_BYTES_PER_REGION = BYTES_IN_MARKTABLE / REGIONS_IN_CHUNK;
+  public static int MARK_BYTES_PER_REGION;
   public static final int MARK_PAGES_PER_CHUNK = (1 << LOG_PAGES_IN_MARKTABLE) * 2;
   // Per region metadata (offsets)
   public static final int MD_LIVE_SIZE = 0;
@@ -62,33 +79,104 @@ public class Region {
   public static final int MD_REMSET_PAGES = MD_REMSET_SIZE + BYTES_IN_INT;
   public static final int MD_REMSET = MD_REMSET_PAGES + BYTES_IN_INT;
   public static final int MD_REMSET_HEAD_PRT = MD_REMSET + BYTES_IN_ADDRESS;
-  public static final int MD_CARD_OFFSET_TABLE = MD_REMSET_HEAD_PRT + BYTES_IN_ADDRESS;
+  public static final int MD_REMSET_FINE_PRTS = MD_REMSET_HEAD_PRT + BYTES_IN_ADDRESS;
+  public static final int MD_REMSET_COARSE_REGIONS = MD_REMSET_FINE_PRTS + BYTES_IN_INT;
+  public static final int MD_CARD_OFFSET_TABLE = MD_REMSET_COARSE_REGIONS + BYTES_IN_INT;
   public static final int MD_GENERATION = MD_CARD_OFFSET_TABLE + BYTES_IN_ADDRESS;
-  public static final int MD_NEXT_REGION = MD_GENERATION + BYTES_IN_INT;
-
-  private static final int PER_REGION_METADATA_BYTES = MD_NEXT_REGION + BYTES_IN_ADDRESS;
+  public static final int MD_HUMONGOUS = MD_GENERATION + BYTES_IN_INT;
+  public static final int MD_HUMONGOUS_REACHED = MD_HUMONGOUS + BYTES_IN_INT;
+  // Compacting full GC
+  public static final int MD_COMPACT_NEXT = MD_HUMONGOUS_REACHED + BYTES_IN_INT;
+  public static final int MD_COMPACT_TOP = MD_COMPACT_NEXT + BYTES_IN_ADDRESS;
+  public static final int MD_FORWARDING_TABLE = MD_COMPACT_TOP + BYTES_IN_ADDRESS;
+  public static final int MD_NEXT_REGION = MD_FORWARDING_TABLE + BYTES_IN_ADDRESS;
+  // Mixed GC candidate list, see CollectionSet
+  public static final int MD_NEXT_CANDIDATE = MD_NEXT_REGION + BYTES_IN_ADDRESS;
+
+  private static final int PER_REGION_METADATA_BYTES = MD_NEXT_CANDIDATE + BYTES_IN_ADDRESS;
   private static final int PER_REGION_META_START_OFFSET = BYTES_IN_MARKTABLE << 1;
 
 //  public static final int METADATA_PAGES_PER_CHUNK = (1 << LOG_PAGES_IN_MARKTABLE) + 1;//(META_REGIONS_PER_CHUNK * PAGES_IN_REGION);
-  private static final int METADATA_BYTES = MARK_PAGES_PER_CHUNK * BYTES_IN_PAGE + PER_REGION_METADATA_BYTES * REGIONS_IN_CHUNK;
-
-//  public static final int METADATA_PAGES_PER_CHUNK = MARK_PAGES_PER_CHUNK + 1;
-  private static final int META_REGIONS_PER_CHUNK = (METADATA_BYTES + BYTES_IN_REGION - 1) / BYTES_IN_REGION;
-  public static final int METADATA_PAGES_PER_CHUNK = META_REGIONS_PER_CHUNK * PAGES_IN_REGION;
-  public static final float MEMORY_RATIO = ((float) (REGIONS_IN_CHUNK - META_REGIONS_PER_CHUNK)) / ((float) REGIONS_IN_CHUNK); // 0.75
+  private static int META_REGIONS_PER_CHUNK;
+  public static int METADATA_PAGES_PER_CHUNK;
+  public static float MEMORY_RATIO;
+  // A humongous object must fit in the usable regions of a single chunk
+  public static int MAX_HUMONGOUS_REGIONS;
+  public static int MAX_HUMONGOUS_SIZE;
 
   static {
-    int metadataBytes = (1 << LOG_PAGES_IN_MARKTABLE) * BYTES_IN_PAGE * 2;
-    metadataBytes += PER_REGION_METADATA_BYTES * REGIONS_IN_CHUNK;
-    if (metadataBytes > META_REGIONS_PER_CHUNK * BYTES_IN_REGION) {
-      Log.writeln("META_REGIONS_PER_CHUNK=", META_REGIONS_PER_CHUNK);
-      Log.writeln("metadataBytes=", metadataBytes);
-      VM.assertions.fail("Region size too small");
+    setLogPagesInRegion(VM.activePlan.constraints().g1LogPagesInRegion());
+  }
+
+  /** Set the region size and the constants of this class derived from it */
+  private static void setLogPagesInRegion(int logPages) {
+    if (logPages < MIN_LOG_PAGES_IN_REGION || logPages > MAX_LOG_PAGES_IN_REGION) {
+      VM.assertions.fail("Region size out of range");
+    }
+    LOG_PAGES_IN_REGION = logPages;
+    PAGES_IN_REGION = 1 << LOG_PAGES_IN_REGION;
+    LOG_BYTES_IN_REGION = LOG_PAGES_IN_REGION + LOG_BYTES_IN_PAGE;
+    BYTES_IN_REGION = 1 << LOG_BYTES_IN_REGION;
+    MAX_ALLOC_SIZE = BYTES_IN_REGION / 2;
+    REGIONS_IN_CHUNK = 1 << (EmbeddedMetaData.LOG_PAGES_IN_REGION - LOG_PAGES_IN_REGION);
+    REGION_MASK = Word.fromIntZeroExtend(BYTES_IN_REGION - 1);
+    MARK_BYTES_PER_REGION = BYTES_IN_MARKTABLE / REGIONS_IN_CHUNK;
+    final int metadataBytes = MARK_PAGES_PER_CHUNK * BYTES_IN_PAGE + PER_REGION_METADATA_BYTES * REGIONS_IN_CHUNK;
+    META_REGIONS_PER_CHUNK = (metadataBytes + BYTES_IN_REGION - 1) / BYTES_IN_REGION;
+    METADATA_PAGES_PER_CHUNK = META_REGIONS_PER_CHUNK * PAGES_IN_REGION;
+    MEMORY_RATIO = ((float) (REGIONS_IN_CHUNK - META_REGIONS_PER_CHUNK)) / ((float) REGIONS_IN_CHUNK);
+    MAX_HUMONGOUS_REGIONS = REGIONS_IN_CHUNK - META_REGIONS_PER_CHUNK;
+    MAX_HUMONGOUS_SIZE = MAX_HUMONGOUS_REGIONS << LOG_BYTES_IN_REGION;
+  }
+
+  /**
+   * Choose the region size for this run: the G1 Region Size option if set,
+   * otherwise the smallest size giving at most TARGET_REGIONS_IN_HEAP regions
+   * in the maximum heap. Plans that pin the region size at build time keep
+   * the size from their constraints.
+   *
+   * Called once the maximum heap size is known, and before the first region
+   * is acquired. The caller updates the page resource of the region space.
+   *
+   * @param maxHeapBytes the maximum heap size
+   * @return the new log2 of the number of pages in a region
+   */
+  @Interruptible
+  public static int selectRegionSize(long maxHeapBytes) {
+    if (VM.activePlan.constraints().g1FixedRegionSize()) return LOG_PAGES_IN_REGION;
+    int logPages;
+    final int optionPages = Options.g1RegionSize.getPages();
+    if (optionPages != 0) {
+      logPages = log2(optionPages);
+    } else {
+      final long targetBytes = maxHeapBytes / TARGET_REGIONS_IN_HEAP;
+      logPages = MIN_LOG_PAGES_IN_REGION;
+      while (logPages < MAX_LOG_PAGES_IN_REGION && (1L << (logPages + LOG_BYTES_IN_PAGE)) < targetBytes) {
+        logPages++;
+      }
+    }
+    if (logPages < MIN_LOG_PAGES_IN_REGION) logPages = MIN_LOG_PAGES_IN_REGION;
+    if (logPages > MAX_LOG_PAGES_IN_REGION) logPages = MAX_LOG_PAGES_IN_REGION;
+    if (logPages != LOG_PAGES_IN_REGION) {
+      setLogPagesInRegion(logPages);
+      Card.regionSizeChanged();
+      CardOffsetTable.regionSizeChanged();
+      RemSet.regionSizeChanged();
+    }
+    if (Options.verbose.getValue() >= 1) {
+      Log.write("[G1 region size ", BYTES_IN_REGION >> 10);
+      Log.write(" KB, ", REGIONS_IN_CHUNK - META_REGIONS_PER_CHUNK);
+      Log.write(" of ", REGIONS_IN_CHUNK);
+      Log.writeln(" regions per chunk usable]");
     }
-//    if (VM.VERIFY_ASSERTIONS) {
-//      VM.assertions._assert(LOG_PAGES_IN_REGION >= 4 && LOG_PAGES_IN_REGION <= 8);
-//      VM.assertions._assert(PER_REGION_METADATA_BYTES == 40);
-//    }
+    return LOG_PAGES_IN_REGION;
+  }
+
+  @Inline
+  private static int log2(int n) {
+    int log = 0;
+    while ((1 << (log + 1)) <= n) log++;
+    return log;
   }
 
   @Inline
@@ -160,27 +248,78 @@ public class Region {
     set(region, MD_PREV_CURSOR, region);
     set(region, MD_NEXT_CURSOR, region);
     if (G1.ENABLE_REMEMBERED_SETS) {
-      set(region, MD_REMSET, Plan.metaDataSpace.acquire(RemSet.PAGES_IN_REMSET));
       set(region, MD_CARD_OFFSET_TABLE, Plan.metaDataSpace.acquire(CardOffsetTable.PAGES_IN_CARD_OFFSET_TABLE));
     }
     if (VM.VERIFY_ASSERTIONS) {
       VM.assertions._assert(allocationKind >= 0 && allocationKind <= 2);
     }
     set(region, MD_GENERATION, allocationKind);
-//    if (allocationKind != OLD) {
-//      CardTable.setAllNursery(region);
-//    }
+    if (G1.ENABLE_YOUNG_CARD_FILTER && allocationKind != OLD) {
+      CardTable.setAllNursery(region);
+    }
   }
 
+  /**
+   * Register a run of <code>regions</code> contiguous regions holding a single
+   * humongous object. Only the first region gets a remembered set and a card
+   * offset table, since cards of a humongous object always refer to its first card.
+   */
+  @Inline
+  public static void registerHumongous(Address start, int regions, Address objectEnd) {
+    register(start, OLD);
+    set(start, MD_HUMONGOUS, STARTS_HUMONGOUS);
+    Address startEnd = start.plus(BYTES_IN_REGION);
+    set(start, MD_NEXT_CURSOR, objectEnd.LT(startEnd) ? objectEnd : startEnd);
+    for (int i = 1; i < regions; i++) {
+      Address region = start.plus(i << LOG_BYTES_IN_REGION);
+      clearState(region);
+      set(region, MD_ALLOCATED, true);
+      set(region, MD_PREV_CURSOR, region);
+      set(region, MD_NEXT_CURSOR, region);
+      set(region, MD_GENERATION, OLD);
+      set(region, MD_HUMONGOUS, CONTINUES_HUMONGOUS);
+    }
+  }
+
+  @Inline
+  public static boolean isHumongous(Address region) {
+    return getInt(region, MD_HUMONGOUS) != NOT_HUMONGOUS;
+  }
+
+  @Inline
+  public static boolean startsHumongous(Address region) {
+    return getInt(region, MD_HUMONGOUS) == STARTS_HUMONGOUS;
+  }
+
+  /** Number of regions spanned by the humongous object starting at <code>start</code> */
+  @Inline
+  public static int humongousRegions(Address start) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(startsHumongous(start));
+    Address chunkEnd = EmbeddedMetaData.getMetaDataBase(start).plus(EmbeddedMetaData.BYTES_IN_REGION);
+    int regions = 1;
+    for (Address region = start.plus(BYTES_IN_REGION); region.LT(chunkEnd); region = region.plus(BYTES_IN_REGION)) {
+      if (getInt(region, MD_HUMONGOUS) != CONTINUES_HUMONGOUS) break;
+      regions += 1;
+    }
+    return regions;
+  }
+
+  /**
+   * Release the meta data of a region. Checks what the region has rather than
+   * the current G1 features, since regions allocated while the VM booted may
+   * predate turning remembered sets or the young card filter off.
+   */
   @Inline
   public static void unregister(Address region) {
-    if (G1.ENABLE_REMEMBERED_SETS) {
-      Address remset = getAddress(region, MD_REMSET);
+    if (getInt(region, MD_HUMONGOUS) != CONTINUES_HUMONGOUS && !getAddress(region, MD_CARD_OFFSET_TABLE).isZero()) {
       Address headPRT = getAddress(region, MD_REMSET_HEAD_PRT);
       RemSet.releasePRTs(headPRT);
-      Plan.metaDataSpace.release(remset);
+      RemSet.releaseTableArray(region);
       Plan.metaDataSpace.release(getAddress(region, MD_CARD_OFFSET_TABLE));
     }
+    if (G1.BUILT_WITH_YOUNG_CARD_FILTER && getInt(region, MD_GENERATION) != OLD) {
+      CardTable.clearAllNursery(region);
+    }
     clearState(region);
   }
 
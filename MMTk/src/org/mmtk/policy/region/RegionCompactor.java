@@ -0,0 +1,206 @@
+package org.mmtk.policy.region;
+
+import org.mmtk.plan.Plan;
+import org.mmtk.utility.Constants;
+import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * Per-collector state of the sliding compaction used by the G1 full GC.
+ *
+ * Each collector claims a chain of regions and slides the live objects of the
+ * chain towards its first region. There is no spare header word for a
+ * forwarding pointer, so for every card we only record the destination of its
+ * first live object. The destination of any other object is recovered by
+ * replaying the placement from the start of its card.
+ *
+ * Humongous regions are never moved.
+ */
+@Uninterruptible
+public class RegionCompactor {
+  private final RegionSpace space;
+  /** Chain of regions claimed by this collector, linked by MD_COMPACT_NEXT */
+  private Address regions = Address.zero();
+  private Address lastRegion = Address.zero();
+  /** Compaction cursor */
+  private Address toRegion = Address.zero();
+  private Address toCursor = Address.zero();
+  /** Start address of the object last placed by <code>place</code> */
+  private Address forwardedStart = Address.zero();
+
+  public RegionCompactor(RegionSpace space) {
+    this.space = space;
+  }
+
+  /**
+   * Claim regions for this collector and allocate their forwarding tables.
+   * Also drops all remembered sets, as they are rebuilt by the reference
+   * updating trace.
+   */
+  public void prepare(int id) {
+    regions = Address.zero();
+    lastRegion = Address.zero();
+    VM.activePlan.collector().rendezvous();
+    if (id == 0) space.atomicRegionIterator.reset();
+    VM.activePlan.collector().rendezvous();
+    Address region;
+    while (!(region = space.atomicRegionIterator.next()).isZero()) {
+      RemSet.clear(region);
+      if (Region.isHumongous(region) || Region.getBool(region, Region.MD_RELOCATE)) continue;
+      Region.set(region, Region.MD_COMPACT_NEXT, Address.zero());
+      Region.set(region, Region.MD_COMPACT_TOP, region);
+      Region.set(region, Region.MD_FORWARDING_TABLE, Plan.metaDataSpace.acquire(CardOffsetTable.PAGES_IN_CARD_OFFSET_TABLE));
+      if (lastRegion.isZero()) {
+        regions = region;
+      } else {
+        Region.set(lastRegion, Region.MD_COMPACT_NEXT, region);
+      }
+      lastRegion = region;
+    }
+    VM.activePlan.collector().rendezvous();
+  }
+
+  /**
+   * Walk the claimed regions and compute the new location of each live object.
+   */
+  public void calculateForwardingPointers() {
+    toRegion = regions;
+    toCursor = regions;
+    for (Address region = regions; !region.isZero(); region = Region.getAddress(region, Region.MD_COMPACT_NEXT)) {
+      final Address table = Region.getAddress(region, Region.MD_FORWARDING_TABLE);
+      final Address limit = Region.getAddress(region, Region.MD_NEXT_CURSOR);
+      Address lastCard = Address.zero();
+      Address cursor = region;
+      while (cursor.LT(limit)) {
+        ObjectReference object = Card.getObjectFromStartAddress(cursor, limit);
+        if (object.isNull()) break;
+        cursor = VM.objectModel.getObjectEndAddress(object);
+        if (!MarkTable.isMarkedPrev(object)) continue;
+        Address card = Card.of(object);
+        if (card.NE(lastCard)) {
+          table.plus(Card.indexOf(card) << Constants.LOG_BYTES_IN_ADDRESS).store(toCursor);
+          lastCard = card;
+        }
+        place(object, region);
+        Region.set(toRegion, Region.MD_COMPACT_TOP, toCursor);
+        advanceIfFull();
+      }
+    }
+  }
+
+  /**
+   * Return the new location of a live object in a compacted region, replaying
+   * the placement of the live objects preceding it on its card.
+   */
+  @Inline
+  public ObjectReference getForwardedReference(ObjectReference object) {
+    final Address region = Region.of(object);
+    final Address card = Card.of(object);
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(MarkTable.isMarkedPrev(object));
+    Address table = Region.getAddress(region, Region.MD_FORWARDING_TABLE);
+    toCursor = table.plus(Card.indexOf(card) << Constants.LOG_BYTES_IN_ADDRESS).loadAddress();
+    toRegion = Region.of(toCursor);
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!toCursor.isZero());
+    final Address limit = Region.getAddress(region, Region.MD_NEXT_CURSOR);
+    Address cursor = CardOffsetTable.blockStart(region, card);
+    while (true) {
+      ObjectReference o = Card.getObjectFromStartAddress(cursor, limit);
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!o.isNull());
+      cursor = VM.objectModel.getObjectEndAddress(o);
+      if (!MarkTable.isMarkedPrev(o)) continue;
+      ObjectReference newObject = place(o, region);
+      if (o.toAddress().EQ(object.toAddress())) return newObject;
+      advanceIfFull();
+    }
+  }
+
+  /** Start address of the object last forwarded by <code>getForwardedReference</code> */
+  @Inline
+  public Address getForwardedStart() {
+    return forwardedStart;
+  }
+
+  /**
+   * Move the live objects to their new location, in the same order they were
+   * placed by <code>calculateForwardingPointers</code>. The card offset table
+   * of the destination is rebuilt on the way.
+   */
+  public void compact() {
+    toRegion = regions;
+    toCursor = regions;
+    for (Address region = regions; !region.isZero(); region = Region.getAddress(region, Region.MD_COMPACT_NEXT)) {
+      final Address limit = Region.getAddress(region, Region.MD_NEXT_CURSOR);
+      Address cursor = region;
+      while (cursor.LT(limit)) {
+        ObjectReference object = Card.getObjectFromStartAddress(cursor, limit);
+        if (object.isNull()) break;
+        cursor = VM.objectModel.getObjectEndAddress(object);
+        if (!MarkTable.isMarkedPrev(object)) continue;
+        Address gapStart = toCursor;
+        Address oldToRegion = toRegion;
+        ObjectReference target = place(object, region);
+        if (toRegion.NE(oldToRegion)) gapStart = toRegion;
+        if (target.toAddress().NE(object.toAddress())) {
+          VM.objectModel.copyTo(object, target, forwardedStart);
+        }
+        fill(gapStart, forwardedStart);
+        Address card = Card.isAligned(gapStart) ? gapStart : Card.of(gapStart).plus(Card.BYTES_IN_CARD);
+        for (; card.LT(toCursor); card = card.plus(Card.BYTES_IN_CARD)) {
+          CardOffsetTable.set(toRegion, card, gapStart);
+        }
+        advanceIfFull();
+      }
+      Plan.metaDataSpace.release(Region.getAddress(region, Region.MD_FORWARDING_TABLE));
+      Region.set(region, Region.MD_FORWARDING_TABLE, Address.zero());
+    }
+  }
+
+  /**
+   * Compute the new location of <code>object</code>, bumping the compaction cursor.
+   * An object that would grow over its own end (e.g. when a hash code slot has to
+   * be added) stays where it is.
+   */
+  @Inline
+  private ObjectReference place(ObjectReference object, Address fromRegion) {
+    final int size = VM.objectModel.getSizeWhenCopied(object);
+    final int align = VM.objectModel.getAlignWhenCopied(object);
+    final int offset = VM.objectModel.getAlignOffsetWhenCopied(object);
+    Address start = Allocator.alignAllocationNoFill(toCursor, align, offset);
+    if (toRegion.NE(fromRegion) && start.plus(size).GT(toRegion.plus(Region.BYTES_IN_REGION))) {
+      toRegion = Region.getAddress(toRegion, Region.MD_COMPACT_NEXT);
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!toRegion.isZero());
+      start = Allocator.alignAllocationNoFill(toRegion, align, offset);
+    }
+    if (toRegion.EQ(fromRegion) && start.plus(size).GT(VM.objectModel.getObjectEndAddress(object))) {
+      forwardedStart = VM.objectModel.objectStartRef(object);
+      toCursor = VM.objectModel.getObjectEndAddress(object);
+      return object;
+    }
+    forwardedStart = start;
+    toCursor = start.plus(size);
+    return VM.objectModel.getReferenceWhenCopiedTo(object, start);
+  }
+
+  /** Keep <code>toCursor</code> inside <code>toRegion</code> */
+  @Inline
+  private void advanceIfFull() {
+    if (toCursor.EQ(toRegion.plus(Region.BYTES_IN_REGION))) {
+      Address next = Region.getAddress(toRegion, Region.MD_COMPACT_NEXT);
+      if (!next.isZero()) {
+        toRegion = next;
+        toCursor = next;
+      }
+    }
+  }
+
+  @Inline
+  static void fill(Address start, Address end) {
+    for (Address a = start; a.LT(end); a = a.plus(Constants.BYTES_IN_INT)) {
+      a.store(Constants.ALIGNMENT_VALUE);
+    }
+  }
+}
@@ -51,9 +51,29 @@ public final class RegionSpace extends Space {
   @Entrypoint private Address headRegion = Address.zero();
   int nurseryRegions = 0;
   public int committedRegions = 0;
+  public int humongousRegions = 0;
+  public boolean eagerHumongousReclaim = false;
   private AddressArray allocRegions = AddressArray.create(3);
   private final Lock allocLock = VM.newLock("alloc-lock");
 
+  // Fresh regions for GC workers to claim, CLAIM_BATCH slots for survivor
+  // regions followed by CLAIM_BATCH slots for old regions. A slot is claimed
+  // by swapping its region for zero, so the alloc lock is only taken to
+  // refill the slots, once per CLAIM_BATCH regions.
+  private static final int CLAIM_BATCH = 4;
+  private final AddressArray claimableRegions = AddressArray.create(CLAIM_BATCH * 2);
+
+  // Free regions that still hold physical memory, indexed by Region.heapIndexOf.
+  // Only updated with the alloc lock held or in a global GC phase.
+  // Sized for the smallest region size, since the size is only selected at boot.
+  private static final int MAX_LOGICAL_REGIONS_IN_HEAP = VM.HEAP_END.diff(VM.HEAP_START).toWord().rshl(Region.MIN_LOG_PAGES_IN_REGION + LOG_BYTES_IN_PAGE).toInt() + 1;
+  private final boolean[] freeCommitted = new boolean[MAX_LOGICAL_REGIONS_IN_HEAP];
+  private final long[] releaseTime = new long[MAX_LOGICAL_REGIONS_IN_HEAP];
+  private int freeCommittedRegions = 0;
+  public int uncommittedRegions = 0;
+  /** Eden and humongous regions acquired so far, the mutator allocation volume */
+  public long allocatedRegions = 0;
+
   @Inline
   public Address firstRegion() {
     return headRegion;
@@ -81,17 +101,42 @@ public final class RegionSpace extends Space {
     return committed / total;
   }
 
+  /** Bytes of regions in use, or free but not yet uncommitted */
+  public long committedBytes() {
+    return ((long) (committedRegions + freeCommittedRegions)) << Region.LOG_BYTES_IN_REGION;
+  }
+
+  /** Bytes of the regions the heap may grow to */
+  public long reservedBytes() {
+    return ((long) maxRegions()) << Region.LOG_BYTES_IN_REGION;
+  }
+
   public RegionSpace(String name) {
     super(name, true, false, true, VMRequest.discontiguous());
     pr = new FreeListPageResource(this, Region.METADATA_PAGES_PER_CHUNK);
     ((FreeListPageResource) pr).pageOffsetLogAlign = Region.LOG_PAGES_IN_REGION;
   }
 
+  /**
+   * Select the region size for this run, see <code>Region.selectRegionSize</code>.
+   * Must be called before the first region is acquired.
+   *
+   * @param maxHeapBytes the maximum heap size
+   */
+  @Interruptible
+  public void selectRegionSize(long maxHeapBytes) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(committedRegions == 0);
+    Region.selectRegionSize(maxHeapBytes);
+    ((FreeListPageResource) pr).setMetaDataPagesPerRegion(Region.METADATA_PAGES_PER_CHUNK);
+    ((FreeListPageResource) pr).pageOffsetLogAlign = Region.LOG_PAGES_IN_REGION;
+  }
+
   @Override
   @Inline
   public void growSpace(Address start, Extent bytes, boolean newChunk) {
     if (newChunk) {
-      Address chunk = Conversions.chunkAlign(start.plus(bytes), true);
+      // A humongous allocation may extend to the end of the chunk
+      Address chunk = Conversions.chunkAlign(start, true);
       HeapLayout.mmapper.ensureMapped(chunk, Region.METADATA_PAGES_PER_CHUNK);
       VM.memory.zero(false, chunk, Extent.fromIntZeroExtend(Region.METADATA_PAGES_PER_CHUNK << LOG_BYTES_IN_PAGE));
     }
@@ -133,9 +178,39 @@ public final class RegionSpace extends Space {
     }
   }
 
+  /**
+   * Free the regions the marking found no live objects in, and the dead
+   * humongous objects, so they are not evacuated as part of the collection set.
+   * Remembered set entries from the freed regions are dropped first.
+   *
+   * Must be called after marking is complete and before the collection set is
+   * selected, while concurrent refinement is paused.
+   *
+   * @return The number of regions freed, counting each humongous object once
+   */
+  @NoInline
+  public int cleanup() {
+    resetAllocRegions();
+    reclaimDeadHumongousObjects(false);
+    int regions = 0;
+    for (Address region = headRegion; !region.isZero(); region = Region.getNext(region)) {
+      if (Region.getBool(region, Region.MD_RELOCATE)) {
+        regions += 1;
+      } else if (!Region.startsHumongous(region) && Region.liveBytes(region) == 0) {
+        Region.set(region, Region.MD_RELOCATE, true);
+        regions += 1;
+      }
+    }
+    if (regions == 0) return 0;
+    if (G1.ENABLE_REMEMBERED_SETS) clearRemSetCardsPointingToCollectionSet();
+    release();
+    return regions;
+  }
+
   @NoInline
   public void release() {
     resetAllocRegions();
+    releaseClaimableRegions();
     // Release all regions
     Address slot = ObjectReference.fromObject(this).toAddress().plus(HEAD_REGION_OFFSET);
     while (true) {
@@ -151,32 +226,67 @@ public final class RegionSpace extends Space {
     }
   }
 
+  /**
+   * A humongous object can be reclaimed by a nursery GC if it was not reached
+   * by the nursery trace and no card refers to it from outside the nursery.
+   */
+  @Inline
+  public boolean isHumongousReclaimable(Address start) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Region.startsHumongous(start));
+    if (!eagerHumongousReclaim) return false;
+    if (Region.getBool(start, Region.MD_HUMONGOUS_REACHED)) return false;
+    return RemSet.calculateRememberedCards(start) == 0;
+  }
+
+  /**
+   * Add dead humongous objects to the collection set, so they are released
+   * together with it.
+   *
+   * @param nursery Use the nursery reachability and remsets instead of the
+   * liveness computed by the last marking
+   */
+  @NoInline
+  public void reclaimDeadHumongousObjects(boolean nursery) {
+    for (Address region = headRegion; !region.isZero(); region = Region.getNext(region)) {
+      if (!Region.startsHumongous(region) || Region.getBool(region, Region.MD_RELOCATE)) continue;
+      boolean dead = nursery ? isHumongousReclaimable(region) : Region.liveBytes(region) == 0;
+      if (dead) {
+        if (Region.VERBOSE_REGION_LIFETIME) Log.writeln("Reclaim humongous region ", region);
+        Region.set(region, Region.MD_RELOCATE, true);
+        G1.predictor.stat.humongousObjectsReclaimed += 1;
+        G1.predictor.stat.humongousBytesReclaimed += Region.humongousRegions(region) << Region.LOG_BYTES_IN_REGION;
+      }
+    }
+  }
+
   @Inline
   public int getPagesUsed() {
     return pr.reservedPages();
   }
 
+  private Address acquirePages(int pages) {
+    boolean allowPoll = VM.activePlan.isMutator() && Plan.isInitialized();
+    int pagesReserved = pr.reservePages(pages);
+    if (allowPoll && VM.activePlan.global().poll(false, this)) {
+      pr.clearRequest(pagesReserved);
+      return Address.zero(); // GC required, return failure
+    }
+    Address rtn = pr.getNewPages(pagesReserved, pages, zeroed);
+    if (rtn.isZero()) {
+      if (!allowPoll) VM.assertions.fail("Physical allocation failed when polling not allowed!");
+      boolean gcPerformed = VM.activePlan.global().poll(true, this);
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(gcPerformed, "GC not performed when forced.");
+      pr.clearRequest(pagesReserved);
+      return Address.zero();
+    }
+    return rtn;
+  }
+
   public Address acquireRegion(int generation) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(generation <= 2);
     // Uninterruptedly acquire pages
-    Address region;
-    {
-      boolean allowPoll = VM.activePlan.isMutator() && Plan.isInitialized();
-      int pagesReserved = pr.reservePages(Region.PAGES_IN_REGION);
-      if (allowPoll && VM.activePlan.global().poll(false, this)) {
-        pr.clearRequest(pagesReserved);
-        return Address.zero(); // GC required, return failure
-      }
-      Address rtn = pr.getNewPages(pagesReserved, Region.PAGES_IN_REGION, zeroed);
-      if (rtn.isZero()) {
-        if (!allowPoll) VM.assertions.fail("Physical allocation failed when polling not allowed!");
-        boolean gcPerformed = VM.activePlan.global().poll(true, this);
-        if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(gcPerformed, "GC not performed when forced.");
-        pr.clearRequest(pagesReserved);
-        return Address.zero();
-      }
-      region = rtn;
-    }
+    Address region = acquirePages(Region.PAGES_IN_REGION);
+    if (region.isZero()) return Address.zero();
     // Initialize region
     {
       if (Region.VERBOSE_REGION_LIFETIME) {
@@ -189,7 +299,9 @@ public final class RegionSpace extends Space {
       }
       // Increase counter
       if (generation != Region.OLD) nurseryRegions += 1;
+      if (generation == Region.EDEN) allocatedRegions += 1;
       committedRegions += 1;
+      markInUse(region, 1);
       // Initialize metadata
       Region.register(region, generation);
       // Add to freelist
@@ -199,6 +311,46 @@ public final class RegionSpace extends Space {
     return region;
   }
 
+  /**
+   * Allocate a contiguous run of regions for a single humongous object.
+   * Only the first region is linked into the region list.
+   *
+   * @param bytes The size of the object, including alignment
+   * @return The start of the first region, or zero if a GC was triggered
+   */
+  @UninterruptibleNoWarn("Blocks for a GC when the regions cannot be acquired")
+  public Address allocHumongous(int bytes) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(bytes > Region.MAX_ALLOC_SIZE && bytes <= Region.MAX_HUMONGOUS_SIZE);
+    final int regions = (bytes + Region.BYTES_IN_REGION - 1) >>> Region.LOG_BYTES_IN_REGION;
+    allocLock.acquire();
+    Address start = acquirePages(regions << Region.LOG_PAGES_IN_REGION);
+    if (start.isZero()) {
+      allocLock.release();
+      Plan.blockForGC();
+      return Address.zero();
+    }
+    if (Region.VERBOSE_REGION_LIFETIME) {
+      Log.write("Alloc humongous region ", start);
+      Log.writeln(" regions=", regions);
+    }
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Region.isAligned(start));
+    committedRegions += regions;
+    humongousRegions += regions;
+    allocatedRegions += regions;
+    markInUse(start, regions);
+    Region.registerHumongous(start, regions, start.plus(bytes));
+    if (G1.ENABLE_REMEMBERED_SETS) {
+      Address limit = Region.getAddress(start, Region.MD_NEXT_CURSOR);
+      for (Address card = start; card.LT(limit); card = card.plus(Card.BYTES_IN_CARD)) {
+        CardOffsetTable.set(start, card, start);
+      }
+    }
+    Region.set(start, Region.MD_NEXT_REGION, headRegion);
+    headRegion = start;
+    allocLock.release();
+    return start;
+  }
+
   @Inline
   public void releaseRegion(Address region) {
     if (Region.VERBOSE_REGION_LIFETIME) {
@@ -206,16 +358,102 @@ public final class RegionSpace extends Space {
       Log.write(Region.getGenerationName(region));
       Log.writeln(" region ", region);
     }
+    final int regions = Region.startsHumongous(region) ? Region.humongousRegions(region) : 1;
     // Decrease counter
     committedRegions -= 1;
     if (Region.getInt(region, Region.MD_GENERATION) != Region.OLD) nurseryRegions -= 1;
     // Region is already removed from freelist. See `RegionSpace#release()`
+    if (Region.startsHumongous(region)) {
+      for (int i = 1; i < regions; i++) {
+        Region.unregister(region.plus(i << Region.LOG_BYTES_IN_REGION));
+      }
+      committedRegions -= regions - 1;
+      humongousRegions -= regions;
+    }
     // Clear metadata
     Region.unregister(region);
+    markFree(region, regions);
     // Release memory
     ((FreeListPageResource) pr).releasePages(region);
   }
 
+  /**
+   * Stop tracking regions acquired from the page resource. Uncommitted
+   * regions need no work, the page resource zeroes them, which faults their
+   * pages back in.
+   */
+  @Inline
+  private void markInUse(Address start, int regions) {
+    for (int i = 0; i < regions; i++) {
+      final int index = Region.heapIndexOf(start.plus(i << Region.LOG_BYTES_IN_REGION));
+      if (freeCommitted[index]) {
+        freeCommitted[index] = false;
+        freeCommittedRegions -= 1;
+      }
+    }
+  }
+
+  @Inline
+  private void markFree(Address start, int regions) {
+    final long now = VM.statistics.nanoTime();
+    for (int i = 0; i < regions; i++) {
+      final int index = Region.heapIndexOf(start.plus(i << Region.LOG_BYTES_IN_REGION));
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!freeCommitted[index]);
+      freeCommitted[index] = true;
+      releaseTime[index] = now;
+      freeCommittedRegions += 1;
+    }
+  }
+
+  /**
+   * Return the memory of regions that have been free for at least
+   * <code>delayMillis</code> to the operating system.
+   *
+   * Must be called in a global GC phase, or with the allocation lock held, so
+   * that no other thread acquires pages.
+   * A free region whose chunk has been handed to another space is no longer
+   * ours to uncommit, and is dropped instead.
+   *
+   * @return The number of regions uncommitted
+   */
+  public int uncommitFreeRegions(int delayMillis) {
+    if (freeCommittedRegions == 0) return 0;
+    final long now = VM.statistics.nanoTime();
+    int uncommitted = 0;
+    final int logicalRegions = VM.HEAP_END.diff(VM.HEAP_START).toWord().rshl(Region.LOG_BYTES_IN_REGION).toInt() + 1;
+    for (int index = 0; index < logicalRegions; index++) {
+      if (!freeCommitted[index]) continue;
+      final Address region = VM.HEAP_START.plus(Word.fromIntZeroExtend(index).lsh(Region.LOG_BYTES_IN_REGION).toOffset());
+      if (!Space.isInSpace(getDescriptor(), region)) {
+        freeCommitted[index] = false;
+        freeCommittedRegions -= 1;
+        continue;
+      }
+      if (VM.statistics.nanosToMillis(now - releaseTime[index]) < delayMillis) continue;
+      if (!HeapLayout.mmapper.uncommit(region, Region.PAGES_IN_REGION)) continue;
+      freeCommitted[index] = false;
+      freeCommittedRegions -= 1;
+      uncommitted += 1;
+    }
+    uncommittedRegions += uncommitted;
+    return uncommitted;
+  }
+
+  /**
+   * Uncommit long free regions outside of a GC. Holds the allocation lock,
+   * so no region is reused while its memory is handed back. Chunks only
+   * change hands during a GC, whose release phase has already dropped the
+   * free regions that are no longer ours.
+   *
+   * @return The number of regions uncommitted
+   */
+  public int uncommitFreeRegionsConcurrently(int delayMillis) {
+    allocLock.acquire();
+    final int uncommitted = uncommitFreeRegions(delayMillis);
+    allocLock.release();
+    return uncommitted;
+  }
+
   @Override
   public Address acquire(int pages) {
     VM.assertions.fail("Unreachable");
@@ -227,6 +465,75 @@ public final class RegionSpace extends Space {
     VM.assertions.fail("Unreachable");
   }
 
+  /**
+   * Claim a fresh region for a GC worker to copy into. The worker owns the
+   * region: nobody else allocates into it, so it bumps the region cursor
+   * without atomics.
+   *
+   * @param generation <code>Region.SURVIVOR</code> or <code>Region.OLD</code>
+   * @return the region, or zero if the heap is exhausted
+   */
+  @Inline
+  public Address claimRegion(int generation) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(generation == Region.SURVIVOR || generation == Region.OLD);
+    while (true) {
+      Address region = tryClaimRegion(generation);
+      if (!region.isZero()) return region;
+      if (!refillClaimableRegions(generation)) return Address.zero();
+    }
+  }
+
+  @Inline
+  private Address claimSlot(int generation, int i) {
+    final int index = (generation == Region.OLD ? CLAIM_BATCH : 0) + i;
+    return ObjectReference.fromObject(claimableRegions).toAddress().plus(index << LOG_BYTES_IN_ADDRESS);
+  }
+
+  @Inline
+  private Address tryClaimRegion(int generation) {
+    for (int i = 0; i < CLAIM_BATCH; i++) {
+      final Address slot = claimSlot(generation, i);
+      final Address region = slot.prepareAddress();
+      if (!region.isZero() && slot.attempt(region, Address.zero())) return region;
+    }
+    return Address.zero();
+  }
+
+  /**
+   * @return false if no region could be acquired
+   */
+  @NoInline
+  private boolean refillClaimableRegions(int generation) {
+    allocLock.acquire();
+    boolean available = false;
+    for (int i = 0; i < CLAIM_BATCH; i++) {
+      final Address slot = claimSlot(generation, i);
+      if (!slot.loadAddress().isZero()) {
+        available = true;
+        continue;
+      }
+      final Address region = acquireRegion(generation);
+      if (region.isZero()) break;
+      slot.store(region);
+      available = true;
+    }
+    allocLock.release();
+    return available;
+  }
+
+  /**
+   * Add the regions nobody claimed to the regions to release.
+   * Must be called in a global GC phase.
+   */
+  private void releaseClaimableRegions() {
+    for (int i = 0; i < CLAIM_BATCH * 2; i++) {
+      final Address region = claimableRegions.get(i);
+      if (region.isZero()) continue;
+      Region.set(region, Region.MD_RELOCATE, true);
+      claimableRegions.set(i, Address.zero());
+    }
+  }
+
   @Inline
   public void resetAllocRegions() {
     for (int i = 0; i < 3; i++) {
@@ -246,7 +553,7 @@ public final class RegionSpace extends Space {
     // Slow path
     Address result = allocTLABSlow(allocationKind, tlabSize);
     if (result.isZero()) {
-      VM.collection.blockForGC();
+      Plan.blockForGC();
     }
     return result;
   }
@@ -297,6 +604,57 @@ public final class RegionSpace extends Space {
     return object;
   }
 
+  @Inline
+  public ObjectReference traceCompactObject(TraceLocal trace, ObjectReference object, RegionCompactor compactor) {
+    if (MarkTable.testAndMarkNext(object)) {
+      trace.processNode(object);
+    }
+    if (Region.isHumongous(Region.of(object))) return object;
+    return compactor.getForwardedReference(object);
+  }
+
+  /**
+   * Prepare for a compacting full GC, after the marking is done.
+   * The mark results are moved to the prev mark table, the next table is
+   * used by the reference updating trace.
+   */
+  @NoInline
+  public void prepareCompaction() {
+    resetAllocRegions();
+    reclaimDeadHumongousObjects(false);
+    shiftMarkTables();
+  }
+
+  /**
+   * Finish a compacting full GC. All regions that are still in use become old
+   * regions, and the ones emptied by the compaction are released.
+   */
+  @NoInline
+  public void releaseCompaction() {
+    resetAllocRegions();
+    for (Address region = headRegion; !region.isZero(); region = Region.getNext(region)) {
+      MarkTable.clearAllTables(region);
+      Region.set(region, Region.MD_LIVE_SIZE, 0);
+      Region.set(region, Region.MD_PREV_CURSOR, region);
+      if (Region.isHumongous(region) || Region.getBool(region, Region.MD_RELOCATE)) continue;
+      Address top = Region.getAddress(region, Region.MD_COMPACT_TOP);
+      if (top.EQ(region)) {
+        Region.set(region, Region.MD_RELOCATE, true);
+        continue;
+      }
+      // Keep the cursor card aligned, so that the last card can be scanned
+      Address cardEnd = Card.isAligned(top) ? top : Card.of(top).plus(Card.BYTES_IN_CARD);
+      RegionCompactor.fill(top, cardEnd);
+      Region.set(region, Region.MD_NEXT_CURSOR, cardEnd);
+      if (Region.getInt(region, Region.MD_GENERATION) != Region.OLD) {
+        nurseryRegions -= 1;
+        Region.set(region, Region.MD_GENERATION, Region.OLD);
+        if (G1.BUILT_WITH_YOUNG_CARD_FILTER) CardTable.clearAllNursery(region);
+      }
+    }
+    release();
+  }
+
   @Uninterruptible
   static public abstract class EvacuationTimer {
     @Inline
@@ -343,7 +701,12 @@ public final class RegionSpace extends Space {
     } else {
       if (trace instanceof G1NurseryTraceLocal) {
         G1NurseryTraceLocal ntrace = (G1NurseryTraceLocal) trace;
-        ntrace.copyBytes += VM.objectModel.getSizeWhenCopied(object);
+        final int bytes = VM.objectModel.getSizeWhenCopied(object);
+        ntrace.copyBytes += bytes;
+        if (allocator == G1.ALLOC_G1_SURVIVOR) {
+          final int age = G1.ageOf(object);
+          ntrace.survivorAgeBytes[age < G1.MAX_AGE ? age + 1 : G1.MAX_AGE] += bytes;
+        }
       }
       ObjectReference newObject = ForwardingWord.forwardObject(object, allocator);
       trace.processNode(newObject);
@@ -359,44 +722,49 @@ public final class RegionSpace extends Space {
     return !x.xor(y).rshl(Region.LOG_BYTES_IN_REGION).isZero();
   }
 
-  public void iterateToSpaceRemSetRoots(TraceLocal trace, int id, int numWorkers, boolean nursery) {
-    long startTime = id == 0 ? VM.statistics.nanoTime() : 0;
-    int cards = 0;
+  /**
+   * Scan the remembered sets of the collection set in two steps. First the
+   * collection set regions are handed out and their remembered cards are
+   * claimed and packed into chunks. Then every collector scans chunks until
+   * none are left, regardless of which region they came from.
+   */
+  public void iterateToSpaceRemSetRoots(TraceLocal trace, RemSetScanner scanner, int id, int numWorkers, boolean nursery) {
     VM.activePlan.collector().rendezvous();
-    if (id == 0) atomicRegionIterator.reset();
+    if (id == 0) {
+      atomicRegionIterator.reset();
+      CardTable.resetClaims();
+    }
     VM.activePlan.collector().rendezvous();
+    long startTime = VM.statistics.nanoTime();
     Address region;
     while (!(region = atomicRegionIterator.next()).isZero()) {
       if (!Region.getBool(region, Region.MD_RELOCATE)) continue;
-      cards += iterateRegionRemsetRoots(region, trace, nursery);
+      RemSet.iterate(region, remsetVisitor, scanner);
     }
+    scanner.flush();
+    long busyTime = VM.statistics.nanoTime() - startTime;
     VM.activePlan.collector().rendezvous();
-    if (id == 0) {
-      G1.predictor.stat.totalRemSetTime += VM.statistics.nanoTime() - startTime;
-    }
+    startTime = VM.statistics.nanoTime();
+    int cards = scanner.scanChunks(remsetRootsLinearScan, !nursery, trace);
+    busyTime += VM.statistics.nanoTime() - startTime;
+    G1.predictor.stat.remSetScanTime[id] += busyTime;
     G1.predictor.stat.totalRemSetCards.add(cards);
+    VM.activePlan.collector().rendezvous();
   }
 
-  private static boolean remsetVisitorInNursery = false;
-
-  private static final RemSet.Visitor remsetVisitor = new RemSet.Visitor<TraceLocal>() {
-    @Uninterruptible @Inline public void visit(Address region, Address remset, Address card, TraceLocal context) {
-      Card.linearScan(card, remsetRootsLinearScan, !remsetVisitorInNursery, context);
+  private static final RemSet.Visitor<RemSetScanner> remsetVisitor = new RemSet.Visitor<RemSetScanner>() {
+    @Uninterruptible @Inline public void visit(Address region, Address remset, Address card, RemSetScanner scanner) {
+      if (CardTable.tryClaim(card)) scanner.push(card);
       RemSet.removeCard(region, card);
     }
   };
 
-  private static final Card.LinearScan remsetRootsLinearScan = new Card.LinearScan<TraceLocal>() {
+  private static final Card.LinearScan<TraceLocal> remsetRootsLinearScan = new Card.LinearScan<TraceLocal>() {
     @Uninterruptible @Inline public void scan(Address card, ObjectReference object, TraceLocal context) {
       context.processNode(object);
     }
   };
 
-  private int iterateRegionRemsetRoots(Address region, TraceLocal trace, boolean nursery) {
-    remsetVisitorInNursery = nursery;
-    return RemSet.iterate(region, remsetVisitor, trace);
-  }
-
   @Override
   public boolean isLive(ObjectReference object) {
     VM.assertions.fail("Unreachable");
@@ -428,10 +796,10 @@ public final class RegionSpace extends Space {
   }
 
 
-  private final AtomicRegionIterator atomicRegionIterator = new AtomicRegionIterator(this);
+  final AtomicRegionIterator atomicRegionIterator = new AtomicRegionIterator(this);
 
   @Uninterruptible
-  private static class AtomicRegionIterator {
+  static class AtomicRegionIterator {
     private static final Offset REGION_OFFSET = VM.objectModel.getFieldOffset(AtomicRegionIterator.class, "region", Address.class);
     final RegionSpace space;
     @Entrypoint private Address region = Address.zero();
@@ -7,37 +7,139 @@ import org.mmtk.utility.Atomic;
 import org.mmtk.utility.Constants;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.ObjectReference;
 import org.vmmagic.unboxed.Offset;
 import org.vmmagic.unboxed.Word;
 
+/**
+ * Remembered sets are kept per (target region, source region) pair, in one of three tiers:
+ *
+ * - sparse: a small array of card indices;
+ * - fine:   a bitmap with one bit per card of the source region (PRT);
+ * - coarse: the whole source region is remembered.
+ *
+ * A sparse table is promoted to a PRT when it overflows. Once a remembered set
+ * holds <code>MAX_FINE_PRTS</code> PRTs, overflowing sparse tables of regions
+ * in the region space are coarsened instead. Coarse entries take no memory
+ * besides their slot in the per-region table array.
+ *
+ * Cards are added to PRTs without locking. Creating, promoting and coarsening
+ * tables is done while holding the remset lock of the target region.
+ *
+ * The per-region table array is only allocated when the first card is added,
+ * and released again once a GC leaves the remembered set empty. Unused
+ * memory pool chunks are handed back by <code>reclaimMemory</code>.
+ */
 @Uninterruptible
 public class RemSet {
-  private static final int LOGICAL_REGIONS_IN_HEAP = VM.HEAP_END.diff(VM.HEAP_START).toWord().rshl(Region.LOG_BYTES_IN_REGION).toInt() + 1;
-  private static final int BYTES_IN_REMSET = LOGICAL_REGIONS_IN_HEAP * Constants.BYTES_IN_ADDRESS;
-  public  static final int PAGES_IN_REMSET = (BYTES_IN_REMSET + (Constants.BYTES_IN_PAGE - 1)) / Constants.BYTES_IN_PAGE;
-  private static final int META_BYTES_IN_PRT = 4 << Constants.LOG_BYTES_IN_ADDRESS;
-  private static final int BYTES_IN_PRT = ((Card.CARDS_IN_REGION + (Constants.BITS_IN_BYTE - 1)) / Constants.BITS_IN_BYTE) + META_BYTES_IN_PRT;
+  // Depend on the region size, see regionSizeChanged
+  private static int LOGICAL_REGIONS_IN_HEAP;
+  private static int BYTES_IN_REMSET;
+  public  static int PAGES_IN_REMSET;
+  public  static final int SPARSE_CARDS = 8;
+  public  static final int MAX_FINE_PRTS = 128;
+  private static final int SPARSE = 1;
+  private static final int FINE = 2;
+  /** Marks a coarse entry in the per-region table array */
+  private static final Address COARSE = Address.fromIntZeroExtend(1);
+  private static final int META_BYTES_IN_PRT = 5 << Constants.LOG_BYTES_IN_ADDRESS;
+  private static int BYTES_IN_PRT;
+  private static final int BYTES_IN_SPARSE = (SPARSE_CARDS << Constants.LOG_BYTES_IN_INT) + META_BYTES_IN_PRT;
   private static final Offset NEXT_PRT_OFFSET   = Offset.fromIntZeroExtend(Constants.BYTES_IN_ADDRESS * 0);
   private static final Offset PREV_PRT_OFFSET   = Offset.fromIntZeroExtend(Constants.BYTES_IN_ADDRESS * 1);
   private static final Offset PRT_REGION_OFFSET = Offset.fromIntZeroExtend(Constants.BYTES_IN_ADDRESS * 2);
   private static final Offset PRT_CARDS_OFFSET  = Offset.fromIntZeroExtend(Constants.BYTES_IN_ADDRESS * 3);
-  private static final Offset PRT_DATA_START    = Offset.fromIntZeroExtend(Constants.BYTES_IN_ADDRESS * 4);
+  private static final Offset PRT_KIND_OFFSET   = Offset.fromIntZeroExtend(Constants.BYTES_IN_ADDRESS * 4);
+  private static final Offset PRT_DATA_START    = Offset.fromIntZeroExtend(Constants.BYTES_IN_ADDRESS * 5);
+
+  static {
+    computeSizes();
+  }
+
+  private static void computeSizes() {
+    LOGICAL_REGIONS_IN_HEAP = VM.HEAP_END.diff(VM.HEAP_START).toWord().rshl(Region.LOG_BYTES_IN_REGION).toInt() + 1;
+    BYTES_IN_REMSET = LOGICAL_REGIONS_IN_HEAP * Constants.BYTES_IN_ADDRESS;
+    PAGES_IN_REMSET = (BYTES_IN_REMSET + (Constants.BYTES_IN_PAGE - 1)) / Constants.BYTES_IN_PAGE;
+    BYTES_IN_PRT = ((Card.CARDS_IN_REGION + (Constants.BITS_IN_BYTE - 1)) / Constants.BITS_IN_BYTE) + META_BYTES_IN_PRT;
+  }
+
+  /** Called when the region size is selected at boot, before any remembered set is used */
+  static void regionSizeChanged() {
+    computeSizes();
+    PerRegionTable.prtMemoryPool.setCellSize(BYTES_IN_PRT);
+  }
 
   @Uninterruptible
   public static abstract class Visitor<T> {
     @Inline public abstract void visit(Address region, Address remset, Address card, T context);
   }
 
+  /** Number of regions with a table array */
+  private static final Atomic.Int tableArrays = new Atomic.Int();
+
   public static int committedBytes(Address rsRegion) {
-    int prts = 0;
-    Address headPRT = Region.getAddress(rsRegion, Region.MD_REMSET_HEAD_PRT);
-    for (Address prt = headPRT; !prt.isZero(); prt = prt.loadAddress(NEXT_PRT_OFFSET)) {
-      prts += 1;
+    int tableArrayBytes = Region.getAddress(rsRegion, Region.MD_REMSET).isZero() ? 0 : PAGES_IN_REMSET * Constants.BYTES_IN_PAGE;
+    return sparseBytes(rsRegion) + fineBytes(rsRegion) + tableArrayBytes;
+  }
+
+  /** Meta data space held by all remembered sets, including free memory pool cells */
+  public static int committedBytesTotal() {
+    return tableArrays.get() * PAGES_IN_REMSET * Constants.BYTES_IN_PAGE
+        + SparseTable.sparseMemoryPool.committedBytes() + PerRegionTable.prtMemoryPool.committedBytes();
+  }
+
+  /** Return memory pool chunks without tables in use. Called in a global GC phase. */
+  public static void reclaimMemory() {
+    SparseTable.sparseMemoryPool.reclaim();
+    PerRegionTable.prtMemoryPool.reclaim();
+  }
+
+  /** Release the table array of a region, if it has one */
+  public static void releaseTableArray(Address rsRegion) {
+    Address remset = Region.getAddress(rsRegion, Region.MD_REMSET);
+    if (remset.isZero()) return;
+    Region.set(rsRegion, Region.MD_REMSET, Address.zero());
+    Plan.metaDataSpace.release(remset);
+    tableArrays.add(-1);
+  }
+
+  /**
+   * Install a table array for <code>rsRegion</code>. The pages are acquired
+   * before taking the lock, as acquiring them may block.
+   */
+  @NoInline
+  private static Address allocTableArray(Address rsRegion) {
+    Address remset = Plan.metaDataSpace.acquire(PAGES_IN_REMSET);
+    if (remset.isZero()) VM.assertions.fail("OutOfMemory");
+    lock(rsRegion);
+    Address current = Region.getAddress(rsRegion, Region.MD_REMSET);
+    if (current.isZero()) {
+      Region.set(rsRegion, Region.MD_REMSET, remset);
+      unlock(rsRegion);
+      tableArrays.add(1);
+      return remset;
     }
-    return BYTES_IN_PRT * prts + BYTES_IN_REMSET;
+    unlock(rsRegion);
+    Plan.metaDataSpace.release(remset);
+    return current;
+  }
+
+  /** Memory used by the sparse tables of a remembered set */
+  public static int sparseBytes(Address rsRegion) {
+    return (committedPRTs(rsRegion) - Region.getInt(rsRegion, Region.MD_REMSET_FINE_PRTS)) * BYTES_IN_SPARSE;
+  }
+
+  /** Memory used by the PRTs of a remembered set */
+  public static int fineBytes(Address rsRegion) {
+    return Region.getInt(rsRegion, Region.MD_REMSET_FINE_PRTS) * BYTES_IN_PRT;
+  }
+
+  /** Number of source regions remembered as a whole */
+  public static int coarseRegions(Address rsRegion) {
+    return Region.getInt(rsRegion, Region.MD_REMSET_COARSE_REGIONS);
   }
 
   public static int committedPRTs(Address rsRegion) {
@@ -53,6 +155,10 @@ public class RemSet {
     int visitedCards = 0;
     Address headPRT = Region.getAddress(rsRegion, Region.MD_REMSET_HEAD_PRT);
     for (Address prt = headPRT; !prt.isZero(); prt = prt.loadAddress(NEXT_PRT_OFFSET)) {
+      if (prt.loadInt(PRT_KIND_OFFSET) == SPARSE) {
+        visitedCards += prt.loadInt(PRT_CARDS_OFFSET);
+        continue;
+      }
       // Scan for cards
       final Address prtLimit = prt.plus(BYTES_IN_PRT);
       Address prtWordSlot = prt.plus(PRT_DATA_START);
@@ -68,10 +174,18 @@ public class RemSet {
         prtWordSlot = prtWordSlot.plus(Constants.BYTES_IN_ADDRESS);
       }
     }
+    if (coarseRegions(rsRegion) > 0) {
+      Address remset = Region.getAddress(rsRegion, Region.MD_REMSET);
+      for (int i = 0; i < LOGICAL_REGIONS_IN_HEAP; i++) {
+        if (remset.plus(i << Constants.LOG_BYTES_IN_ADDRESS).loadAddress().NE(COARSE)) continue;
+        Address region = regionAt(i);
+        visitedCards += Region.getAddress(region, Region.MD_NEXT_CURSOR).diff(region).toWord().rshl(Card.LOG_BYTES_IN_CARD).toInt();
+      }
+    }
     return visitedCards;
   }
 
-  public static int iterate(Address rsRegion, Visitor visitor, Object context) {
+  public static <T> int iterate(Address rsRegion, Visitor<T> visitor, T context) {
     if (VM.VERIFY_ASSERTIONS) {
       VM.assertions._assert(!rsRegion.isZero());
       VM.assertions._assert(Space.isInSpace(G1.REGION_SPACE, rsRegion));
@@ -86,11 +200,21 @@ public class RemSet {
         if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Region.getBool(prtRegion, Region.MD_ALLOCATED));
         if (Region.getBool(prtRegion, Region.MD_RELOCATE)) continue;
       }
+      if (prt.loadInt(PRT_KIND_OFFSET) == SPARSE) {
+        // Backwards, as the visitor may remove the current card
+        for (int i = prt.loadInt(PRT_CARDS_OFFSET) - 1; i >= 0; i--) {
+          Address card = prtRegion.plus(SparseTable.entry(prt, i).loadInt() << Card.LOG_BYTES_IN_CARD);
+          visitor.visit(rsRegion, remset, card, context);
+          visitedCards += 1;
+        }
+        continue;
+      }
       // Scan for cards
+      int remainingCards = prt.loadInt(PRT_CARDS_OFFSET);
       final Address prtLimit = prt.plus(BYTES_IN_PRT);
       Address prtWordSlot = prt.plus(PRT_DATA_START);
       int wordIndex = 0;
-      while (prtWordSlot.LT(prtLimit)) {
+      while (remainingCards > 0 && prtWordSlot.LT(prtLimit)) {
         Word word = prtWordSlot.loadWord();
         if (!word.isZero()) {
           for (int i = 0; i < Constants.BITS_IN_WORD; i++) {
@@ -99,6 +223,7 @@ public class RemSet {
               Address card = prtRegion.plus(bitIndex << Card.LOG_BYTES_IN_CARD);
               visitor.visit(rsRegion, remset, card, context);
               visitedCards += 1;
+              remainingCards -= 1;
             }
           }
         }
@@ -106,64 +231,136 @@ public class RemSet {
         wordIndex += 1;
       }
     }
+    if (coarseRegions(rsRegion) > 0) {
+      for (int i = 0; i < LOGICAL_REGIONS_IN_HEAP; i++) {
+        if (remset.plus(i << Constants.LOG_BYTES_IN_ADDRESS).loadAddress().NE(COARSE)) continue;
+        Address region = regionAt(i);
+        if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Region.getBool(region, Region.MD_ALLOCATED));
+        if (Region.getBool(region, Region.MD_RELOCATE)) continue;
+        Address limit = Region.getAddress(region, Region.MD_NEXT_CURSOR);
+        for (Address card = region; card.LT(limit); card = card.plus(Card.BYTES_IN_CARD)) {
+          visitor.visit(rsRegion, remset, card, context);
+          visitedCards += 1;
+        }
+      }
+    }
     return visitedCards;
   }
 
   @Inline
-  private static Address getPRT(Address rsRegion, Address prtRegion, boolean create) {
+  private static Address regionAt(int heapIndex) {
+    return VM.HEAP_START.plus(Word.fromIntZeroExtend(heapIndex).lsh(Region.LOG_BYTES_IN_REGION).toOffset());
+  }
+
+  /** @return the table slot of <code>prtRegion</code>, or zero if <code>rsRegion</code> has no table array */
+  @Inline
+  private static Address tableSlot(Address rsRegion, Address prtRegion) {
     Address remset = Region.getAddress(rsRegion, Region.MD_REMSET);
-    Address slot = remset.plus(Region.heapIndexOf(prtRegion) << Constants.LOG_BYTES_IN_ADDRESS);
-    Address oldValue, newValue = Address.zero();
+    if (remset.isZero()) return remset;
+    return remset.plus(Region.heapIndexOf(prtRegion) << Constants.LOG_BYTES_IN_ADDRESS);
+  }
+
+  @Inline
+  private static void lock(Address rsRegion) {
+    Address slot = Region.metaSlot(rsRegion, Region.MD_REMSET_LOCK);
+    int oldValue;
     do {
-      oldValue = slot.prepareAddress();
-      if (!create) return oldValue;
-      if (!oldValue.isZero()) {
-        if (!newValue.isZero()) PerRegionTable.releasePrtMemory(newValue);
-        return oldValue;
-      }
-      if (newValue.isZero()) {
-        newValue = PerRegionTable.allocPrtMemory();
-        newValue.store(prtRegion, PRT_REGION_OFFSET);
-      }
-    } while (!slot.attempt(oldValue, newValue));
-    // Add to PRT linked list
-    final Address headPRTSlot = Region.metaSlot(rsRegion, Region.MD_REMSET_HEAD_PRT);
-    Address oldHeadPRT;
-    final Address newHeadPRT = newValue;
+      oldValue = slot.prepareInt();
+    } while (oldValue != 0 || !slot.attempt(0, 1));
+  }
+
+  @Inline
+  private static void unlock(Address rsRegion) {
+    Address slot = Region.metaSlot(rsRegion, Region.MD_REMSET_LOCK);
+    int oldValue;
     do {
-      oldHeadPRT = headPRTSlot.prepareAddress();
-      newHeadPRT.store(oldHeadPRT, NEXT_PRT_OFFSET);
-    } while (!headPRTSlot.attempt(oldHeadPRT, newHeadPRT));
-    if (!oldHeadPRT.isZero()) oldHeadPRT.store(newHeadPRT, PREV_PRT_OFFSET);
-    return newValue;
+      oldValue = slot.prepareInt();
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(oldValue == 1);
+    } while (!slot.attempt(oldValue, 0));
   }
 
+  /** Link a new table into the table list of <code>rsRegion</code>. Called with the remset lock held. */
   @Inline
-  private static void releaseOnePRTNonAtomic(Address headPRTSlot, Address prtSlot, Address prt) {
-    // Remove from freelist
-    Address nextPRT = prt.loadAddress(NEXT_PRT_OFFSET);
-    Address prevPRT = prt.loadAddress(PREV_PRT_OFFSET);
+  private static void linkTable(Address rsRegion, Address table) {
+    final Address headPRTSlot = Region.metaSlot(rsRegion, Region.MD_REMSET_HEAD_PRT);
+    Address oldHead = headPRTSlot.loadAddress();
+    table.store(oldHead, NEXT_PRT_OFFSET);
+    table.store(Address.zero(), PREV_PRT_OFFSET);
+    if (!oldHead.isZero()) oldHead.store(table, PREV_PRT_OFFSET);
+    headPRTSlot.store(table);
+  }
+
+  /** Unlink a table from the table list of <code>rsRegion</code>, without releasing it */
+  @Inline
+  private static void unlinkTable(Address rsRegion, Address table) {
+    final Address headPRTSlot = Region.metaSlot(rsRegion, Region.MD_REMSET_HEAD_PRT);
+    Address nextPRT = table.loadAddress(NEXT_PRT_OFFSET);
+    Address prevPRT = table.loadAddress(PREV_PRT_OFFSET);
     if (!nextPRT.isZero()) nextPRT.store(prevPRT, PREV_PRT_OFFSET);
     if (!prevPRT.isZero()) prevPRT.store(nextPRT, NEXT_PRT_OFFSET);
-    if (headPRTSlot.loadAddress().EQ(prt)) headPRTSlot.store(nextPRT);
+    if (headPRTSlot.loadAddress().EQ(table)) headPRTSlot.store(nextPRT);
+  }
+
+  @Inline
+  private static void releaseTable(Address table) {
+    if (table.loadInt(PRT_KIND_OFFSET) == SPARSE) {
+      SparseTable.releaseSparseMemory(table);
+    } else {
+      PerRegionTable.releasePrtMemory(table);
+    }
+  }
+
+  @Inline
+  private static void releaseOnePRTNonAtomic(Address rsRegion, Address prtSlot, Address prt) {
+    unlinkTable(rsRegion, prt);
     // Remove from table
     prtSlot.store(Address.zero());
+    if (prt.loadInt(PRT_KIND_OFFSET) == FINE) {
+      Region.set(rsRegion, Region.MD_REMSET_FINE_PRTS, Region.getInt(rsRegion, Region.MD_REMSET_FINE_PRTS) - 1);
+    }
     // Release memory
-    PerRegionTable.releasePrtMemory(prt);
+    releaseTable(prt);
   }
 
   @Inline
   public static void releasePRTs(Address headPRT) {
     while (!headPRT.isZero()) {
       Address nextPRT = headPRT.loadAddress(NEXT_PRT_OFFSET);
-      PerRegionTable.releasePrtMemory(headPRT);
+      releaseTable(headPRT);
       headPRT = nextPRT;
     }
   }
 
+  /** Drop all remembered cards of <code>rsRegion</code> and release its table array */
+  @Inline
+  public static void clear(Address rsRegion) {
+    Address remset = Region.getAddress(rsRegion, Region.MD_REMSET);
+    Address prt = Region.getAddress(rsRegion, Region.MD_REMSET_HEAD_PRT);
+    while (!prt.isZero()) {
+      Address nextPRT = prt.loadAddress(NEXT_PRT_OFFSET);
+      Address prtRegion = prt.loadAddress(PRT_REGION_OFFSET);
+      remset.plus(Region.heapIndexOf(prtRegion) << Constants.LOG_BYTES_IN_ADDRESS).store(Address.zero());
+      releaseTable(prt);
+      prt = nextPRT;
+    }
+    if (coarseRegions(rsRegion) > 0) {
+      for (int i = 0; i < LOGICAL_REGIONS_IN_HEAP; i++) {
+        Address slot = remset.plus(i << Constants.LOG_BYTES_IN_ADDRESS);
+        if (slot.loadAddress().EQ(COARSE)) slot.store(Address.zero());
+      }
+    }
+    Region.set(rsRegion, Region.MD_REMSET_HEAD_PRT, Address.zero());
+    Region.set(rsRegion, Region.MD_REMSET_FINE_PRTS, 0);
+    Region.set(rsRegion, Region.MD_REMSET_COARSE_REGIONS, 0);
+    releaseTableArray(rsRegion);
+  }
+
+  /**
+   * Number of remembered cards. Coarse entries count as a full region.
+   */
   @Inline
   public static int calculateRememberedCards(Address region) {
-    int count = 0;
+    int count = coarseRegions(region) * Card.CARDS_IN_REGION;
     Address headPRT = Region.getAddress(region, Region.MD_REMSET_HEAD_PRT);
     for (Address prt = headPRT; !prt.isZero(); prt = prt.loadAddress(NEXT_PRT_OFFSET)) {
       count += prt.loadInt(PRT_CARDS_OFFSET);
@@ -180,11 +377,101 @@ public class RemSet {
       VM.assertions._assert(Card.isAligned(card));
     }
     Address cardRegion = Region.of(card);
-    Address prt = getPRT(region, cardRegion, true);
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!prt.isZero());
-    if (PerRegionTable.addCard(prt, card)) {
+    Address remset = Region.getAddress(region, Region.MD_REMSET);
+    if (remset.isZero()) remset = allocTableArray(region);
+    Address slot = remset.plus(Region.heapIndexOf(cardRegion) << Constants.LOG_BYTES_IN_ADDRESS);
+    Address prt = slot.loadAddress();
+    if (prt.EQ(COARSE)) return;
+    if (!prt.isZero() && prt.loadInt(PRT_KIND_OFFSET) == FINE) {
+      if (PerRegionTable.addCard(prt, card)) {
+        incCardCount(region);
+      }
+      return;
+    }
+    addCardSlow(region, slot, cardRegion, card);
+  }
+
+  /**
+   * Add a card to a sparse table, creating, promoting or coarsening it as required.
+   * Tables are allocated before taking the lock, as allocation may block.
+   */
+  @NoInline
+  private static void addCardSlow(Address region, Address slot, Address cardRegion, Address card) {
+    Address spare = Address.zero();
+    int spareKind = 0;
+    while (true) {
+      Address table = slot.loadAddress();
+      if (table.EQ(COARSE)) break;
+      if (!table.isZero() && table.loadInt(PRT_KIND_OFFSET) == FINE) {
+        if (PerRegionTable.addCard(table, card)) incCardCount(region);
+        break;
+      }
+      lock(region);
+      if (slot.loadAddress().NE(table)) {
+        unlock(region);
+        continue;
+      }
+      if (table.isZero()) {
+        // New sparse table
+        if (spareKind != SPARSE) {
+          unlock(region);
+          if (!spare.isZero()) releaseTable(spare);
+          spare = SparseTable.allocSparseMemory();
+          spareKind = SPARSE;
+          continue;
+        }
+        spare.store(cardRegion, PRT_REGION_OFFSET);
+        SparseTable.addCard(spare, card);
+        linkTable(region, spare);
+        slot.store(spare);
+        spare = Address.zero();
+        unlock(region);
+        incCardCount(region);
+        break;
+      }
+      if (SparseTable.containsCard(table, card)) {
+        unlock(region);
+        break;
+      }
+      if (SparseTable.addCard(table, card)) {
+        unlock(region);
+        incCardCount(region);
+        break;
+      }
+      // The sparse table is full
+      final int finePRTs = Region.getInt(region, Region.MD_REMSET_FINE_PRTS);
+      if (finePRTs >= MAX_FINE_PRTS && Space.isInSpace(G1.REGION_SPACE, cardRegion)) {
+        unlinkTable(region, table);
+        slot.store(COARSE);
+        Region.set(region, Region.MD_REMSET_COARSE_REGIONS, coarseRegions(region) + 1);
+        unlock(region);
+        releaseTable(table);
+        break;
+      }
+      if (spareKind != FINE) {
+        unlock(region);
+        if (!spare.isZero()) releaseTable(spare);
+        spare = PerRegionTable.allocPrtMemory();
+        spareKind = FINE;
+        continue;
+      }
+      spare.store(cardRegion, PRT_REGION_OFFSET);
+      for (int i = 0; i < SPARSE_CARDS; i++) {
+        Address c = cardRegion.plus(SparseTable.entry(table, i).loadInt() << Card.LOG_BYTES_IN_CARD);
+        PerRegionTable.addCard(spare, c);
+      }
+      PerRegionTable.addCard(spare, card);
+      unlinkTable(region, table);
+      linkTable(region, spare);
+      slot.store(spare);
+      spare = Address.zero();
+      Region.set(region, Region.MD_REMSET_FINE_PRTS, finePRTs + 1);
+      unlock(region);
+      releaseTable(table);
       incCardCount(region);
+      break;
     }
+    if (!spare.isZero()) releaseTable(spare);
   }
 
   @Inline
@@ -195,12 +482,19 @@ public class RemSet {
       VM.assertions._assert(Region.isAligned(region));
       VM.assertions._assert(Card.isAligned(card));
     }
-    Address cardRegion = Region.of(card);
-    Address prt = getPRT(region, cardRegion, false);
-    if (!prt.isZero()) {
+    Address slot = tableSlot(region, Region.of(card));
+    if (slot.isZero()) return;
+    Address prt = slot.loadAddress();
+    if (prt.isZero() || prt.EQ(COARSE)) return;
+    if (prt.loadInt(PRT_KIND_OFFSET) == FINE) {
       if (PerRegionTable.removeCard(prt, card)) {
         decCardCount(region);
       }
+    } else {
+      lock(region);
+      boolean removed = SparseTable.removeCard(prt, card);
+      unlock(region);
+      if (removed) decCardCount(region);
     }
   }
 
@@ -211,10 +505,16 @@ public class RemSet {
       VM.assertions._assert(Region.isAligned(region));
       VM.assertions._assert(Card.isAligned(card));
     }
-    Address cardRegion = Region.of(card);
-    Address prt = getPRT(region, cardRegion, false);
+    Address slot = tableSlot(region, Region.of(card));
+    if (slot.isZero()) return false;
+    Address prt = slot.loadAddress();
     if (prt.isZero()) return false;
-    return PerRegionTable.containsCard(prt, card);
+    if (prt.EQ(COARSE)) return true;
+    if (prt.loadInt(PRT_KIND_OFFSET) == FINE) return PerRegionTable.containsCard(prt, card);
+    lock(region);
+    boolean result = SparseTable.containsCard(prt, card);
+    unlock(region);
+    return result;
   }
 
   @Inline
@@ -240,15 +540,27 @@ public class RemSet {
         // Do nothing
       } else {
         removedCards += prt.loadInt(PRT_CARDS_OFFSET);
-        releaseOnePRTNonAtomic(
-            Region.metaSlot(rsRegion, Region.MD_REMSET_HEAD_PRT),
-            prtSlot,
-            prt
-        );
+        releaseOnePRTNonAtomic(rsRegion, prtSlot, prt);
       }
 
       prt = nextPRT;
     }
+    if (coarseRegions(rsRegion) > 0) {
+      int coarse = 0;
+      for (int i = 0; i < LOGICAL_REGIONS_IN_HEAP; i++) {
+        Address slot = remset.plus(i << Constants.LOG_BYTES_IN_ADDRESS);
+        if (slot.loadAddress().NE(COARSE)) continue;
+        if (Region.getBool(regionAt(i), Region.MD_RELOCATE)) {
+          slot.store(Address.zero());
+        } else {
+          coarse += 1;
+        }
+      }
+      Region.set(rsRegion, Region.MD_REMSET_COARSE_REGIONS, coarse);
+    }
+    if (Region.getAddress(rsRegion, Region.MD_REMSET_HEAD_PRT).isZero() && coarseRegions(rsRegion) == 0) {
+      releaseTableArray(rsRegion);
+    }
 //    Atomic.Int.fetchAdd(Region.metaSlot(rsRegion, Region.MD_REMSET_SIZE), removedCards);
   }
 
@@ -256,11 +568,7 @@ public class RemSet {
   private static int clearCSetPRTs(Address rsRegion, Address prtRegion, Address prt, Address prtSlot) {
     if (Region.getBool(prtRegion, Region.MD_RELOCATE)) {
       int removedCards = prt.loadInt(PRT_CARDS_OFFSET);
-      releaseOnePRTNonAtomic(
-          Region.metaSlot(rsRegion, Region.MD_REMSET_HEAD_PRT),
-          prtSlot,
-          prt
-      );
+      releaseOnePRTNonAtomic(rsRegion, prtSlot, prt);
       return removedCards;
     }
     return 0;
@@ -269,14 +577,15 @@ public class RemSet {
   @Inline
   private static int clearDeadLosCards(Address region, Address prt) {
     int removedCards = 0;
+    boolean sparse = prt.loadInt(PRT_KIND_OFFSET) == SPARSE;
     Address regionEnd = region.plus(Region.BYTES_IN_REGION);
     for (Address card = region; card.LT(regionEnd); card = card.plus(Card.BYTES_IN_CARD)) {
-      if (PerRegionTable.containsCard(prt, card)) {
+      if (sparse ? SparseTable.containsCard(prt, card) : PerRegionTable.containsCard(prt, card)) {
         Address objectStartRef = card.plus(Card.LOS_HEADER_SIZE);
         ObjectReference o = objectStartRef.plus(Card.OBJECT_REF_OFFSET).toObjectReference();
         if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!o.isNull());
         if (!G1.loSpace.isLive(o)) {
-          if (PerRegionTable.removeCard(prt, card)) removedCards += 1;
+          if (sparse ? SparseTable.removeCard(prt, card) : PerRegionTable.removeCard(prt, card)) removedCards += 1;
         }
       }
     }
@@ -293,13 +602,77 @@ public class RemSet {
 //    Atomic.Int.fetchAdd(Region.metaSlot(region, Region.MD_REMSET_SIZE), -1);
   }
 
+  /**
+   * A small unordered array of card indices. Only accessed with the remset lock
+   * held, or during a GC pause.
+   */
+  @Uninterruptible
+  private static class SparseTable {
+    private static final MemoryPool sparseMemoryPool = new MemoryPool(BYTES_IN_SPARSE);
+
+    @Inline
+    private static Address allocSparseMemory() {
+      Address table = sparseMemoryPool.alloc();
+      table.store(SPARSE, PRT_KIND_OFFSET);
+      return table;
+    }
+
+    @Inline
+    private static void releaseSparseMemory(Address table) {
+      sparseMemoryPool.free(table);
+    }
+
+    @Inline
+    private static Address entry(Address table, int i) {
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(i >= 0 && i < SPARSE_CARDS);
+      return table.plus(PRT_DATA_START).plus(i << Constants.LOG_BYTES_IN_INT);
+    }
+
+    @Inline
+    private static int indexOf(Address table, Address card) {
+      final int cardIndex = Card.indexOf(card);
+      final int cards = table.loadInt(PRT_CARDS_OFFSET);
+      for (int i = 0; i < cards; i++) {
+        if (entry(table, i).loadInt() == cardIndex) return i;
+      }
+      return -1;
+    }
+
+    @Inline
+    public static boolean containsCard(Address table, Address card) {
+      return indexOf(table, card) != -1;
+    }
+
+    /** @return false if the table is full. The card must not be in the table. */
+    @Inline
+    public static boolean addCard(Address table, Address card) {
+      final int cards = table.loadInt(PRT_CARDS_OFFSET);
+      if (cards == SPARSE_CARDS) return false;
+      entry(table, cards).store(Card.indexOf(card));
+      table.store(cards + 1, PRT_CARDS_OFFSET);
+      return true;
+    }
+
+    @Inline
+    public static boolean removeCard(Address table, Address card) {
+      final int i = indexOf(table, card);
+      if (i == -1) return false;
+      final int last = table.loadInt(PRT_CARDS_OFFSET) - 1;
+      entry(table, i).store(entry(table, last).loadInt());
+      table.store(last, PRT_CARDS_OFFSET);
+      return true;
+    }
+  }
+
   @Uninterruptible
   private static class PerRegionTable {
     private static final MemoryPool prtMemoryPool = new MemoryPool(BYTES_IN_PRT);
 
     @Inline
     private static Address allocPrtMemory() {
-      return prtMemoryPool.alloc();
+      Address prt = prtMemoryPool.alloc();
+      prt.store(FINE, PRT_KIND_OFFSET);
+      return prt;
     }
 
     @Inline
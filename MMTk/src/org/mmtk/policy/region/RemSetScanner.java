@@ -0,0 +1,116 @@
+package org.mmtk.policy.region;
+
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Entrypoint;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
+
+import static org.mmtk.utility.Constants.*;
+
+/**
+ * Per-collector state of the parallel remembered set scan.
+ *
+ * The remembered cards of the collection set are first claimed and packed into
+ * chunks of <code>CHUNK_CARDS</code> cards, which are published on a shared
+ * list. All collectors then scan chunks from that list until it is drained,
+ * so a single region with a huge remembered set no longer serialises the
+ * phase.
+ *
+ * Chunk layout: next chunk, number of cards, cards.
+ */
+@Uninterruptible
+public class RemSetScanner {
+  public static final int CHUNK_CARDS = 64;
+  private static final Offset NEXT_OFFSET = Offset.zero();
+  private static final Offset SIZE_OFFSET = Offset.fromIntZeroExtend(BYTES_IN_ADDRESS);
+  private static final int CARDS_START = BYTES_IN_ADDRESS * 2;
+  private static final int BYTES_IN_CHUNK = CARDS_START + (CHUNK_CARDS << LOG_BYTES_IN_ADDRESS);
+
+  private static final MemoryPool chunkPool = new MemoryPool(BYTES_IN_CHUNK);
+  private static final ChunkList filledChunks = new ChunkList();
+
+  /** The chunk being filled by this collector */
+  private Address chunk = Address.zero();
+  private int chunkSize = 0;
+
+  /**
+   * Add a claimed card to the current chunk, publishing the chunk once it is full.
+   */
+  @Inline
+  public void push(Address card) {
+    if (chunk.isZero()) {
+      chunk = chunkPool.alloc();
+      chunkSize = 0;
+    }
+    chunk.plus(CARDS_START + (chunkSize << LOG_BYTES_IN_ADDRESS)).store(card);
+    chunkSize += 1;
+    if (chunkSize == CHUNK_CARDS) flush();
+  }
+
+  /** Publish the partially filled chunk, if any */
+  public void flush() {
+    if (chunk.isZero()) return;
+    chunk.store(chunkSize, SIZE_OFFSET);
+    filledChunks.push(chunk);
+    chunk = Address.zero();
+    chunkSize = 0;
+  }
+
+  /**
+   * Scan chunks from the shared list until it is drained.
+   * All chunks must have been published before any collector starts scanning.
+   *
+   * @return The number of cards scanned by this collector
+   */
+  public int scanChunks(Card.LinearScan<TraceLocal> scan, boolean markDead, TraceLocal trace) {
+    int cards = 0;
+    Address c;
+    while (!(c = filledChunks.pop()).isZero()) {
+      final int size = c.loadInt(SIZE_OFFSET);
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(size > 0 && size <= CHUNK_CARDS);
+      for (int i = 0; i < size; i++) {
+        Address card = c.plus(CARDS_START + (i << LOG_BYTES_IN_ADDRESS)).loadAddress();
+        Card.linearScan(card, scan, markDead, trace);
+      }
+      cards += size;
+      chunkPool.free(c);
+    }
+    return cards;
+  }
+
+  /**
+   * Shared list of filled chunks. Chunks are only pushed while the remembered
+   * sets are enumerated and only popped after that, so a plain CAS is safe.
+   */
+  @Uninterruptible
+  private static class ChunkList {
+    private static final Offset HEAD_OFFSET = VM.objectModel.getFieldOffset(ChunkList.class, "head", Address.class);
+    @Entrypoint private Address head = Address.zero();
+
+    @Inline
+    void push(Address chunk) {
+      Address headSlot = ObjectReference.fromObject(this).toAddress().plus(HEAD_OFFSET);
+      Address oldHead;
+      do {
+        oldHead = headSlot.prepareAddress();
+        chunk.store(oldHead, NEXT_OFFSET);
+      } while (!headSlot.attempt(oldHead, chunk));
+    }
+
+    @Inline
+    Address pop() {
+      Address headSlot = ObjectReference.fromObject(this).toAddress().plus(HEAD_OFFSET);
+      Address oldHead, newHead;
+      do {
+        oldHead = headSlot.prepareAddress();
+        if (oldHead.isZero()) return oldHead;
+        newHead = oldHead.loadAddress(NEXT_OFFSET);
+      } while (!headSlot.attempt(oldHead, newHead));
+      return oldHead;
+    }
+  }
+}
@@ -3,6 +3,7 @@ package org.mmtk.policy.region;
 import org.mmtk.utility.Atomic;
 import org.mmtk.utility.Log;
 import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Interruptible;
 import org.vmmagic.pragma.Uninterruptible;
 
 @Uninterruptible
@@ -13,29 +14,77 @@ public class Stat {
   public long totalRefineTime = 0;
   public Atomic.Int totalRemSetCards = new Atomic.Int();
   public long totalRemSetTime = 0;
+  /** Busy time of each collector while scanning remembered sets */
+  public long[] remSetScanTime = new long[1];
   public int totalCopyBytes = 0;
   public long totalCopyTime = 0;
   public Atomic.Long nurserySurvivedBytes = new Atomic.Long();
+  /** Bytes copied by the last pause that copied any, sizes the PLABs of the next one */
+  public long lastSurvivedBytes = 0;
+  /** Unused ends of retired PLABs and copy regions */
+  public final Atomic.Long plabWasteBytes = new Atomic.Long();
+  public final Atomic.Long regionWasteBytes = new Atomic.Long();
+
+  // Concurrent refinement, accumulated over the whole run
+  public final Atomic.Long concurrentRefineTime = new Atomic.Long();
+  public final Atomic.Long mutatorRefineTime = new Atomic.Long();
+  public final Atomic.Long concurrentRefineCards = new Atomic.Long();
+  public final Atomic.Long mutatorRefineCards = new Atomic.Long();
+  public final Atomic.Long enqueuedCards = new Atomic.Long();
+  /** Cards still dirty when pauses start, left for the pause to refine */
+  public long totalDirtyCardsAtPauseStart = 0;
+  public int pauses = 0;
+  public int humongousObjectsReclaimed = 0;
+  public long humongousBytesReclaimed = 0;
+  public int fullCompactions = 0;
+  /** Dead regions freed after marking, without evacuation */
+  public int cleanupRegions = 0;
+  // Copy tail waste, accumulated over the whole run
+  public long totalCopiedBytes = 0;
+  public long totalPlabWasteBytes = 0;
+  public long totalRegionWasteBytes = 0;
 
   // Derived data
   // Only valid after a stat round is finished (at the end of a pause)
   public long V_fixed;
   public double U, S, C;
 
+  @Interruptible
+  public void setWorkers(int workers) {
+    remSetScanTime = new long[workers];
+  }
+
   public void pauseStart(int dirtyCards) {
     startTime = VM.statistics.nanoTime();
     totalRefineCards = dirtyCards;
+    totalDirtyCardsAtPauseStart += dirtyCards;
+    pauses += 1;
     totalRefineTime = 0;
     totalRemSetCards.set(0);
     totalRemSetTime = 0;
+    for (int i = 0; i < remSetScanTime.length; i++)
+      remSetScanTime[i] = 0;
     totalCopyBytes = 0;
     totalCopyTime = 0;
     nurserySurvivedBytes.set(0);
+    plabWasteBytes.set(0);
+    regionWasteBytes.set(0);
   }
 
   public void pauseEnd() {
     endTime =  VM.statistics.nanoTime();
     totalTime = endTime - startTime;
+    // Cards are balanced across collectors, so the average busy time is what
+    // the remembered set scan adds to the pause. Waiting at the barriers is
+    // left in V_fixed.
+    long remSetScanTimeSum = 0;
+    for (int i = 0; i < remSetScanTime.length; i++)
+      remSetScanTimeSum += remSetScanTime[i];
+    totalRemSetTime = remSetScanTimeSum / remSetScanTime.length;
+    if (nurserySurvivedBytes.get() != 0) lastSurvivedBytes = nurserySurvivedBytes.get();
+    totalCopiedBytes += nurserySurvivedBytes.get();
+    totalPlabWasteBytes += plabWasteBytes.get();
+    totalRegionWasteBytes += regionWasteBytes.get();
     long ud = totalRefineTime;
     long vs = totalRemSetTime;
     long vc = totalCopyTime;
@@ -25,7 +25,13 @@ import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
 
 /**
+ * Bump pointer allocator into thread-local buffers carved out of regions.
  *
+ * Mutators share one allocation region per generation and carve TLABs out of
+ * it with a CAS. GC workers instead own their current region and carve PLABs
+ * out of it without synchronization, claiming a fresh region from the space
+ * when it is full. Whatever is left at the end of a PLAB or region that is
+ * retired is counted as tail waste.
  */
 @Uninterruptible
 public class RegionAllocator2 extends Allocator {
@@ -33,7 +39,6 @@ public class RegionAllocator2 extends Allocator {
   static final int LOG_UNIT_SIZE = 9;
   static final int UNIT_SIZE = 1 << LOG_UNIT_SIZE;
   static final int MIN_TLAB_SIZE = 2 * 1024;
-  static final int MAX_TLAB_SIZE = Region.BYTES_IN_REGION;
 
   protected final RegionSpace space;
   protected final int spaceDescriptor;
@@ -41,19 +46,41 @@ public class RegionAllocator2 extends Allocator {
   private Address cursor = Address.zero();
   private Address limit = Address.zero();
   int refills = 0;
-  int tlabSize = MIN_TLAB_SIZE;// + MAX_TLAB_SIZE) >> 1;
+  int tlabSize = MIN_TLAB_SIZE;
   private static final int REFILLS_PER_GC = 50;
+  /** The share of a GC worker's copied bytes its PLABs should waste at the end of the GC, on average */
+  private static final int TARGET_PLAB_WASTE_PERCENT = 10;
+  /** PLABs a GC worker has open at the end of the GC, one per destination generation */
+  private static final int PLABS_PER_WORKER = 2;
+
+  /** Copying into regions owned by this allocator, see <code>claimRegion</code> */
+  private final boolean ownsRegions;
+  private Address region = Address.zero();
+  private long plabWasteBytes = 0;
+  private long regionWasteBytes = 0;
 
   /**
    * Constructor.
    *
    * @param space The space to bump point into.
-   * @param generation TODO
+   * @param generation The generation of the regions to allocate into
    */
   public RegionAllocator2(RegionSpace space, int generation) {
+    this(space, generation, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param space The space to bump point into.
+   * @param generation The generation of the regions to allocate into
+   * @param ownsRegions Allocate into regions owned by this allocator, for GC workers
+   */
+  public RegionAllocator2(RegionSpace space, int generation, boolean ownsRegions) {
     this.space = space;
     this.spaceDescriptor = space.getDescriptor();
     this.generation = generation;
+    this.ownsRegions = ownsRegions;
   }
 
   @Inline
@@ -68,16 +95,55 @@ public class RegionAllocator2 extends Allocator {
     tlabSize = alignTLAB(tlabSize);
     if (tlabSize < MIN_TLAB_SIZE) {
       tlabSize = MIN_TLAB_SIZE;
-    } else if (tlabSize > MAX_TLAB_SIZE) {
-      tlabSize = MAX_TLAB_SIZE;
+    } else if (tlabSize > Region.BYTES_IN_REGION) {
+      tlabSize = Region.BYTES_IN_REGION;
     }
     refills = 0;
   }
 
+  /**
+   * Size PLABs from the waste target of this worker,
+   * <code>TARGET_PLAB_WASTE_PERCENT</code> of what it copies. Each of the
+   * worker's <code>PLABS_PER_WORKER</code> PLABs is half used on average
+   * when the GC ends, so together they waste about the target. This is an
+   * expectation, not a bound: a PLAB retired right after it was carved is
+   * wasted almost entirely, and the size is clamped to between
+   * <code>MIN_TLAB_SIZE</code> and a region.
+   *
+   * @param copiedBytes The bytes a GC worker copied in the previous pause
+   */
+  public void adjustPLABSize(long copiedBytes) {
+    final long wasteTarget = copiedBytes * TARGET_PLAB_WASTE_PERCENT / 100;
+    long size = 2 * wasteTarget / PLABS_PER_WORKER;
+    if (size < MIN_TLAB_SIZE) {
+      size = MIN_TLAB_SIZE;
+    } else if (size > Region.BYTES_IN_REGION) {
+      size = Region.BYTES_IN_REGION;
+    }
+    tlabSize = alignTLAB((int) size);
+    refills = 0;
+  }
+
   public void reset() {
     retireTLAB();
     cursor = Address.zero();
     limit = Address.zero();
+    if (ownsRegions && !region.isZero()) retireRegion();
+  }
+
+  /** @return the bytes left unused at the end of retired PLABs */
+  public long plabWasteBytes() {
+    return plabWasteBytes;
+  }
+
+  /** @return the bytes left unused at the end of retired regions */
+  public long regionWasteBytes() {
+    return regionWasteBytes;
+  }
+
+  public void clearWasteBytes() {
+    plabWasteBytes = 0;
+    regionWasteBytes = 0;
   }
 
   @Inline
@@ -97,13 +163,43 @@ public class RegionAllocator2 extends Allocator {
 
   @Inline
   private void retireTLAB() {
-    if (!G1.ENABLE_REMEMBERED_SETS) return;
     if (cursor.isZero() || limit.isZero()) {
       return;
     }
+    plabWasteBytes += limit.diff(cursor).toLong();
+    if (!G1.ENABLE_REMEMBERED_SETS) return;
     fillAlignmentGap(cursor, limit);
   }
 
+  private void retireRegion() {
+    final Address regionCursor = Region.getAddress(region, Region.MD_NEXT_CURSOR);
+    regionWasteBytes += region.plus(Region.BYTES_IN_REGION).diff(regionCursor).toLong();
+    region = Address.zero();
+  }
+
+  /**
+   * Carve a PLAB out of the region owned by this allocator. If the region
+   * cannot hold a full PLAB, its remainder is used when the object still
+   * fits, otherwise it is retired and a fresh one is claimed.
+   *
+   * @param size The PLAB size
+   * @param minSize The size needed for the object being allocated
+   * @return The PLAB, or zero if no region could be claimed
+   */
+  private Address allocPLAB(int size, int minSize) {
+    if (!region.isZero()) {
+      final Address regionCursor = Region.getAddress(region, Region.MD_NEXT_CURSOR);
+      final int remaining = region.plus(Region.BYTES_IN_REGION).diff(regionCursor).toInt();
+      if (remaining < size && remaining >= minSize) size = remaining;
+      final Address plab = Region.allocate(region, size, false);
+      if (!plab.isZero()) return plab;
+      retireRegion();
+    }
+    region = space.claimRegion(generation);
+    if (region.isZero()) return Address.zero();
+    return Region.allocate(region, size, false);
+  }
+
   /*****************************************************************************
    *
    * Public interface
@@ -153,8 +249,10 @@ public class RegionAllocator2 extends Allocator {
   protected final Address allocSlowOnce(int bytes, int align, int offset) {
     int size = bytes > tlabSize ? bytes : tlabSize;
     size = alignTLAB(size);
-    Address tlab = space.allocTLAB(generation, size);
+    Address tlab = ownsRegions ? allocPLAB(size, alignTLAB(bytes)) : space.allocTLAB(generation, size);
     if (tlab.isZero()) return tlab;
+    // The PLAB may have taken only the remainder of the owned region
+    if (ownsRegions) size = Region.getAddress(region, Region.MD_NEXT_CURSOR).diff(tlab).toInt();
     refills += 1;
     retireTLAB();
     cursor = tlab;
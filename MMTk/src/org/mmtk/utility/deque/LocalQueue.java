@@ -79,7 +79,26 @@ import org.vmmagic.unboxed.*;
   @Inline
   protected final boolean checkDequeue(int arity) {
     if (bufferOffset(head).isZero()) {
-      return dequeueUnderflow(arity);
+      return dequeueUnderflow(arity, true);
+    } else {
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(bufferOffset(head).sGE(Word.fromIntZeroExtend(arity).lsh(LOG_BYTES_IN_ADDRESS).toOffset()));
+      return true;
+    }
+  }
+
+  /**
+   * Check whether there are values in the buffer for a pending dequeue,
+   * as <code>checkDequeue()</code> does, but never wait on the shared
+   * queue for other consumers when it is empty.
+   *
+   * @param arity The arity of the values stored in this queue: the
+   * buffer must contain enough space for this many words.
+   * @return whether there are values available for a dequeue
+   */
+  @Inline
+  protected final boolean checkDequeueNoWait(int arity) {
+    if (bufferOffset(head).isZero()) {
+      return dequeueUnderflow(arity, false);
     } else {
       if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(bufferOffset(head).sGE(Word.fromIntZeroExtend(arity).lsh(LOG_BYTES_IN_ADDRESS).toOffset()));
       return true;
@@ -113,14 +132,8 @@ import org.vmmagic.unboxed.*;
   protected final boolean headStarved(int arity) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == queue.getArity());
 
-    // If the tail has entries...
-    if (tail.NE(tailBufferEnd)) {
-      head = normalizeTail(arity).plus(BYTES_IN_ADDRESS);
-      tail = Deque.TAIL_INITIAL_VALUE;
-      tailBufferEnd = Deque.TAIL_INITIAL_VALUE;
-      // Return that we acquired more entries
-      return false;
-    }
+    // If the tail has entries, return that we acquired more entries
+    if (consumeTail(arity)) return false;
     // Wait for another entry to materialize...
     head = queue.dequeueAndWait(arity);
     // return true if a) there is a head buffer, and b) it is non-empty
@@ -132,6 +145,20 @@ import org.vmmagic.unboxed.*;
    * Private instance methods
    */
 
+  /**
+   * Move the entries of the tail buffer, if any, to the head.
+   *
+   * @param arity The arity of this buffer
+   * @return True if the tail had entries
+   */
+  private boolean consumeTail(int arity) {
+    if (tail.EQ(tailBufferEnd)) return false;
+    head = normalizeTail(arity).plus(BYTES_IN_ADDRESS);
+    tail = Deque.TAIL_INITIAL_VALUE;
+    tailBufferEnd = Deque.TAIL_INITIAL_VALUE;
+    return true;
+  }
+
   /**
    * There are not sufficient entries in the head buffer for a pending
    * dequeue.  Acquire a new head buffer.  If the shared queue has no
@@ -139,11 +166,13 @@ import org.vmmagic.unboxed.*;
    * if entries cannot be acquired.
    *
    * @param arity The arity of this buffer (used for sanity test only).
+   * @param waiting Whether to wait for other consumers if the shared
+   * queue and the tail are empty
    * @return True if there the head buffer has been successfully
    * replenished.
    */
   @NoInline
-  private boolean dequeueUnderflow(int arity) {
+  private boolean dequeueUnderflow(int arity, boolean waiting) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == queue.getArity());
     do {
       if (head.NE(Deque.HEAD_INITIAL_VALUE))
@@ -152,7 +181,7 @@ import org.vmmagic.unboxed.*;
     } while (head.NE(Deque.HEAD_INITIAL_VALUE) && bufferOffset(head).isZero());
 
     if (head.EQ(Deque.HEAD_INITIAL_VALUE))
-      return !headStarved(arity);
+      return waiting ? !headStarved(arity) : consumeTail(arity);
 
     return true;
   }
@@ -101,6 +101,31 @@ import org.vmmagic.pragma.*;
     }
   }
 
+  /**
+   * Pop an object from the object queue without waiting for other
+   * consumers of the shared queue, return zero if the queue is empty.
+   *
+   * @return The next object in the object queue, or zero if the
+   * queue is empty
+   */
+  @Inline
+  public final ObjectReference popNoWait() {
+    if (checkDequeueNoWait(1)) {
+      return uncheckedDequeue().toObjectReference();
+    } else {
+      return ObjectReference.nullReference();
+    }
+  }
+
+  /**
+   * @return whether the queue is empty, without waiting for other
+   * consumers of the shared queue
+   */
+  @Inline
+  public final boolean isEmptyNoWait() {
+    return !checkDequeueNoWait(1);
+  }
+
   @Inline
   public final boolean isEmpty() {
     return !checkDequeue(1);
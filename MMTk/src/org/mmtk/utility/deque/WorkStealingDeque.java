@@ -0,0 +1,185 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.deque;
+
+import static org.mmtk.utility.Constants.*;
+
+import org.mmtk.policy.RawPageSpace;
+import org.mmtk.utility.Atomic;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+
+/**
+ * A fixed capacity Chase-Lev work-stealing deque.
+ *
+ * The owning thread pushes and pops entries at the bottom without locking,
+ * other threads steal entries from the top with a CAS on <code>top</code>.
+ * Only the last entry is contended between the owner and thieves.
+ *
+ * As in <code>SharedDeque</code>, entries are <code>arity</code> words long.
+ * A push fails when the deque is full, the caller then has to process the
+ * entry itself or put it elsewhere.
+ *
+ * The entries live in raw pages, acquired on the first push and kept for
+ * the lifetime of the deque.
+ */
+@Uninterruptible
+public class WorkStealingDeque {
+  private final RawPageSpace rps;
+  private final int arity;
+  private final int logCapacity;
+  private final int mask;
+  private Address entries = Address.zero();
+  /** Next entry to steal, only ever incremented */
+  private final Atomic.Int top = new Atomic.Int();
+  /** Next free entry, only written by the owner */
+  private volatile int bottom = 0;
+  /** Entry taken by the last successful <code>pop</code>, owner only */
+  private Address popped0 = Address.zero();
+  private Address popped1 = Address.zero();
+
+  /**
+   * @param rps the space to acquire the entries from
+   * @param logCapacity log2 of the number of words in the deque, at least one page
+   * @param arity the number of words in each entry, 1 or 2
+   */
+  public WorkStealingDeque(RawPageSpace rps, int logCapacity, int arity) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == 1 || arity == 2);
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(logCapacity + LOG_BYTES_IN_ADDRESS >= LOG_BYTES_IN_PAGE);
+    this.rps = rps;
+    this.arity = arity;
+    this.logCapacity = logCapacity;
+    this.mask = (1 << logCapacity) - 1;
+  }
+
+  @NoInline
+  private void allocEntries() {
+    entries = rps.acquire(1 << (logCapacity + LOG_BYTES_IN_ADDRESS - LOG_BYTES_IN_PAGE));
+    if (entries.isZero()) VM.assertions.fail("Failed to allocate space for a work-stealing deque");
+  }
+
+  @Inline
+  private Address slot(int index) {
+    return entries.plus((index & mask) << LOG_BYTES_IN_ADDRESS);
+  }
+
+  @Inline
+  public final boolean isEmpty() {
+    return bottom - top.get() <= 0;
+  }
+
+  @Inline
+  public final boolean push(Address value) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == 1);
+    if (entries.isZero()) allocEntries();
+    final int b = bottom;
+    if (b - top.get() > mask) return false;
+    slot(b).store(value);
+    publish(b);
+    return true;
+  }
+
+  @Inline
+  public final boolean push(Address value0, Address value1) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == 2);
+    if (entries.isZero()) allocEntries();
+    final int b = bottom;
+    if (b - top.get() > mask - 1) return false;
+    slot(b).store(value0);
+    slot(b + 1).store(value1);
+    publish(b);
+    return true;
+  }
+
+  /**
+   * Make the entry at <code>b</code> visible to thieves. Thieves read
+   * <code>bottom</code> before the entry, so the entry only has to be
+   * stored first; the full fence is only needed on <code>pop</code>.
+   */
+  @Inline
+  private void publish(int b) {
+    VM.memory.storeStoreBarrier();
+    bottom = b + arity;
+  }
+
+  /**
+   * Take the most recently pushed entry. Owner only.
+   *
+   * @return false if the deque is empty, or a thief took the last entry
+   */
+  @Inline
+  public final boolean pop() {
+    final int b = bottom - arity;
+    bottom = b;
+    VM.memory.fence();
+    final int t = top.get();
+    if (b - t < 0) {
+      bottom = t;
+      return false;
+    }
+    popped0 = slot(b).loadAddress();
+    if (arity == 2) popped1 = slot(b + 1).loadAddress();
+    if (b != t) return true;
+    // Last entry, race with the thieves for it
+    final boolean won = top.attempt(t, t + arity);
+    bottom = t + arity;
+    return won;
+  }
+
+  /** @return the first word of the entry taken by the last <code>pop</code> */
+  @Inline
+  public final Address popped0() {
+    return popped0;
+  }
+
+  /** @return the second word of the entry taken by the last <code>pop</code> */
+  @Inline
+  public final Address popped1() {
+    return popped1;
+  }
+
+  /**
+   * Steal the oldest entry and push it onto the thief's own deque.
+   *
+   * @param thief The deque of the calling thread, must be empty
+   * @return false if there was nothing to steal, or another thread won the race
+   */
+  @Inline
+  public final boolean stealInto(WorkStealingDeque thief) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(thief != this && thief.arity == arity && thief.isEmpty());
+    final int t = top.get();
+    VM.memory.combinedLoadBarriers();
+    final int b = bottom;
+    if (b - t <= 0) return false;
+    final Address value0 = slot(t).loadAddress();
+    final Address value1 = arity == 2 ? slot(t + 1).loadAddress() : Address.zero();
+    if (!top.attempt(t, t + arity)) return false;
+    if (arity == 1) {
+      thief.push(value0);
+    } else {
+      thief.push(value0, value1);
+    }
+    return true;
+  }
+
+  /**
+   * Drop all entries. Must be called while no other thread uses the deque.
+   */
+  public final void reset() {
+    top.set(0);
+    bottom = 0;
+  }
+}
@@ -42,7 +42,7 @@ public final class FreeListPageResource extends PageResource {
 
   private final GenericFreeList freeList;
   private int highWaterMark = 0;
-  private final int metaDataPagesPerRegion;
+  private int metaDataPagesPerRegion;
   private int pagesCurrentlyOnFreeList = 0;
 
   /**
@@ -136,6 +136,18 @@ public final class FreeListPageResource extends PageResource {
     return rtn;
   }
 
+  /**
+   * Change the number of meta data pages at the start of each chunk, for
+   * spaces whose layout is only fixed at boot. Must be called before any
+   * chunk is given to this resource.
+   *
+   * @param metaDataPagesPerRegion the number of meta data pages per region
+   */
+  public void setMetaDataPagesPerRegion(int metaDataPagesPerRegion) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(this.metaDataPagesPerRegion != 0 && metaDataPagesPerRegion != 0 && pagesCurrentlyOnFreeList == 0);
+    this.metaDataPagesPerRegion = metaDataPagesPerRegion;
+  }
+
   public int pageOffsetLogAlign = 0;
 
   /**
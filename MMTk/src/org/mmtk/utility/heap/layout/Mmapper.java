@@ -12,6 +12,8 @@
  */
 package org.mmtk.utility.heap.layout;
 
+import org.mmtk.utility.Conversions;
+import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
@@ -83,6 +85,20 @@ public abstract class Mmapper {
    */
   public abstract void protect(Address start, int pages);
 
+  /**
+   * Return the physical memory behind a number of mapped pages to the
+   * operating system.  The pages stay mapped, and are demand zero
+   * again when next touched, so no call is needed to commit them again.
+   *
+   * @param start Address of the first page to be uncommitted
+   * @param pages Number of pages to be uncommitted
+   * @return {@code true} if the operating system accepted the request
+   */
+  public boolean uncommit(Address start, int pages) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(addressIsMapped(start));
+    return VM.memory.uncommit(start, Conversions.pagesToBytes(pages).toInt());
+  }
+
   /**
    * Return a given address rounded up to an mmap chunk size
    *
@@ -0,0 +1,32 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+public class G1ConcGCThreads extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public G1ConcGCThreads() {
+    super(Options.set, "G1 Conc GC Threads",
+          "Sets the number of threads used for concurrent marking. Zero uses the number of GC threads.",
+          0);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf((this.value < 0), "Thread count must be a non-negative integer");
+  }
+}
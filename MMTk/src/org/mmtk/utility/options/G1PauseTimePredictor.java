@@ -0,0 +1,24 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * Should G1 size the young generation and collection sets from predicted pause times?
+ */
+public final class G1PauseTimePredictor extends org.vmutil.options.BooleanOption {
+  public G1PauseTimePredictor() {
+    super(Options.set, "G1 Pause Time Predictor",
+          "Size the young generation and collection sets to meet the pause time goal",
+          true);
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+import org.mmtk.policy.region.Region;
+
+public class G1RegionSize extends org.vmutil.options.PagesOption {
+  /**
+   * Create the option.
+   */
+  public G1RegionSize() {
+    super(Options.set, "G1 Region Size",
+          "Size of a G1 heap region, a power of two of at least 64KB. Zero selects the size from the maximum heap size.",
+          0);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    if (value == 0) return;
+    failIf((value & (value - 1)) != 0, "Region size must be a power of two");
+    failIf(value < (1 << Region.MIN_LOG_PAGES_IN_REGION) || value > (1 << Region.MAX_LOG_PAGES_IN_REGION),
+        "Region size out of range");
+  }
+}
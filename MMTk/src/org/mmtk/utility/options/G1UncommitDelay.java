@@ -0,0 +1,32 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+public class G1UncommitDelay extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public G1UncommitDelay() {
+    super(Options.set, "G1 Uncommit Delay",
+          "Sets the time in milliseconds a region has to stay free before its memory is returned to the operating system. Zero disables uncommitting.",
+          5000);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf((this.value < 0), "Delay must be a non-negative integer");
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+public class MaxTenuringThreshold extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public MaxTenuringThreshold() {
+    super(Options.set, "Max Tenuring Threshold",
+          "Sets the maximum number of young GCs an object survives before it is promoted to the old generation. The default is 15.",
+          15);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf((this.value < 0 || this.value > 15), "Threshold must be an integer between 0 and 15");
+  }
+}
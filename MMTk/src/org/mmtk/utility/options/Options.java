@@ -43,13 +43,22 @@ public final class Options {
   public static EagerMmapSpaces eagerMmapSpaces;
   public static FragmentationStats fragmentationStats;
   public static FullHeapSystemGC fullHeapSystemGC;
+  public static G1ConcurrentMarking g1ConcurrentMarking;
+  public static G1ConcurrentRefinement g1ConcurrentRefinement;
   public static G1GCLiveThresholdPercent g1GCLiveThresholdPercent;
   public static G1GenerationalMode g1GenerationalMode;
   public static G1HeapWastePercent g1HeapWastePercent;
+  public static G1HotCardOptimization g1HotCardOptimization;
   public static G1InitiatingHeapOccupancyPercent g1InitiatingHeapOccupancyPercent;
   public static G1MaxNewSizePercent g1MaxNewSizePercent;
   public static G1NewSizePercent g1NewSizePercent;
+  public static G1PauseTimePredictor g1PauseTimePredictor;
+  public static G1RegionSize g1RegionSize;
+  public static G1RememberedSets g1RememberedSets;
   public static G1ReservePercent g1ReservePercent;
+  public static G1UncommitDelay g1UncommitDelay;
+  public static G1XorBarrier g1XorBarrier;
+  public static G1ConcGCThreads g1ConcGCThreads;
   public static GCspyPort gcspyPort;
   public static GCspyTileSize gcspyTileSize;
   public static GCspyWait gcspyWait;
@@ -60,6 +69,7 @@ public final class Options {
   public static LineReuseRatio lineReuseRatio;
   public static MarkSweepMarkBits markSweepMarkBits;
   public static MaxGCPauseMillis maxGCPauseMillis;
+  public static MaxTenuringThreshold maxTenuringThreshold;
   public static MetaDataLimit metaDataLimit;
   public static NoFinalizer noFinalizer;
   public static NoReferenceTypes noReferenceTypes;
@@ -69,8 +79,13 @@ public final class Options {
   public static PrintPhaseStats printPhaseStats;
   public static ProtectOnRelease protectOnRelease;
   public static SanityCheck sanityCheck;
+  public static ShenandoahPacing shenandoahPacing;
+  public static ShenandoahPacingMaxDelay shenandoahPacingMaxDelay;
+  public static SoftRefLRUPolicyMSPerMB softRefLRUPolicyMSPerMB;
   public static StressFactor stressFactor;
+  public static TargetSurvivorRatio targetSurvivorRatio;
   public static Threads threads;
+  public static WorkStealing workStealing;
   public static TraceRate traceRate;
   public static UseReturnBarrier useReturnBarrier;
   public static UseShortStackScans useShortStackScans;
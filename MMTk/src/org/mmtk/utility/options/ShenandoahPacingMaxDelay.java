@@ -0,0 +1,32 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+public class ShenandoahPacingMaxDelay extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public ShenandoahPacingMaxDelay() {
+    super(Options.set, "Shenandoah Pacing Max Delay",
+          "Sets the longest time in milliseconds a single allocation is stalled by the Shenandoah pacer.",
+          10);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf((this.value < 0), "Delay must be a non-negative integer");
+  }
+}
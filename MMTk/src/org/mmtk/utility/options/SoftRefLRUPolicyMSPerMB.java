@@ -0,0 +1,32 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+public class SoftRefLRUPolicyMSPerMB extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public SoftRefLRUPolicyMSPerMB() {
+    super(Options.set, "Soft Ref LRU Policy MS Per MB",
+          "Sets how many milliseconds a soft referent survives without being accessed, per MB of free heap.",
+          1000);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf((this.value < 0), "Time must be a non-negative integer");
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+public class TargetSurvivorRatio extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public TargetSurvivorRatio() {
+    super(Options.set, "Target Survivor Ratio",
+          "Sets the percentage of the survivor space that may be occupied after a young GC before the tenuring threshold is lowered. The default is 50 percent.",
+          50);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf((this.value < 0 || this.value > 100), "Ratio must be an integer between 0 and 100");
+  }
+}
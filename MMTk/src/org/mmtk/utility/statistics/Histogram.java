@@ -0,0 +1,208 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.statistics;
+
+import org.mmtk.utility.Log;
+import org.mmtk.vm.Lock;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * A constant memory histogram of durations, with log-linear buckets as in
+ * HdrHistogram.
+ *
+ * Durations below 2^LOG_SUB_BUCKETS nanoseconds get a bucket each. Above,
+ * every power of two range is split into 2^(LOG_SUB_BUCKETS - 1) buckets of
+ * equal width, so a bucket is at most 1 / 2^(LOG_SUB_BUCKETS - 1) of the
+ * values it holds wide. Durations beyond 2^MAX_LOG_VALUE nanoseconds (about
+ * 18 minutes) fall into the last bucket. Percentiles are reported as the
+ * upper bound of their bucket, the maximum is exact.
+ *
+ * Unlike counters, histograms are always on: they record from boot to exit,
+ * independently of the harness.
+ */
+@Uninterruptible
+public class Histogram {
+
+  private static final int LOG_SUB_BUCKETS = 5;
+  private static final int HALF_SUB_BUCKETS = 1 << (LOG_SUB_BUCKETS - 1);
+  private static final int MAX_LOG_VALUE = 40;
+  private static final int MAX_MAGNITUDE = MAX_LOG_VALUE - LOG_SUB_BUCKETS;
+  private static final int BUCKETS = (MAX_MAGNITUDE + 2) * HALF_SUB_BUCKETS;
+
+  private static final int MAX_HISTOGRAMS = 256;
+  private static final Histogram[] histograms = new Histogram[MAX_HISTOGRAMS];
+  private static int count = 0;
+
+  private final String prefix;
+  private final String name;
+  private final Lock lock;
+  private final int[] buckets = new int[BUCKETS];
+  private long samples = 0;
+  private long total = 0;
+  private long max = 0;
+
+  /**
+   * Constructor
+   *
+   * @param name The name to be associated with this histogram
+   */
+  public Histogram(String name) {
+    this("", name);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param prefix The prefix of the name, e.g. the kind of durations
+   * @param name The name to be associated with this histogram
+   */
+  public Histogram(String prefix, String name) {
+    this.prefix = prefix;
+    this.name = name;
+    this.lock = VM.newLock("histogram");
+    if (count < MAX_HISTOGRAMS) {
+      histograms[count++] = this;
+    } else {
+      Log.writeln("Warning: number of histograms exceeds MAX_HISTOGRAMS");
+    }
+  }
+
+  /**
+   * @param nanos a duration
+   * @return the bucket of the duration
+   */
+  private static int bucket(long nanos) {
+    if (nanos < (1L << LOG_SUB_BUCKETS)) return nanos < 0 ? 0 : (int) nanos;
+    int magnitude = 1;
+    while ((nanos >>> magnitude) >= (1 << LOG_SUB_BUCKETS)) magnitude++;
+    if (magnitude > MAX_MAGNITUDE) return BUCKETS - 1;
+    return magnitude * HALF_SUB_BUCKETS + (int) (nanos >>> magnitude);
+  }
+
+  /**
+   * @param bucket a bucket
+   * @return the largest duration in the bucket
+   */
+  private static long upperBound(int bucket) {
+    if (bucket < (1 << LOG_SUB_BUCKETS)) return bucket;
+    final int magnitude = bucket / HALF_SUB_BUCKETS - 1;
+    final long sub = bucket - magnitude * HALF_SUB_BUCKETS;
+    return ((sub + 1) << magnitude) - 1;
+  }
+
+  /**
+   * Record a duration. Thread safe.
+   *
+   * @param nanos The duration, in nanoseconds
+   */
+  public void record(long nanos) {
+    final int b = bucket(nanos);
+    lock.acquire();
+    buckets[b]++;
+    samples++;
+    total += nanos;
+    if (nanos > max) max = nanos;
+    lock.release();
+  }
+
+  /** @return the number of durations recorded */
+  public final long samples() {
+    return samples;
+  }
+
+  /**
+   * @param fraction a fraction, e.g. 0.99
+   * @return the duration that fraction of the recorded ones do not exceed,
+   * in nanoseconds
+   */
+  public final long percentile(double fraction) {
+    if (samples == 0) return 0;
+    long rank = (long) (fraction * samples);
+    if (rank < fraction * samples) rank++;
+    if (rank < 1) rank = 1;
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += buckets[b];
+      if (seen >= rank) {
+        final long bound = upperBound(b);
+        return bound < max ? bound : max;
+      }
+    }
+    return max;
+  }
+
+  /****************************************************************************
+   *
+   * Printing
+   */
+
+  /**
+   * Print all histograms
+   */
+  @Interruptible
+  public static void printAll() {
+    Log.writeln("============================ MMTk Histograms (ms) ==============================");
+    Log.writeln("name\tcount\tmean\tp50\tp99\tp99.9\tmax");
+    for (int i = 0; i < count; i++) {
+      if (histograms[i].samples != 0) histograms[i].print();
+    }
+    Log.writeln("------------------------------ End MMTk Histograms -----------------------------");
+  }
+
+  /**
+   * Print all histograms in Xml format
+   */
+  @Interruptible
+  public static void printAllXml() {
+    Xml.openTag("mmtk-histograms");
+    for (int i = 0; i < count; i++) {
+      if (histograms[i].samples != 0) histograms[i].printXml();
+    }
+    Xml.closeTag("mmtk-histograms");
+  }
+
+  private void print() {
+    Log.write(prefix);
+    Log.write(name);
+    Log.write("\t");
+    Log.write(samples);
+    Log.write("\t");
+    Log.write(VM.statistics.nanosToMillis(total / samples), 3);
+    Log.write("\t");
+    Log.write(VM.statistics.nanosToMillis(percentile(0.5)), 3);
+    Log.write("\t");
+    Log.write(VM.statistics.nanosToMillis(percentile(0.99)), 3);
+    Log.write("\t");
+    Log.write(VM.statistics.nanosToMillis(percentile(0.999)), 3);
+    Log.write("\t");
+    Log.writeln(VM.statistics.nanosToMillis(max), 3);
+  }
+
+  private void printXml() {
+    Xml.openMinorTag("histogram");
+    Xml.openAttribute("name");
+    Log.write(prefix);
+    Log.write(name);
+    Xml.closeAttribute();
+    Xml.attribute("suffix", "ms");
+    Xml.attribute("count", samples);
+    Xml.attribute("mean", VM.statistics.nanosToMillis(total / samples));
+    Xml.attribute("p50", VM.statistics.nanosToMillis(percentile(0.5)));
+    Xml.attribute("p99", VM.statistics.nanosToMillis(percentile(0.99)));
+    Xml.attribute("p99.9", VM.statistics.nanosToMillis(percentile(0.999)));
+    Xml.attribute("max", VM.statistics.nanosToMillis(max));
+    Xml.closeMinorTag();
+  }
+}
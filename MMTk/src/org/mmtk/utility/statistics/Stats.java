@@ -51,6 +51,8 @@ public class Stats {
   static int phase = 0;
   private static int gcCount = 0;
   static boolean gatheringStats = false;
+  /** Have the statistics, including the histograms, been printed? */
+  private static boolean statsPrinted = false;
   static boolean exceededPhaseLimit = false;
 
   /****************************************************************************
@@ -176,6 +178,15 @@ public class Stats {
       printStatsXml();
     else
       printStatsPlain();
+    statsPrinted = true;
+  }
+
+  /**
+   * @return whether the statistics, which include the histograms, have
+   * been printed, e.g. at the end of the harness
+   */
+  public static boolean statsPrinted() {
+    return statsPrinted;
   }
 
   /**
@@ -186,6 +197,22 @@ public class Stats {
     if (Options.printPhaseStats.getValue())
       printPhases();
     printTotals();
+    Histogram.printAll();
+  }
+
+  /**
+   * Print out the histograms, e.g. on demand or at exit. Unlike the
+   * counters they are always on, so cover the whole run.
+   */
+  @Interruptible
+  public static void printHistograms() {
+    if (Options.xmlStats.getValue()) {
+      Xml.begin();
+      Histogram.printAllXml();
+      Xml.end();
+    } else {
+      Histogram.printAll();
+    }
   }
 
   /**
@@ -279,6 +306,7 @@ public class Stats {
     if (Options.printPhaseStats.getValue())
       printPhasesXml();
     printTotalsXml();
+    Histogram.printAllXml();
     Xml.end();
   }
 
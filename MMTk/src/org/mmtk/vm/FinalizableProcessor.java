@@ -35,6 +35,29 @@ public abstract class FinalizableProcessor {
    */
   public abstract void scan(TraceLocal trace, boolean nursery);
 
+  /**
+   * Scan through the list of references with all collector threads. Every
+   * collector thread calls this method, then, once all of them have returned,
+   * exactly one calls {@link #scanFinish}.
+   * <p>
+   * By default the list is scanned serially, by {@link #scanFinish}.
+   *
+   * @param trace the thread local trace element.
+   * @param nursery {@code true} if it is safe to only scan new references.
+   */
+  public void parallelScan(TraceLocal trace, boolean nursery) {
+  }
+
+  /**
+   * Complete a parallel scan, e.g. by compacting the table.
+   *
+   * @param trace the thread local trace element.
+   * @param nursery {@code true} if it is safe to only scan new references.
+   */
+  public void scanFinish(TraceLocal trace, boolean nursery) {
+    scan(trace, nursery);
+  }
+
   /**
    * Iterates over and forward entries in the table.
    *
@@ -43,4 +66,31 @@ public abstract class FinalizableProcessor {
    *  last scan. Otherwise, scan all references.
    */
   public abstract void forward(TraceLocal trace, boolean nursery);
+
+  /**
+   * Forward the entries in the table with all collector threads, called in
+   * the same way as {@link #parallelScan}.
+   *
+   * @param trace the trace to use for the processing of the references
+   * @param nursery if {@code true}, scan only references generated since
+   *  last scan. Otherwise, scan all references.
+   */
+  public void parallelForward(TraceLocal trace, boolean nursery) {
+  }
+
+  /**
+   * Complete a parallel forwarding pass.
+   *
+   * @param trace the trace to use for the processing of the references
+   * @param nursery if {@code true}, scan only references generated since
+   *  last scan. Otherwise, scan all references.
+   */
+  public void forwardFinish(TraceLocal trace, boolean nursery) {
+    forward(trace, nursery);
+  }
+
+  /**
+   * @return the number of entries in the table
+   */
+  public abstract int count();
 }
@@ -105,6 +105,18 @@ import org.vmmagic.pragma.*;
    */
   public abstract boolean munprotect(Address start, int size);
 
+  /**
+   * Returns the physical memory behind an area of virtual memory to the
+   * operating system. The area stays mapped and reads as zero when it is
+   * next accessed.
+   *
+   * @param start the address of the start of the area, page aligned
+   * @param size the size, in bytes, of the area, a multiple of the page size
+   * @return <code>true</code> if successful, otherwise
+   * <code>false</code>
+   */
+  public abstract boolean uncommit(Address start, int size);
+
 
   /**
    * Zero a region of memory.
@@ -142,6 +154,14 @@ import org.vmmagic.pragma.*;
   @Inline
   public abstract void combinedLoadBarriers();
 
+  /**
+   * Ensures that all memory writes before this point are visible to all
+   * processors before any write after it.
+   * In JMM terminology, this would be a {@code StoreStore} fence.
+   */
+  @Inline
+  public abstract void storeStoreBarrier();
+
   /*
    * NOTE: The following methods must be implemented by subclasses of this
    * class, but are internal to the VM<->MM interface glue, so are never
@@ -36,6 +36,14 @@ public abstract class Monitor {
    */
   public abstract void await();
 
+  /**
+   * Wait for a broadcast, or until <code>nanos</code> have passed.
+   * May return early.
+   *
+   * @param nanos The maximum time to wait, in nanoseconds
+   */
+  public abstract void timedAwait(long nanos);
+
   /**
    * Send a broadcast.
    */
@@ -40,6 +40,33 @@ public abstract class ReferenceProcessor {
    */
   public abstract void scan(TraceLocal trace, boolean nursery, boolean retain);
 
+  /**
+   * Scan through the list of references with all collector threads. Every
+   * collector thread calls this method, then, once all of them have returned,
+   * exactly one calls {@link #scanFinish}.
+   * <p>
+   * By default the list is scanned serially, by {@link #scanFinish}.
+   *
+   * @param trace the thread local trace element.
+   * @param nursery {@code true} if it is safe to only scan new references.
+   * @param retain whether to retain those references whose referents are not
+   *  reachable
+   */
+  public void parallelScan(TraceLocal trace, boolean nursery, boolean retain) {
+  }
+
+  /**
+   * Complete a parallel scan, e.g. by compacting the list of references.
+   *
+   * @param trace the thread local trace element.
+   * @param nursery {@code true} if it is safe to only scan new references.
+   * @param retain whether to retain those references whose referents are not
+   *  reachable
+   */
+  public void scanFinish(TraceLocal trace, boolean nursery, boolean retain) {
+    scan(trace, nursery, retain);
+  }
+
   /**
    * Iterate over all references and forward.
    *
@@ -48,6 +75,26 @@ public abstract class ReferenceProcessor {
    */
   public abstract void forward(TraceLocal trace, boolean nursery);
 
+  /**
+   * Forward the references with all collector threads, called in the same
+   * way as {@link #parallelScan}.
+   *
+   * @param trace The MMTk trace to forward to
+   * @param nursery The nursery collection hint
+   */
+  public void parallelForward(TraceLocal trace, boolean nursery) {
+  }
+
+  /**
+   * Complete a parallel forwarding pass.
+   *
+   * @param trace The MMTk trace to forward to
+   * @param nursery The nursery collection hint
+   */
+  public void forwardFinish(TraceLocal trace, boolean nursery) {
+    forward(trace, nursery);
+  }
+
   /**
    * @return the number of references objects on the queue
    */
@@ -38,6 +38,24 @@ import org.vmmagic.unboxed.*;
    */
   public abstract void specializedScanObject(int id, TransitiveClosure trace, ObjectReference object);
 
+  /**
+   * @param object The object to be queried
+   * @return The number of elements if the object is an array of references,
+   * -1 otherwise
+   */
+  public abstract int referenceArrayLength(ObjectReference object);
+
+  /**
+   * Scan a range of the elements of an array of references, processing
+   * each element as an edge.
+   *
+   * @param trace the trace to use for scanning
+   * @param object The array to be scanned
+   * @param start The index of the first element to scan
+   * @param end The index after the last element to scan
+   */
+  public abstract void scanArrayRange(TransitiveClosure trace, ObjectReference object, int start, int end);
+
   /**
    * Prepares for using the <code>computeAllRoots</code> method.  The
    * thread counter allows multiple GC threads to co-operatively
@@ -0,0 +1,33 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.vmmagic.pragma;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import org.vmmagic.Pragma;
+
+/**
+ * This pragma is used to indicate a static field that may be set while the
+ * VM boots, e.g. from a command line option, but never changes once the VM
+ * is fully booted. Unlike {@link RuntimeFinal} its value is not known when
+ * the boot image is written, so only code compiled after boot can use it
+ * as a constant. Currently only boolean fields are supported.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD})
+@Documented
+@Pragma
+public @interface FinalAfterBoot { }
@@ -17,17 +17,39 @@ import org.vmmagic.pragma.ReferenceFieldsVary;
 
 /**
  * Implementation of java.lang.ref.SoftReference for JikesRVM.
+ * <p>
+ * Each soft reference records the value of {@link #clock} when its referent
+ * was last accessed. The clock is advanced by the garbage collector, which
+ * clears referents that have not been accessed for long enough, depending
+ * on how much of the heap is free.
  */
 @ReferenceFieldsVary
 public class SoftReference<T> extends Reference<T> {
 
+  /** Time of the last GC in milliseconds, set by the garbage collector */
+  private static long clock;
+
+  /** Value of the clock when the referent was last accessed */
+  private long timestamp;
+
   public SoftReference(T referent) {
     super(referent);
+    timestamp = clock;
     MemoryManager.addSoftReference(this,referent);
   }
 
   public SoftReference(T referent, ReferenceQueue<T> q) {
     super(referent, q);
+    timestamp = clock;
     MemoryManager.addSoftReference(this, referent);
   }
+
+  @Override
+  public T get() {
+    T referent = super.get();
+    if (referent != null && timestamp != clock) {
+      timestamp = clock;
+    }
+    return referent;
+  }
 }
@@ -340,6 +340,14 @@ public abstract class AnnotatedElement implements java.lang.reflect.AnnotatedEle
     return isAnnotationPresent(org.vmmagic.pragma.RuntimeFinal.class);
   }
 
+  /**
+   * @return {@code true} if this element has a FinalAfterBoot annotation.
+   * @see org.vmmagic.pragma.FinalAfterBoot
+   */
+  public final boolean hasFinalAfterBootAnnotation() {
+    return isAnnotationPresent(org.vmmagic.pragma.FinalAfterBoot.class);
+  }
+
   /**
    * @return {@code true} if this element has a Untraced annotation.
    * @see org.vmmagic.pragma.Untraced
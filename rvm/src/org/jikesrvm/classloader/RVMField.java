@@ -244,6 +244,15 @@ public final class RVMField extends RVMMember {
    return hasRuntimeFinalAnnotation();
   }
 
+  /**
+   * Is the field FinalAfterBoot? That is, can its current value be used in
+   * place of reading the field once the VM is fully booted.
+   * @return whether the field is final after boot
+   */
+  public boolean isFinalAfterBoot() {
+    return hasFinalAfterBootAnnotation();
+  }
+
   /**
    * @return {@code true} if this this field is invisible to the memory
    *  management system.
@@ -109,6 +109,7 @@ import org.jikesrvm.osr.ObjectHolder;
 import org.jikesrvm.osr.bytecodes.InvokeStatic;
 import org.jikesrvm.runtime.Entrypoints;
 import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.runtime.Statics;
 import org.vmmagic.pragma.NoInline;
 import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.Offset;
@@ -1621,6 +1622,10 @@ public final class BC2IR {
               boolean rhsBool = field.getRuntimeFinalValue();
               push(new IntConstantOperand(rhsBool ? 1 : 0));
               break;
+            } else if (VM.runningVM && VM.fullyBooted && field.isFinalAfterBoot()) {
+              if (VM.VerifyAssertions) opt_assert(fieldType.isBooleanType());
+              push(new IntConstantOperand(Statics.getSlotContentsAsInt(field.getOffset())));
+              break;
             }
           }
 
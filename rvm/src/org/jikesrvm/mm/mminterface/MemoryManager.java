@@ -57,6 +57,7 @@ import org.mmtk.utility.gcspy.GCspy;
 import org.mmtk.utility.heap.HeapGrowthManager;
 import org.mmtk.utility.heap.layout.HeapLayout;
 import org.mmtk.utility.options.Options;
+import org.mmtk.utility.statistics.Stats;
 import org.vmmagic.pragma.Entrypoint;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Interruptible;
@@ -110,6 +111,15 @@ public final class MemoryManager {
     Plan.harnessEnd();
   }
 
+  /**
+   * Print the pause, safepoint, phase and stall histograms recorded since
+   * boot, e.g. from a benchmark harness callback.
+   */
+  @Interruptible
+  public static void printHistograms() {
+    Stats.printHistograms();
+  }
+
   /***********************************************************************
    *
    * Initialization
@@ -201,6 +201,10 @@ public class Entrypoints {
 
   public static final RVMField referenceReferentField =
       getField(java.lang.ref.Reference.class, "_referent", org.vmmagic.unboxed.Address.class);
+  public static final RVMField softReferenceClockField =
+      getField(java.lang.ref.SoftReference.class, "clock", long.class);
+  public static final RVMField softReferenceTimestampField =
+      getField(java.lang.ref.SoftReference.class, "timestamp", long.class);
 
   /** Used in deciding which stack frames we can elide when printing. */
   public static final NormalMethod mainThreadRunMethod =
@@ -498,6 +498,9 @@ public class Memory {
   public static final int MAP_FIXED     = (VM.BuildForLinux) ? 16 : (VM.BuildForOsx) ?     16 : (VM.BuildForSolaris) ? 0x10 : 256;
   public static final int MAP_ANONYMOUS = (VM.BuildForLinux) ? 32 : (VM.BuildForOsx) ? 0x1000 : (VM.BuildForSolaris) ? 0x100 : 16;
 
+  // constants for madvise calls
+  public static final int MADV_DONTNEED = 4;
+
   public static boolean isPageMultiple(int val) {
     int pagesizeMask = getPagesize() - 1;
     return ((val & pagesizeMask) == 0);
@@ -562,6 +565,20 @@ public class Memory {
     return SysCall.sysCall.sysMProtect(address, size, prot) == 0;
   }
 
+  /**
+   * Do madvise system call
+   * @param address Start of address range (Address)
+   * @param size Size of address range
+   * @param advice Advice (int)
+   * @return true iff success
+   */
+  public static boolean madvise(Address address, Extent size, int advice) {
+    if (VM.VerifyAssertions) {
+      VM._assert(isPageAligned(address) && isPageMultiple(size));
+    }
+    return SysCall.sysCall.sysMAdvise(address, size, advice) == 0;
+  }
+
   private static int pagesize = UNKNOWN;
   private static int pagesizeLog = UNKNOWN;
 
@@ -169,6 +169,9 @@ public abstract class SysCall {
   @SysCallTemplate
   public abstract int sysMProtect(Address start, Extent length, int prot);
 
+  @SysCallTemplate
+  public abstract int sysMAdvise(Address start, Extent length, int advice);
+
   // threads
   @SysCallTemplate
   public abstract int sysNumProcessors();
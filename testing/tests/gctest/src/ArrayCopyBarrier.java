@@ -0,0 +1,119 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+/**
+ * Reference array copy throughput.
+ *
+ * Copies the same ranges of an <code>Object[]</code> once with an explicit
+ * loop, where every store runs the write barrier, and once with
+ * <code>System.arraycopy</code>, which takes the bulk copy barrier on plans
+ * that support it. A primitive copy of the same size is reported as the
+ * memcpy baseline. The copies are checked, so the test also exercises the
+ * barrier for overlapping ranges within one array.
+ */
+class ArrayCopyBarrier {
+
+  static final int[] SIZES = { 8, 64, 1024, 64 * 1024 };
+
+  static int rounds;
+
+  public static void main(String[] args) throws Throwable {
+    boolean base = true;
+    if (args.length == 0) {
+      System.out.println("No argument.  Assuming base");
+    } else if (args[0].compareTo("opt") == 0 || args[0].compareTo("perf") == 0) {
+      base = false;
+    }
+    rounds = base ? 20 : 200;
+    runTest();
+    System.exit(0);
+  }
+
+  public static void runTest() throws Throwable {
+    // Warm up, so the measured loops run compiled code
+    for (int i = 0; i < SIZES.length; i++) {
+      measure(SIZES[i], rounds / 10 + 1, false);
+    }
+    for (int i = 0; i < SIZES.length; i++) {
+      measure(SIZES[i], rounds, true);
+    }
+    checkOverlapping();
+    System.out.println("ALL TESTS PASSED");
+  }
+
+  static void measure(int length, int n, boolean print) {
+    final Object[] src = new Object[length];
+    final Object[] dst = new Object[length];
+    final long[] rawSrc = new long[length];
+    final long[] rawDst = new long[length];
+    for (int i = 0; i < length; i++) src[i] = new Integer(i);
+    // Copy about the same amount of data for every size
+    final int copies = n * (1024 * 1024 / length + 1);
+
+    long start = System.nanoTime();
+    for (int r = 0; r < copies; r++) elementWiseCopy(src, dst, length);
+    long elementWise = System.nanoTime() - start;
+    check(src, dst, length);
+
+    java.util.Arrays.fill(dst, null);
+    start = System.nanoTime();
+    for (int r = 0; r < copies; r++) System.arraycopy(src, 0, dst, 0, length);
+    long bulk = System.nanoTime() - start;
+    check(src, dst, length);
+
+    start = System.nanoTime();
+    for (int r = 0; r < copies; r++) System.arraycopy(rawSrc, 0, rawDst, 0, length);
+    long raw = System.nanoTime() - start;
+
+    if (print) {
+      double elements = (double) copies * length;
+      System.out.println("Length " + length + ": element-wise " + rate(elements, elementWise) +
+          ", bulk " + rate(elements, bulk) + ", primitive " + rate(elements, raw) + " Melements/s");
+    }
+  }
+
+  static void elementWiseCopy(Object[] src, Object[] dst, int length) {
+    for (int i = 0; i < length; i++) dst[i] = src[i];
+  }
+
+  /** Shift an array down by one, the overlapping case of the bulk copy barrier */
+  static void checkOverlapping() {
+    Object[] a = new Object[4096];
+    for (int i = 0; i < a.length; i++) a[i] = new Integer(i);
+    System.arraycopy(a, 1, a, 0, a.length - 1);
+    for (int i = 0; i < a.length - 1; i++) {
+      if (((Integer) a[i]).intValue() != i + 1) fail("overlapping copy at " + i);
+    }
+    // Make the copied references survive a collection
+    System.gc();
+    for (int i = 0; i < a.length - 1; i++) {
+      if (((Integer) a[i]).intValue() != i + 1) fail("overlapping copy after GC at " + i);
+    }
+  }
+
+  static void check(Object[] src, Object[] dst, int length) {
+    for (int i = 0; i < length; i++) {
+      if (src[i] != dst[i]) fail("copy of length " + length + " at " + i);
+    }
+  }
+
+  static String rate(double elements, long nanos) {
+    if (nanos <= 0) return "-";
+    return String.valueOf(Math.round(elements * 1000.0 / nanos));
+  }
+
+  static void fail(String message) {
+    System.out.println("FAILED: " + message);
+    System.exit(1);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+/**
+ * Write barrier scaling with the number of mutator threads.
+ *
+ * Every thread repeatedly stores references between long lived objects, so
+ * most stores cross regions and go through the card table check. Each
+ * thread owns its objects, but neighbouring threads' objects share cache
+ * lines of the card table. The store rate per thread should stay roughly
+ * flat as threads are added, up to the number of cores: the test fails if
+ * it drops below MIN_SCALING of the single thread rate there.
+ */
+class CardTableScaling {
+
+  static final int[] THREADS = { 1, 2, 4, 8, 16, 32, 64 };
+  /** Minimum per thread store rate, relative to one thread, up to the number of cores */
+  static final double MIN_SCALING = 0.5;
+
+  static class Node {
+    Object ref;
+  }
+
+  static int storesPerThread;
+  static Node[] shared;
+
+  public static void main(String[] args) throws Throwable {
+    boolean base = true;
+    if (args.length == 0) {
+      System.out.println("No argument.  Assuming base");
+    } else if (args[0].compareTo("opt") == 0 || args[0].compareTo("perf") == 0) {
+      base = false;
+    }
+    storesPerThread = base ? 1 << 20 : 1 << 24;
+    runTest();
+    System.exit(0);
+  }
+
+  public static void runTest() throws Throwable {
+    shared = new Node[THREADS[THREADS.length - 1] * 1024];
+    for (int i = 0; i < shared.length; i++) shared[i] = new Node();
+    // Move the nodes out of the nursery, so stores are not filtered as young
+    System.gc();
+    System.gc();
+
+    run(1, false);
+    final int cores = Runtime.getRuntime().availableProcessors();
+    double singleRate = 0;
+    for (int i = 0; i < THREADS.length; i++) {
+      final double rate = run(THREADS[i], true);
+      if (THREADS[i] == 1) {
+        singleRate = rate;
+      } else if (THREADS[i] <= cores && rate < singleRate * MIN_SCALING) {
+        fail(THREADS[i] + " threads store at " + Math.round(rate) + " Mstores/s per thread, one thread at " +
+            Math.round(singleRate));
+      }
+    }
+    System.out.println("ALL TESTS PASSED");
+  }
+
+  /** @return the stores per thread and microsecond, i.e. Mstores/s per thread */
+  static double run(int threads, boolean print) throws InterruptedException {
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      final int id = t;
+      workers[t] = new Thread() {
+        public void run() {
+          store(id);
+        }
+      };
+    }
+    long start = System.nanoTime();
+    for (int t = 0; t < threads; t++) workers[t].start();
+    for (int t = 0; t < threads; t++) workers[t].join();
+    long elapsed = System.nanoTime() - start;
+    if (print) {
+      double total = (double) threads * storesPerThread;
+      System.out.println("Threads " + threads + ": " + Math.round(total * 1000.0 / elapsed) + " Mstores/s, " +
+          Math.round(total * 1000.0 / elapsed / threads) + " Mstores/s per thread");
+    }
+    return (double) storesPerThread * 1000.0 / elapsed;
+  }
+
+  static void fail(String message) {
+    System.out.println("FAILED: " + message);
+    System.exit(1);
+  }
+
+  /** Store between this thread's nodes and the nodes of the whole shared array */
+  static void store(int id) {
+    final Node[] nodes = shared;
+    final int base = id * 1024;
+    for (int i = 0; i < storesPerThread; i++) {
+      nodes[base + (i & 1023)].ref = nodes[(i * 31) % nodes.length];
+    }
+  }
+}
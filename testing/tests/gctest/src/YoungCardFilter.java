@@ -0,0 +1,153 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Microbenchmark for the G1 write barrier on allocation heavy workloads.
+ *
+ * The young phase builds short lived trees, so almost every reference store
+ * has a freshly allocated source. The old phase stores new objects into a
+ * long lived array. With young card filtering only the old phase should
+ * enqueue cards. The number of cards enqueued by the barrier is read from
+ * the G1 statistics when running a G1 build, and the young phase must then
+ * enqueue at most 1/YOUNG_CARD_RATIO of the cards of the old phase. Other
+ * builds only report the timings.
+ */
+class YoungCardFilter {
+
+  /** Minimum ratio of old phase to young phase enqueued cards */
+  static final int YOUNG_CARD_RATIO = 10;
+
+  static class Node {
+    Node left, right;
+    Object payload;
+  }
+
+  static int rounds;
+  static Node[] oldArray;
+  static Node sink;
+
+  public static void main(String[] args) throws Throwable {
+    boolean base = true;
+    if (args.length == 0) {
+      System.out.println("No argument.  Assuming base");
+    } else if (args[0].compareTo("opt") == 0 || args[0].compareTo("perf") == 0) {
+      base = false;
+    }
+    rounds = base ? 200 : 2000;
+    runTest();
+    System.exit(0);
+  }
+
+  public static void runTest() throws Throwable {
+    oldArray = new Node[64 * 1024];
+    for (int i = 0; i < oldArray.length; i++) oldArray[i] = new Node();
+    // Get the array and its contents out of the nursery
+    System.gc();
+    System.gc();
+
+    // Warm up, so the measured phases run compiled code
+    youngStores(rounds / 10);
+    oldStores(rounds / 10);
+
+    long cards = enqueuedCards();
+    long start = System.nanoTime();
+    youngStores(rounds);
+    long youngTime = System.nanoTime() - start;
+    long youngCards = enqueuedCards() - cards;
+
+    cards = enqueuedCards();
+    start = System.nanoTime();
+    oldStores(rounds);
+    long oldTime = System.nanoTime() - start;
+    long oldCards = enqueuedCards() - cards;
+
+    report("Young stores", youngTime, youngCards);
+    report("Old stores", oldTime, oldCards);
+    if (cards >= 0) {
+      if (oldCards == 0) fail("old stores enqueued no cards");
+      if (youngCards * YOUNG_CARD_RATIO > oldCards) {
+        fail("young stores enqueued " + youngCards + " cards, old stores " + oldCards);
+      }
+    }
+    System.out.println("ALL TESTS PASSED");
+  }
+
+  /** Build and drop a tree of new nodes, all stores have a young source */
+  static void youngStores(int n) {
+    for (int r = 0; r < n; r++) {
+      Node root = new Node();
+      Node cursor = root;
+      for (int i = 0; i < 16 * 1024; i++) {
+        Node left = new Node();
+        Node right = new Node();
+        cursor.left = left;
+        cursor.right = right;
+        left.payload = right;
+        cursor = (i & 1) == 0 ? left : right;
+      }
+      sink = root;
+    }
+  }
+
+  /** Link new nodes from old ones, all stores have an old source */
+  static void oldStores(int n) {
+    final Node[] array = oldArray;
+    for (int r = 0; r < n; r++) {
+      for (int i = r & 63; i < array.length; i += 64) {
+        array[i].payload = new Node();
+      }
+    }
+  }
+
+  static void report(String name, long nanos, long cards) {
+    System.out.print(name + ": " + (nanos / 1000000) + " ms, enqueued cards ");
+    System.out.println(cards < 0 ? "n/a" : String.valueOf(cards));
+  }
+
+  static void fail(String message) {
+    System.out.println("FAILED: " + message);
+    System.exit(1);
+  }
+
+  /**
+   * Cards enqueued by the write barrier so far, or -1 if not running G1.
+   * Includes partially filled buffers only once they are flushed.
+   */
+  static long enqueuedCards() {
+    String plan;
+    try {
+      plan = (String) Class.forName("org.jikesrvm.mm.mminterface.Selected").getField("name").get(null);
+    } catch (ClassNotFoundException e) {
+      return -1;
+    } catch (Throwable t) {
+      fail("cannot read the selected plan: " + t);
+      return -1;
+    }
+    if (!plan.startsWith("org.mmtk.plan.g1.")) return -1;
+    try {
+      Class<?> g1 = Class.forName("org.mmtk.plan.g1.G1");
+      Object predictor = g1.getField("predictor").get(null);
+      Object stat = predictor.getClass().getField("stat").get(predictor);
+      Field enqueued = stat.getClass().getField("enqueuedCards");
+      Object counter = enqueued.get(stat);
+      Method get = counter.getClass().getMethod("get");
+      return ((Long) get.invoke(counter)).longValue();
+    } catch (Throwable t) {
+      fail("cannot read the G1 card statistics: " + t);
+      return -1;
+    }
+  }
+}
@@ -257,6 +257,20 @@ EXTERNAL int sysMProtect(char *start, size_t length, int prot)
   return mprotect(start, length, prot);
 }
 
+/**
+ * madvise.
+ * Taken:     start address (Java ADDRESS)
+ *            length of region (Java EXTENT)
+ *            advice (Java int)
+ * Returned:  0 (success) or -1 (failure) (Java int)
+ */
+EXTERNAL int sysMAdvise(char *start, size_t length, int advice)
+{
+  TRACE_PRINTF("%s: sysMAdvise %p %zu %d\n",
+               Me, start, length, advice);
+  return madvise(start, length, advice);
+}
+
 /** Memory to memory copy. Memory regions must not overlap. */
 EXTERNAL void sysCopy(void *dst, const void *src, Extent cnt)
 {